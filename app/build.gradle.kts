@@ -3,6 +3,9 @@ plugins {
     alias(libs.plugins.google.gms.google.services)
 }
 
+fun firestoreCacheSizeMb(default: String): String =
+    (project.findProperty("firestoreCacheSizeMb") ?: default).toString()
+
 android {
     namespace = "com.example.todolist"
     compileSdk = 35
@@ -15,9 +18,42 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        // Opt-in check for data-layer work on the main thread:
+        // ./gradlew installDebug -PmainThreadChecks=true
+        buildConfigField(
+            "boolean",
+            "MAIN_THREAD_CHECKS",
+            (project.findProperty("mainThreadChecks") ?: "false").toString()
+        )
+        // Trace sections, counters and timers on the list's hot paths:
+        // ./gradlew installDebug -PperfTracing=true
+        buildConfigField(
+            "boolean",
+            "PERF_TRACING",
+            (project.findProperty("perfTracing") ?: "false").toString()
+        )
+        // Local Firebase emulators instead of the real project; only the
+        // benchmark build type turns this on
+        buildConfigField("boolean", "USE_FIREBASE_EMULATOR", "false")
+        // 10.0.2.2 is the host from an Android emulator. On a device, use
+        // adb reverse for ports 8080 and 9099 and -PfirebaseEmulatorHost=127.0.0.1
+        buildConfigField(
+            "String",
+            "FIREBASE_EMULATOR_HOST",
+            "\"" + (project.findProperty("firebaseEmulatorHost") ?: "10.0.2.2") + "\""
+        )
+        // Firestore's on-disk cache budget; least recently used documents
+        // are evicted past it. 0 keeps the cache in memory only. Override
+        // with -PfirestoreCacheSizeMb=<n> to try a budget on any build type.
+        buildConfigField("long", "FIRESTORE_CACHE_SIZE_MB", firestoreCacheSizeMb("100"))
     }
 
     buildTypes {
+        debug {
+            // Small enough that eviction actually happens during development
+            buildConfigField("long", "FIRESTORE_CACHE_SIZE_MB", firestoreCacheSizeMb("20"))
+        }
         release {
             isMinifyEnabled = false
             proguardFiles(
@@ -25,6 +61,17 @@ android {
                 "proguard-rules.pro"
             )
         }
+        // Release code, profileable and debug-signed, for the :benchmark and
+        // :macrobenchmark modules. Talks to the Firebase emulators so runs are reproducible
+        // offline: start them with `firebase emulators:start` first.
+        create("benchmark") {
+            initWith(getByName("release"))
+            signingConfig = signingConfigs.getByName("debug")
+            matchingFallbacks += listOf("release")
+            isDebuggable = false
+            buildConfigField("boolean", "USE_FIREBASE_EMULATOR", "true")
+            buildConfigField("boolean", "PERF_TRACING", "true")
+        }
     }
 
     compileOptions {
@@ -34,6 +81,7 @@ android {
 
     buildFeatures {
         viewBinding = true
+        buildConfig = true
     }
 }
 
@@ -83,6 +131,10 @@ dependencies {
     annotationProcessor("com.github.bumptech.glide:compiler:4.16.0")
     implementation("de.hdodenhof:circleimageview:3.1.0")
 
+    // Installs the baseline profile in src/main/baselineProfiles on
+    // sideloaded and benchmark installs; Play does it for store installs
+    implementation(libs.profileinstaller)
+
     // Room Database (jika masih diperlukan untuk offline storage)
     implementation("androidx.room:room-runtime:2.6.1")
     implementation("androidx.room:room-ktx:2.6.1")
@@ -90,6 +142,10 @@ dependencies {
 
     // Testing
     testImplementation(libs.junit)
+    // Main looper, SystemClock and LiveData for the JVM tests; Firestore
+    // types are mocked
+    testImplementation(libs.robolectric)
+    testImplementation(libs.mockito.core)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 }
\ No newline at end of file
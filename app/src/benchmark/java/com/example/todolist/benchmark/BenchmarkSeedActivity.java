@@ -0,0 +1,165 @@
+package com.example.todolist.benchmark;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.TextView;
+
+import com.example.todolist.AppContainer;
+import com.example.todolist.data.firebase.FirebaseConfig;
+import com.example.todolist.data.firebase.FirestoreManager;
+import com.example.todolist.data.firebase.TodoCodec;
+import com.example.todolist.data.model.DueDates;
+import com.example.todolist.data.model.Todo;
+import com.example.todolist.data.model.TodoStats;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.AuthResult;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Benchmark builds only. Signs in to the Auth emulator as a fixed user
+ * (creating it on first run), replaces that user's todos with
+ * {@code count} generated ones and reconciles their stats, then shows
+ * "Seeded &lt;count&gt;". Same seed, same todos, so every run starts from
+ * the same data.
+ *
+ * adb shell am start -W -n com.example.todolist/.benchmark.BenchmarkSeedActivity --ei count 5000
+ * Add {@code --ez signOut true} to start the next launch at the login screen.
+ */
+public class BenchmarkSeedActivity extends Activity {
+    private static final String TAG = "BenchmarkSeedActivity";
+    public static final String EXTRA_COUNT = "count";
+    // Sign out once seeded, so the next launch starts at the login screen
+    public static final String EXTRA_SIGN_OUT = "signOut";
+    static final String EMAIL = "benchmark@example.com";
+    static final String PASSWORD = "benchmark-password";
+
+    private static final long SEED = 42;
+    private static final int BATCH_SIZE = 500;
+
+    private TextView status;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        status = new TextView(this);
+        status.setText("Seeding");
+        setContentView(status);
+
+        int count = getIntent().getIntExtra(EXTRA_COUNT, 1000);
+        FirebaseAuth auth = FirebaseConfig.getAuth();
+        auth.signInWithEmailAndPassword(EMAIL, PASSWORD)
+                .continueWithTask(task -> task.isSuccessful()
+                        ? task
+                        : auth.createUserWithEmailAndPassword(EMAIL, PASSWORD))
+                .onSuccessTask(result -> replaceTodos(userId(result), count))
+                .addOnSuccessListener(userId -> reconcile(userId, count))
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Seeding failed", e);
+                    status.setText("Seeding failed: " + e.getMessage());
+                });
+    }
+
+    private static String userId(AuthResult result) {
+        return result.getUser().getUid();
+    }
+
+    private Task<String> replaceTodos(String userId, int count) {
+        FirebaseFirestore db = FirebaseConfig.getFirestore();
+        CollectionReference todos = db.collection("todos");
+        return todos.whereEqualTo("userId", userId).get().onSuccessTask(existing -> {
+            List<Todo> generated = generate(userId, count);
+            Set<String> generatedIds = new HashSet<>();
+            for (Todo todo : generated) {
+                generatedIds.add(todo.getId());
+            }
+
+            // Generated todos overwrite their earlier copies; anything else
+            // (added during a previous run, or a larger seed) is deleted
+            List<Task<Void>> commits = new ArrayList<>();
+            WriteBatch batch = db.batch();
+            int writes = 0;
+            for (DocumentSnapshot doc : existing.getDocuments()) {
+                if (generatedIds.contains(doc.getId())) {
+                    continue;
+                }
+                batch.delete(doc.getReference());
+                if (++writes % BATCH_SIZE == 0) {
+                    commits.add(batch.commit());
+                    batch = db.batch();
+                }
+            }
+            for (Todo todo : generated) {
+                batch.set(todos.document(todo.getId()), TodoCodec.encode(todo));
+                if (++writes % BATCH_SIZE == 0) {
+                    commits.add(batch.commit());
+                    batch = db.batch();
+                }
+            }
+            commits.add(batch.commit());
+            Log.d(TAG, "Writing " + count + " todos for " + userId);
+            return Tasks.whenAll(commits).continueWith(task -> {
+                if (!task.isSuccessful()) {
+                    throw task.getException();
+                }
+                return userId;
+            });
+        });
+    }
+
+    private void reconcile(String userId, int count) {
+        AppContainer.from(this).getStatsReconciler().reconcile(userId,
+                new FirestoreManager.FirestoreCallback<TodoStats>() {
+                    @Override
+                    public void onSuccess(TodoStats result) {
+                        if (getIntent().getBooleanExtra(EXTRA_SIGN_OUT, false)) {
+                            FirebaseConfig.getAuth().signOut();
+                        }
+                        status.setText("Seeded " + count);
+                    }
+
+                    @Override
+                    public void onFailure(String error) {
+                        status.setText("Seeding failed: " + error);
+                    }
+                });
+    }
+
+    /**
+     * Newest first, about a third completed, due dates spread over the two
+     * months around today.
+     */
+    private static List<Todo> generate(String userId, int count) {
+        Random random = new Random(SEED);
+        long today = DueDates.today();
+        long now = System.currentTimeMillis();
+
+        List<Todo> todos = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long dueDay = today - 30 + random.nextInt(60);
+            Todo todo = new Todo("Todo " + i, "Description of todo number " + i,
+                    DueDates.format(dueDay), userId);
+            todo.setId(String.format(Locale.ROOT, "%s-todo%08d", userId, i));
+            todo.setCompleted(random.nextInt(3) == 0);
+            todo.setPriority(Todo.PRIORITIES.get(random.nextInt(Todo.PRIORITIES.size())));
+            todo.setCategory(Todo.CATEGORIES.get(random.nextInt(Todo.CATEGORIES.size())));
+            todo.setCreatedAt(new Date(now - i * 60_000L));
+            todo.setUpdatedAt(new Date(now));
+            todos.add(todo);
+        }
+        return todos;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.todolist;
+
+import android.content.Context;
+
+import com.example.todolist.data.firebase.DueDayBackfill;
+import com.example.todolist.data.firebase.FirebaseAuthManager;
+import com.example.todolist.data.firebase.FirestoreManager;
+import com.example.todolist.data.firebase.TodoStatsReconciler;
+import com.example.todolist.data.local.TodoDatabase;
+
+/**
+ * The app's long-lived services, one of each per process, created on first
+ * use. Screens get them with {@link #from(Context)} instead of constructing
+ * their own, so nothing here holds an Activity and opening a screen
+ * allocates nothing from the data layer.
+ */
+public final class AppContainer {
+    private final Context appContext;
+
+    private FirebaseAuthManager authManager;
+    private FirestoreManager firestoreManager;
+    private TodoStatsReconciler statsReconciler;
+    private DueDayBackfill dueDayBackfill;
+
+    AppContainer(Context context) {
+        this.appContext = context.getApplicationContext();
+    }
+
+    public static AppContainer from(Context context) {
+        return ((TodoApplication) context.getApplicationContext()).getContainer();
+    }
+
+    public synchronized FirebaseAuthManager getAuthManager() {
+        if (authManager == null) {
+            authManager = new FirebaseAuthManager(appContext);
+        }
+        return authManager;
+    }
+
+    public synchronized FirestoreManager getFirestoreManager() {
+        if (firestoreManager == null) {
+            firestoreManager = new FirestoreManager();
+        }
+        return firestoreManager;
+    }
+
+    public synchronized TodoStatsReconciler getStatsReconciler() {
+        if (statsReconciler == null) {
+            statsReconciler = new TodoStatsReconciler(appContext, getFirestoreManager());
+        }
+        return statsReconciler;
+    }
+
+    public synchronized DueDayBackfill getDueDayBackfill() {
+        if (dueDayBackfill == null) {
+            dueDayBackfill = new DueDayBackfill(appContext);
+        }
+        return dueDayBackfill;
+    }
+
+    public TodoDatabase getDatabase() {
+        return TodoDatabase.getInstance(appContext);
+    }
+}
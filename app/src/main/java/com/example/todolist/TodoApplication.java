@@ -1,24 +1,61 @@
 package com.example.todolist;
 
 import android.app.Application;
+import android.os.StrictMode;
 import android.util.Log;
 
 import com.example.todolist.data.firebase.FirebaseConfig;
+import com.example.todolist.data.firebase.FirestoreCacheMonitor;
+import com.example.todolist.data.firebase.FirestoreExecutors;
+import com.example.todolist.startup.StartupOrchestrator;
+import com.example.todolist.startup.StartupOrchestrator.Dispatch;
 import com.google.firebase.FirebaseApp;
+import com.google.firebase.analytics.FirebaseAnalytics;
 
 public class TodoApplication extends Application {
     private static final String TAG = "TodoApplication";
 
+    private AppContainer container;
+
     @Override
     public void onCreate() {
         super.onCreate();
+        // Cheap: everything in it is created on first use
+        container = new AppContainer(this);
+
+        // Only MAIN initializers delay the first frame. Firestore and Auth
+        // configure themselves on first use (FirebaseConfig), so starting
+        // them here just gets that done before an activity needs them.
+        StartupOrchestrator startup = new StartupOrchestrator();
+        if (BuildConfig.MAIN_THREAD_CHECKS) {
+            startup.add("mainThreadChecks", Dispatch.MAIN, this::enableMainThreadChecks);
+        }
+        startup.add("firebaseApp", Dispatch.MAIN, () -> FirebaseApp.initializeApp(this))
+                .add("firebaseAuth", Dispatch.BACKGROUND, FirebaseConfig::getAuth, "firebaseApp")
+                // Firestore reads the Auth instance, which has to be set up first
+                .add("firestore", Dispatch.BACKGROUND, FirebaseConfig::initialize, "firebaseAuth")
+                .add("analytics", Dispatch.BACKGROUND, () -> FirebaseAnalytics.getInstance(this), "firebaseApp")
+                .add("firestoreCacheMonitor", Dispatch.BACKGROUND,
+                        () -> FirestoreCacheMonitor.start(this), "firestore", "analytics")
+                .add("localDatabase", Dispatch.BACKGROUND,
+                        () -> container.getDatabase().getOpenHelper().getWritableDatabase())
+                .start();
+    }
 
-        // Initialize Firebase
-        FirebaseApp.initializeApp(this);
-        Log.d(TAG, "Firebase initialized successfully");
+    public AppContainer getContainer() {
+        return container;
+    }
 
-        // Initialize Firebase configuration
-        FirebaseConfig.initialize();
-        Log.d(TAG, "FirebaseConfig initialized successfully");
+    /**
+     * StrictMode catches disk and network access on the main thread; the
+     * data layer's own check catches snapshot decoding there.
+     */
+    private void enableMainThreadChecks() {
+        StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                .detectAll()
+                .penaltyLog()
+                .build());
+        FirestoreExecutors.setMainThreadChecks(true);
+        Log.d(TAG, "Main thread checks enabled");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,185 @@
+package com.example.todolist.data.firebase;
+
+import android.util.Log;
+
+import com.example.todolist.data.model.BulkWriteResult;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies the same write to many todos: the ids are split into batches of
+ * up to {@link TodoWriteQueue#MAX_BATCH_WRITES} writes and at most
+ * {@code maxConcurrentBatches} commits are in flight at once. Once every
+ * batch has settled the callback receives a {@link BulkWriteResult} with
+ * the ids that were written and the ids that failed; it never gets
+ * onFailure, since earlier batches may already be committed. Safe to call
+ * from any thread; the callback runs on the main thread.
+ *
+ * A failed batch is retried one todo per batch, like
+ * {@link TodoWriteQueue} does, so one bad write (e.g. updating a todo
+ * deleted on another device) does not fail the rest of its batch.
+ *
+ * Bulk operations bypass {@link TodoWriteQueue}; they are already batched.
+ * Stats deltas keyed by todo id are summed per batch and written to the
+ * stats document in the same batch as the todos they describe.
+ */
+public class BulkTodoWriter {
+    private static final String TAG = "BulkTodoWriter";
+    private static final String TODOS_COLLECTION = "todos";
+    private static final int DEFAULT_MAX_CONCURRENT_BATCHES = 4;
+
+    private final CollectionReference todos;
+    private final int maxConcurrentBatches;
+
+    // Batches leave room for the stats document writes
+    private static final int TODO_WRITES_PER_BATCH =
+            TodoWriteQueue.MAX_BATCH_WRITES - TodoWriteQueue.STATS_WRITES_RESERVE;
+
+    private interface BatchOp {
+        void apply(WriteBatch batch, String todoId);
+    }
+
+    public BulkTodoWriter() {
+        this(DEFAULT_MAX_CONCURRENT_BATCHES);
+    }
+
+    public BulkTodoWriter(int maxConcurrentBatches) {
+        this.todos = FirebaseConfig.getFirestore().collection(TODOS_COLLECTION);
+        this.maxConcurrentBatches = maxConcurrentBatches;
+    }
+
+    public void update(List<String> todoIds, Map<String, Object> fields, Map<String, TodoStatsDelta> stats,
+                       FirestoreManager.FirestoreCallback<BulkWriteResult> callback) {
+        run(todoIds, (batch, todoId) -> batch.update(todos.document(todoId), fields), stats, callback);
+    }
+
+    public void delete(List<String> todoIds, Map<String, TodoStatsDelta> stats,
+                       FirestoreManager.FirestoreCallback<BulkWriteResult> callback) {
+        run(todoIds, (batch, todoId) -> batch.delete(todos.document(todoId)), stats, callback);
+    }
+
+    private void run(List<String> todoIds, BatchOp op, Map<String, TodoStatsDelta> stats,
+                     FirestoreManager.FirestoreCallback<BulkWriteResult> callback) {
+        if (todoIds.isEmpty()) {
+            FirestoreExecutors.main().execute(() -> callback.onSuccess(new BulkWriteResult(
+                    Collections.emptyList(), Collections.emptyList(), null)));
+            return;
+        }
+
+        Deque<Chunk> chunks = new ArrayDeque<>();
+        for (int i = 0; i < todoIds.size(); i += TODO_WRITES_PER_BATCH) {
+            chunks.add(new Chunk(new ArrayList<>(
+                    todoIds.subList(i, Math.min(i + TODO_WRITES_PER_BATCH, todoIds.size()))), true));
+        }
+
+        Log.d(TAG, "Writing " + todoIds.size() + " todos in " + chunks.size() + " batches");
+        Run run = new Run(chunks, op, stats, todoIds.size(), callback);
+        // Callers may be on the database thread; Run is confined to main
+        FirestoreExecutors.main().execute(run::start);
+    }
+
+    private static class Chunk {
+        final List<String> todoIds;
+        // False for the single-todo batches of a retry
+        final boolean retryIndividually;
+
+        Chunk(List<String> todoIds, boolean retryIndividually) {
+            this.todoIds = todoIds;
+            this.retryIndividually = retryIndividually;
+        }
+    }
+
+    /**
+     * State of one bulk operation. It is started on the main thread and
+     * Task listeners are delivered there too, so no locking is needed.
+     */
+    private class Run {
+        final Deque<Chunk> remaining;
+        final BatchOp op;
+        final Map<String, TodoStatsDelta> stats;
+        final int total;
+        final FirestoreManager.FirestoreCallback<BulkWriteResult> callback;
+        final List<String> writtenIds = new ArrayList<>();
+        final List<String> failedIds = new ArrayList<>();
+        int inFlight = 0;
+        String firstError = null;
+
+        Run(Deque<Chunk> remaining, BatchOp op, Map<String, TodoStatsDelta> stats, int total,
+            FirestoreManager.FirestoreCallback<BulkWriteResult> callback) {
+            this.remaining = remaining;
+            this.op = op;
+            this.stats = stats;
+            this.total = total;
+            this.callback = callback;
+        }
+
+        void start() {
+            while (inFlight < maxConcurrentBatches && !remaining.isEmpty()) {
+                commitNext();
+            }
+        }
+
+        void commitNext() {
+            Chunk chunk = remaining.poll();
+            WriteBatch batch = todos.getFirestore().batch();
+            Map<String, TodoStatsDelta> statsByUser = new HashMap<>();
+            for (String todoId : chunk.todoIds) {
+                op.apply(batch, todoId);
+                TodoStatsDelta delta = stats.get(todoId);
+                if (delta != null) {
+                    TodoStatsDelta userStats = statsByUser.get(delta.getUserId());
+                    if (userStats == null) {
+                        userStats = new TodoStatsDelta(delta.getUserId());
+                        statsByUser.put(delta.getUserId(), userStats);
+                    }
+                    userStats.add(delta);
+                }
+            }
+            for (TodoStatsDelta userStats : statsByUser.values()) {
+                if (!userStats.isEmpty()) {
+                    batch.set(TodoStatsDelta.statsRef(todos.getFirestore(), userStats.getUserId()),
+                            userStats.toUpdate(), SetOptions.merge());
+                }
+            }
+
+            inFlight++;
+            batch.commit()
+                    .addOnSuccessListener(aVoid -> onBatchDone(chunk, null))
+                    .addOnFailureListener(e -> {
+                        Log.w(TAG, "Bulk batch of " + chunk.todoIds.size() + " writes failed", e);
+                        onBatchDone(chunk, e.getMessage());
+                    });
+        }
+
+        void onBatchDone(Chunk chunk, String error) {
+            inFlight--;
+            if (error == null) {
+                writtenIds.addAll(chunk.todoIds);
+            } else if (chunk.retryIndividually && chunk.todoIds.size() > 1) {
+                for (String todoId : chunk.todoIds) {
+                    remaining.add(new Chunk(Collections.singletonList(todoId), false));
+                }
+            } else {
+                failedIds.addAll(chunk.todoIds);
+                if (firstError == null) {
+                    firstError = error;
+                }
+            }
+
+            start();
+            if (inFlight == 0) {
+                Log.d(TAG, "Bulk write of " + total + " todos completed, " + failedIds.size() + " failed");
+                callback.onSuccess(new BulkWriteResult(writtenIds, failedIds, firstError));
+            }
+        }
+    }
+}
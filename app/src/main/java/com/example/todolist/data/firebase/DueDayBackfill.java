@@ -0,0 +1,125 @@
+package com.example.todolist.data.firebase;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.todolist.data.model.DueDates;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One-time migration that adds {@code dueDay} to todos written before the
+ * field existed. Walks the user's todos in document id order, one page per
+ * batch, and stores the last id it finished in SharedPreferences so an
+ * interrupted run resumes where it stopped instead of starting over.
+ */
+public class DueDayBackfill {
+    private static final String TAG = "DueDayBackfill";
+    private static final String TODOS_COLLECTION = "todos";
+    private static final String PREFS_NAME = "due_day_backfill";
+    private static final String KEY_CURSOR = "cursor_";
+    private static final String KEY_DONE = "done_";
+    private static final int PAGE_SIZE = 200;
+
+    private final CollectionReference todos;
+    private final SharedPreferences prefs;
+    private boolean running = false;
+
+    public DueDayBackfill(Context context) {
+        this.todos = FirebaseConfig.getFirestore().collection(TODOS_COLLECTION);
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Starts or resumes the backfill for the user unless it already
+     * finished on this device.
+     */
+    public void runIfNeeded(String userId) {
+        if (running || prefs.getBoolean(KEY_DONE + userId, false)) {
+            return;
+        }
+        running = true;
+        nextPage(userId, prefs.getString(KEY_CURSOR + userId, null));
+    }
+
+    private void nextPage(String userId, String afterId) {
+        Query query = todos.whereEqualTo("userId", userId)
+                .orderBy(FieldPath.documentId())
+                .limit(PAGE_SIZE);
+        if (afterId != null) {
+            query = query.startAfter(afterId);
+        }
+
+        query.get()
+                .addOnSuccessListener(snapshot -> {
+                    List<DocumentSnapshot> docs = snapshot.getDocuments();
+                    if (docs.isEmpty()) {
+                        finish(userId);
+                        return;
+                    }
+
+                    WriteBatch batch = todos.getFirestore().batch();
+                    int updates = 0;
+                    for (DocumentSnapshot doc : docs) {
+                        if (doc.contains("dueDay")) {
+                            continue;
+                        }
+                        Map<String, Object> fields = new HashMap<>();
+                        // Stored as null when the date doesn't parse so the
+                        // document isn't revisited
+                        fields.put("dueDay", DueDates.toEpochDay(doc.getString("date")));
+                        batch.update(doc.getReference(), fields);
+                        updates++;
+                    }
+
+                    String lastId = docs.get(docs.size() - 1).getId();
+                    boolean lastPage = docs.size() < PAGE_SIZE;
+                    if (updates == 0) {
+                        onPageDone(userId, lastId, lastPage);
+                        return;
+                    }
+
+                    int pageUpdates = updates;
+                    batch.commit()
+                            .addOnSuccessListener(aVoid -> {
+                                Log.d(TAG, "Backfilled dueDay on " + pageUpdates + " todos");
+                                onPageDone(userId, lastId, lastPage);
+                            })
+                            .addOnFailureListener(e -> {
+                                // Cursor not advanced; the next run retries this page
+                                Log.w(TAG, "Error backfilling dueDay", e);
+                                running = false;
+                            });
+                })
+                .addOnFailureListener(e -> {
+                    Log.w(TAG, "Error reading todos for dueDay backfill", e);
+                    running = false;
+                });
+    }
+
+    private void onPageDone(String userId, String lastId, boolean lastPage) {
+        prefs.edit().putString(KEY_CURSOR + userId, lastId).apply();
+        if (lastPage) {
+            finish(userId);
+        } else {
+            nextPage(userId, lastId);
+        }
+    }
+
+    private void finish(String userId) {
+        Log.d(TAG, "dueDay backfill complete for user: " + userId);
+        prefs.edit()
+                .putBoolean(KEY_DONE + userId, true)
+                .remove(KEY_CURSOR + userId)
+                .apply();
+        running = false;
+    }
+}
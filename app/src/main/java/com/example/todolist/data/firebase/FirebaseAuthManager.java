@@ -1,12 +1,14 @@
 package com.example.todolist.data.firebase;
 
 import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 
 import com.example.todolist.R;
+import com.example.todolist.data.local.TodoDatabase;
 import com.example.todolist.data.model.User;
 import com.google.android.gms.auth.api.signin.GoogleSignIn;
 import com.google.android.gms.auth.api.signin.GoogleSignInAccount;
@@ -21,16 +23,20 @@ import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.auth.GoogleAuthProvider;
 import com.google.firebase.auth.UserProfileChangeRequest;
-import com.google.firebase.firestore.FirebaseFirestore;
 
+/**
+ * Sign-in, sign-out and the current user. One instance lives in
+ * {@link com.example.todolist.AppContainer} and holds only the application
+ * context; methods whose results belong to a screen take that screen's
+ * Activity, and their callbacks are dropped once it stops.
+ */
 public class FirebaseAuthManager {
     private static final String TAG = "FirebaseAuthManager";
     private static final int RC_SIGN_IN = 9001;
 
     private FirebaseAuth mAuth;
     private GoogleSignInClient mGoogleSignInClient;
-    private FirebaseFirestore db;
-    private Activity activity;
+    private final Context context;
 
     public interface AuthCallback {
         void onSuccess(FirebaseUser user);
@@ -42,22 +48,29 @@ public class FirebaseAuthManager {
         void onFailure(String error);
     }
 
-    public FirebaseAuthManager(Activity activity) {
-        this.activity = activity;
-        mAuth = FirebaseAuth.getInstance();
-        db = FirebaseFirestore.getInstance();
-
-        // Configure Google Sign In
-        GoogleSignInOptions gso = new GoogleSignInOptions.Builder(GoogleSignInOptions.DEFAULT_SIGN_IN)
-                .requestIdToken(activity.getString(R.string.default_web_client_id))
-                .requestEmail()
-                .build();
+    public FirebaseAuthManager(Context context) {
+        this.context = context.getApplicationContext();
+        mAuth = FirebaseConfig.getAuth();
+    }
 
-        mGoogleSignInClient = GoogleSignIn.getClient(activity, gso);
+    /**
+     * Built on first use: most launches only check the signed-in user, and
+     * the client is costly to set up on the main thread.
+     */
+    private synchronized GoogleSignInClient getGoogleSignInClient() {
+        if (mGoogleSignInClient == null) {
+            GoogleSignInOptions gso = new GoogleSignInOptions.Builder(GoogleSignInOptions.DEFAULT_SIGN_IN)
+                    .requestIdToken(context.getString(R.string.default_web_client_id))
+                    .requestEmail()
+                    .build();
+            mGoogleSignInClient = GoogleSignIn.getClient(context, gso);
+        }
+        return mGoogleSignInClient;
     }
 
     // Email and Password Authentication
-    public void createUserWithEmailAndPassword(String name, String email, String password, AuthCallback callback) {
+    public void createUserWithEmailAndPassword(Activity activity, String name, String email, String password,
+                                               AuthCallback callback) {
         mAuth.createUserWithEmailAndPassword(email, password)
                 .addOnCompleteListener(activity, new OnCompleteListener<AuthResult>() {
                     @Override
@@ -97,7 +110,7 @@ public class FirebaseAuthManager {
                 });
     }
 
-    public void signInWithEmailAndPassword(String email, String password, AuthCallback callback) {
+    public void signInWithEmailAndPassword(Activity activity, String email, String password, AuthCallback callback) {
         mAuth.signInWithEmailAndPassword(email, password)
                 .addOnCompleteListener(activity, new OnCompleteListener<AuthResult>() {
                     @Override
@@ -134,22 +147,22 @@ public class FirebaseAuthManager {
 
     // Google Authentication (existing methods)
     public Intent getGoogleSignInIntent() {
-        return mGoogleSignInClient.getSignInIntent();
+        return getGoogleSignInClient().getSignInIntent();
     }
 
-    public void handleGoogleSignInResult(Intent data, AuthCallback callback) {
+    public void handleGoogleSignInResult(Activity activity, Intent data, AuthCallback callback) {
         Task<GoogleSignInAccount> task = GoogleSignIn.getSignedInAccountFromIntent(data);
         try {
             GoogleSignInAccount account = task.getResult(ApiException.class);
             Log.d(TAG, "firebaseAuthWithGoogle:" + account.getId());
-            firebaseAuthWithGoogle(account.getIdToken(), callback);
+            firebaseAuthWithGoogle(activity, account.getIdToken(), callback);
         } catch (ApiException e) {
             Log.w(TAG, "Google sign in failed", e);
             callback.onFailure("Google sign in failed: " + e.getMessage());
         }
     }
 
-    private void firebaseAuthWithGoogle(String idToken, AuthCallback callback) {
+    private void firebaseAuthWithGoogle(Activity activity, String idToken, AuthCallback callback) {
         AuthCredential credential = GoogleAuthProvider.getCredential(idToken, null);
         mAuth.signInWithCredential(credential)
                 .addOnCompleteListener(activity, new OnCompleteListener<AuthResult>() {
@@ -178,17 +191,21 @@ public class FirebaseAuthManager {
                     firebaseUser.getPhotoUrl() != null ? firebaseUser.getPhotoUrl().toString() : ""
             );
 
-            db.collection("users")
+            // Keep the local copy current so profile screens can read it offline
+            TodoDatabase database = TodoDatabase.getInstance(context);
+            TodoDatabase.databaseExecutor.execute(() -> database.userDao().upsert(user));
+
+            FirebaseConfig.getFirestore().collection("users")
                     .document(firebaseUser.getUid())
-                    .set(user)
+                    .set(UserCodec.encode(user))
                     .addOnSuccessListener(aVoid -> Log.d(TAG, "User profile saved"))
                     .addOnFailureListener(e -> Log.w(TAG, "Error saving user profile", e));
         }
     }
 
-    public void signOut(Runnable callback) {
+    public void signOut(Activity activity, Runnable callback) {
         mAuth.signOut();
-        mGoogleSignInClient.signOut().addOnCompleteListener(activity, task -> {
+        getGoogleSignInClient().signOut().addOnCompleteListener(activity, task -> {
             if (callback != null) {
                 callback.run();
             }
@@ -1,28 +1,72 @@
 package com.example.todolist.data.firebase;
 
+import android.util.Log;
+
+import com.example.todolist.BuildConfig;
+import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.LocalCacheSettings;
+import com.google.firebase.firestore.MemoryCacheSettings;
+import com.google.firebase.firestore.MemoryEagerGcSettings;
+import com.google.firebase.firestore.PersistentCacheSettings;
 
+/**
+ * The configured Firestore and Auth instances. Settings have to be applied
+ * before anything else touches an instance, so all code gets them from
+ * here rather than from getInstance(). Configuration happens on first use
+ * on whichever thread gets there first; TodoApplication starts it in the
+ * background at launch so the main thread rarely pays for it.
+ *
+ * The local cache budget comes from BuildConfig.FIRESTORE_CACHE_SIZE_MB;
+ * FirestoreCacheMonitor reports how much of it is used and how often
+ * reads are served from it.
+ */
 public class FirebaseConfig {
     private static final String TAG = "FirebaseConfig";
+    private static final int FIRESTORE_EMULATOR_PORT = 8080;
+    private static final int AUTH_EMULATOR_PORT = 9099;
     private static boolean isInitialized = false;
+    private static boolean isAuthInitialized = false;
 
-    public static void initialize() {
+    public static synchronized void initialize() {
         if (!isInitialized) {
-            // Enable Firestore offline persistence
             FirebaseFirestore db = FirebaseFirestore.getInstance();
 
+            // Benchmark builds run against the local emulators (see
+            // firebase.json); this has to happen before the first use
+            if (BuildConfig.USE_FIREBASE_EMULATOR) {
+                db.useEmulator(BuildConfig.FIREBASE_EMULATOR_HOST, FIRESTORE_EMULATOR_PORT);
+                Log.d(TAG, "Using Firestore emulator at " + BuildConfig.FIREBASE_EMULATOR_HOST);
+            }
+
             FirebaseFirestoreSettings settings = new FirebaseFirestoreSettings.Builder()
-                    .setPersistenceEnabled(true)
-                    .setCacheSizeBytes(FirebaseFirestoreSettings.CACHE_SIZE_UNLIMITED)
+                    .setLocalCacheSettings(cacheSettings())
                     .build();
 
             db.setFirestoreSettings(settings);
+            Log.d(TAG, "Firestore cache budget: " + BuildConfig.FIRESTORE_CACHE_SIZE_MB + " MB");
 
             isInitialized = true;
         }
     }
 
+    /**
+     * Persistent cache with a size budget, past which Firestore evicts the
+     * least recently used documents, or a memory-only cache for a budget of
+     * 0. Firestore's minimum persistent budget is 1 MB.
+     */
+    private static LocalCacheSettings cacheSettings() {
+        if (BuildConfig.FIRESTORE_CACHE_SIZE_MB <= 0) {
+            return MemoryCacheSettings.newBuilder()
+                    .setGcSettings(MemoryEagerGcSettings.newBuilder().build())
+                    .build();
+        }
+        return PersistentCacheSettings.newBuilder()
+                .setSizeBytes(BuildConfig.FIRESTORE_CACHE_SIZE_MB * 1024 * 1024)
+                .build();
+    }
+
     /**
      * Get configured Firestore instance
      */
@@ -30,4 +74,19 @@ public class FirebaseConfig {
         initialize();
         return FirebaseFirestore.getInstance();
     }
-}
\ No newline at end of file
+
+    /**
+     * Get configured Auth instance
+     */
+    public static synchronized FirebaseAuth getAuth() {
+        FirebaseAuth auth = FirebaseAuth.getInstance();
+        if (!isAuthInitialized) {
+            if (BuildConfig.USE_FIREBASE_EMULATOR) {
+                auth.useEmulator(BuildConfig.FIREBASE_EMULATOR_HOST, AUTH_EMULATOR_PORT);
+                Log.d(TAG, "Using Auth emulator at " + BuildConfig.FIREBASE_EMULATOR_HOST);
+            }
+            isAuthInitialized = true;
+        }
+        return auth;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.todolist.data.firebase;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.todolist.BuildConfig;
+import com.google.firebase.analytics.FirebaseAnalytics;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How big Firestore's local cache is and how often todo queries are
+ * answered from it, so the per-build-type budget can be picked from real
+ * use. Every query result the data layer handles is recorded; a report of
+ * the window since the previous one is logged and sent to Analytics every
+ * {@link #REPORT_INTERVAL_MS}.
+ *
+ * A result counts as a cache hit when its metadata says it came from the
+ * cache, i.e. the server hadn't answered (yet) or couldn't be reached.
+ */
+public final class FirestoreCacheMonitor {
+    private static final String TAG = "FirestoreCacheMonitor";
+    private static final long FIRST_REPORT_DELAY_MS = 5 * 60_000;
+    private static final long REPORT_INTERVAL_MS = 30 * 60_000;
+    private static final String EVENT_NAME = "firestore_cache_usage";
+    // SQLite database and its journal files, named "firestore.<app>.<project>.<database>"
+    private static final String CACHE_FILE_PREFIX = "firestore.";
+
+    private static final AtomicLong reads = new AtomicLong();
+    private static final AtomicLong cacheReads = new AtomicLong();
+    private static final AtomicLong documents = new AtomicLong();
+    private static final AtomicLong cacheDocuments = new AtomicLong();
+
+    private static boolean started = false;
+
+    private FirestoreCacheMonitor() {
+    }
+
+    /**
+     * Counts one query result and the documents it delivered.
+     */
+    public static void record(QuerySnapshot snapshot) {
+        long delivered = snapshot.getDocumentChanges().size();
+        reads.incrementAndGet();
+        documents.addAndGet(delivered);
+        if (snapshot.getMetadata().isFromCache()) {
+            cacheReads.incrementAndGet();
+            cacheDocuments.addAndGet(delivered);
+        }
+    }
+
+    /**
+     * Starts the periodic reports. Safe to call from any thread, and more
+     * than once.
+     */
+    public static synchronized void start(Context context) {
+        if (started) {
+            return;
+        }
+        started = true;
+
+        Context appContext = context.getApplicationContext();
+        Handler handler = new Handler(Looper.getMainLooper());
+        Runnable report = new Runnable() {
+            @Override
+            public void run() {
+                FirestoreExecutors.background().execute(() -> report(appContext));
+                handler.postDelayed(this, REPORT_INTERVAL_MS);
+            }
+        };
+        handler.postDelayed(report, FIRST_REPORT_DELAY_MS);
+    }
+
+    private static void report(Context context) {
+        long windowReads = reads.getAndSet(0);
+        long windowCacheReads = cacheReads.getAndSet(0);
+        long windowDocuments = documents.getAndSet(0);
+        long windowCacheDocuments = cacheDocuments.getAndSet(0);
+        long sizeKb = cacheSizeBytes(context) / 1024;
+        double hitRate = windowReads == 0 ? 0 : (double) windowCacheReads / windowReads;
+
+        Log.i(TAG, String.format(Locale.US,
+                "Cache %d KB of %d MB; %d/%d reads (%.0f%%) and %d/%d documents from cache",
+                sizeKb, BuildConfig.FIRESTORE_CACHE_SIZE_MB, windowCacheReads, windowReads,
+                hitRate * 100, windowCacheDocuments, windowDocuments));
+        if (windowReads == 0) {
+            return;
+        }
+
+        Bundle params = new Bundle();
+        params.putLong("cache_size_kb", sizeKb);
+        params.putLong("cache_budget_mb", BuildConfig.FIRESTORE_CACHE_SIZE_MB);
+        params.putLong("reads", windowReads);
+        params.putLong("cache_reads", windowCacheReads);
+        params.putLong("documents", windowDocuments);
+        params.putLong("cache_documents", windowCacheDocuments);
+        params.putDouble("hit_rate", hitRate);
+        FirebaseAnalytics.getInstance(context).logEvent(EVENT_NAME, params);
+    }
+
+    /**
+     * Size on disk of Firestore's SQLite cache, 0 for a memory-only cache.
+     */
+    private static long cacheSizeBytes(Context context) {
+        File databases = context.getDatabasePath(CACHE_FILE_PREFIX).getParentFile();
+        File[] files = databases != null
+                ? databases.listFiles((dir, name) -> name.startsWith(CACHE_FILE_PREFIX))
+                : null;
+        if (files == null) {
+            return 0;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        return total;
+    }
+}
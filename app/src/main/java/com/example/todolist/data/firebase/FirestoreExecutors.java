@@ -0,0 +1,81 @@
+package com.example.todolist.data.firebase;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads for the Firestore data layer. Snapshot listeners and task
+ * callbacks run on {@link #background()}, where documents are decoded, and
+ * results are handed to callers through {@link #main()} already mapped.
+ *
+ * The background executor has a single thread and an unbounded queue, so
+ * snapshots of a live query are applied one at a time, in the order
+ * Firestore delivers them, and never on the thread that submitted them.
+ * Working sets rely on both: they are confined to this thread and patched
+ * by position.
+ */
+public final class FirestoreExecutors {
+    private static final String TAG = "FirestoreExecutors";
+
+    private static final ThreadPoolExecutor BACKGROUND = new ThreadPoolExecutor(
+            1, 1, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "firestore-decode");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private static final Executor MAIN = MAIN_HANDLER::post;
+
+    private static volatile boolean mainThreadChecks = false;
+    private static final AtomicInteger violations = new AtomicInteger();
+
+    private FirestoreExecutors() {
+    }
+
+    public static Executor background() {
+        return BACKGROUND;
+    }
+
+    public static Executor main() {
+        return MAIN;
+    }
+
+    /**
+     * Turns on {@link #checkNotMainThread(String)}. Off by default; meant
+     * for debug builds and tests.
+     */
+    public static void setMainThreadChecks(boolean enabled) {
+        mainThreadChecks = enabled;
+    }
+
+    /**
+     * Number of data-layer operations found on the main thread since checks
+     * were enabled.
+     */
+    public static int getMainThreadViolations() {
+        return violations.get();
+    }
+
+    /**
+     * Flags {@code operation} if it is running on the main thread. Logs with
+     * a stack trace pointing at the caller; does nothing unless checks are
+     * enabled.
+     */
+    public static void checkNotMainThread(String operation) {
+        if (mainThreadChecks && Looper.getMainLooper().isCurrentThread()) {
+            violations.incrementAndGet();
+            Log.w(TAG, "Data-layer work on the main thread: " + operation,
+                    new IllegalStateException(operation));
+        }
+    }
+}
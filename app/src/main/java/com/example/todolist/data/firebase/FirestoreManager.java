@@ -2,52 +2,90 @@ package com.example.todolist.data.firebase;
 
 import android.util.Log;
 
-import androidx.lifecycle.LiveData;
-import androidx.lifecycle.MutableLiveData;
-
+import com.example.todolist.data.model.BulkWriteResult;
 import com.example.todolist.data.model.Todo;
+import com.example.todolist.data.model.TodoChangeSet;
+import com.example.todolist.data.model.TodoFilter;
+import com.example.todolist.data.model.TodoStats;
 import com.example.todolist.data.model.User;
-import com.google.firebase.firestore.DocumentSnapshot;
+import com.example.todolist.perf.Perf;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
 
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Reads and writes todos and users. Holds no per-screen state, so one
+ * instance from {@link com.example.todolist.AppContainer} is shared by the
+ * whole app; live todo lists are held through {@link TodosSubscription}.
+ */
 public class FirestoreManager {
     private static final String TAG = "FirestoreManager";
     private static final String TODOS_COLLECTION = "todos";
     private static final String USERS_COLLECTION = "users";
+    public static final int TODOS_PAGE_SIZE = 50;
+    // Firestore's limit on values in one whereIn
+    private static final int MAX_IN_VALUES = 30;
 
-    private FirebaseFirestore db;
-    private ListenerRegistration todosListener;
-    private MutableLiveData<List<Todo>> todosLiveData;
-    private String currentUserId;
+    private final FirebaseFirestore db;
+    private final TodoWriteQueue writeQueue;
+    private final TodoToggleDebouncer toggleDebouncer;
+    private final BulkTodoWriter bulkWriter;
 
     public interface FirestoreCallback<T> {
         void onSuccess(T result);
         void onFailure(String error);
     }
 
+    public interface TodoChangeListener {
+        void onTodosChanged(TodoChangeSet changeSet);
+    }
+
     public FirestoreManager() {
-        db = FirebaseFirestore.getInstance();
-        todosLiveData = new MutableLiveData<>();
+        db = FirebaseConfig.getFirestore();
+        writeQueue = TodoWriteQueue.getInstance();
+        toggleDebouncer = TodoToggleDebouncer.getInstance();
+        bulkWriter = new BulkTodoWriter();
     }
 
     // Todo Operations
-    public void addTodo(Todo todo, FirestoreCallback<String> callback) {
-        Log.d(TAG, "Adding todo: " + todo.getTitle());
-        db.collection(TODOS_COLLECTION)
-                .add(todo)
-                .addOnSuccessListener(documentReference -> {
-                    Log.d(TAG, "Todo added with ID: " + documentReference.getId());
-                    callback.onSuccess(documentReference.getId());
-                })
-                .addOnFailureListener(e -> {
-                    Log.w(TAG, "Error adding todo", e);
-                    callback.onFailure(e.getMessage());
-                });
+    // Writes go through the shared TodoWriteQueue, which batches them with
+    // other writes made within a short window.
+    /**
+     * Returns the new todo's id right away; the callback fires once the
+     * write is confirmed.
+     */
+    public String addTodo(Todo todo, FirestoreCallback<String> callback) {
+        if (Perf.LOG_HOT_PATHS) {
+            Log.d(TAG, "Adding todo: " + todo.getTitle());
+        }
+        return writeQueue.add(todo, new FirestoreCallback<String>() {
+            @Override
+            public void onSuccess(String todoId) {
+                if (Perf.LOG_HOT_PATHS) {
+                    Log.d(TAG, "Todo added with ID: " + todoId);
+                }
+                callback.onSuccess(todoId);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Log.w(TAG, "Error adding todo: " + error);
+                callback.onFailure(error);
+            }
+        });
     }
 
     public void updateTodo(Todo todo, FirestoreCallback<Void> callback) {
@@ -57,120 +95,384 @@ public class FirestoreManager {
             return;
         }
 
-        Log.d(TAG, "Updating todo: " + todo.getId());
-        db.collection(TODOS_COLLECTION)
-                .document(todo.getId())
-                .set(todo)
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "Todo updated successfully: " + todo.getId());
-                    callback.onSuccess(null);
+        if (Perf.LOG_HOT_PATHS) {
+            Log.d(TAG, "Updating todo: " + todo.getId());
+        }
+        // Only the new state is known here, so there is no stats delta; a
+        // change of priority, category or completion is left to
+        // TodoStatsReconciler. Use updateTodoFields when the old todo is known.
+        writeQueue.set(todo, null, loggingCallback("Todo updated successfully: " + todo.getId(),
+                "Error updating todo", callback));
+    }
+
+    /**
+     * Writes only the given fields and stamps updatedAt on the server, so
+     * fields changed elsewhere (e.g. a toggle on another device) are left
+     * alone.
+     */
+    public void updateTodoFields(String todoId, Map<String, Object> fields, TodoStatsDelta stats,
+                                 FirestoreCallback<Void> callback) {
+        Map<String, Object> updates = new HashMap<>(fields);
+        updates.put("updatedAt", FieldValue.serverTimestamp());
+
+        if (Perf.LOG_HOT_PATHS) {
+            Log.d(TAG, "Updating fields " + fields.keySet() + " of todo: " + todoId);
+        }
+        writeQueue.update(todoId, updates, stats, loggingCallback("Todo updated successfully: " + todoId,
+                "Error updating todo", callback));
+    }
+
+    /**
+     * {@code deleted} is the todo as last known, used to update the stats
+     * document; pass null if it isn't known.
+     */
+    public void deleteTodo(String todoId, Todo deleted, FirestoreCallback<Void> callback) {
+        if (Perf.LOG_HOT_PATHS) {
+            Log.d(TAG, "Deleting todo: " + todoId);
+        }
+        writeQueue.delete(todoId, TodoStatsDelta.forDelete(deleted), loggingCallback("Todo deleted successfully: " + todoId,
+                "Error deleting todo", callback));
+    }
+
+    private static FirestoreCallback<Void> loggingCallback(String successMessage, String failureMessage,
+                                                           FirestoreCallback<Void> callback) {
+        return new FirestoreCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                if (Perf.LOG_HOT_PATHS) {
+                    Log.d(TAG, successMessage);
+                }
+                callback.onSuccess(null);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Log.w(TAG, failureMessage + ": " + error);
+                callback.onFailure(error);
+            }
+        };
+    }
+
+    /**
+     * The user's todos matching {@code filter}, newest first. Each filter
+     * value becomes an equality clause, so only matching documents leave
+     * the server; every combination has a composite index with createdAt.
+     */
+    static Query todosQuery(FirebaseFirestore db, String userId, TodoFilter filter) {
+        Query query = db.collection(TODOS_COLLECTION).whereEqualTo("userId", userId);
+        if (filter.getCompleted() != null) {
+            query = query.whereEqualTo("completed", filter.getCompleted());
+        }
+        if (filter.getPriority() != null) {
+            query = query.whereEqualTo("priority", filter.getPriority());
+        }
+        if (filter.getCategory() != null) {
+            query = query.whereEqualTo("category", filter.getCategory());
+        }
+        return query.orderBy("createdAt", Query.Direction.DESCENDING);
+    }
+
+    /**
+     * One-shot read of the page of todos matching {@code filter} created
+     * before {@code startAfter}, newest first. Pass null to read the first
+     * page.
+     */
+    public void getTodosPage(String userId, TodoFilter filter, Date startAfter, int pageSize,
+                             FirestoreCallback<List<Todo>> callback) {
+        Query query = todosQuery(db, userId, filter);
+        if (startAfter != null) {
+            query = query.startAfter(startAfter);
+        }
+
+        query.limit(pageSize)
+                .get()
+                .addOnSuccessListener(FirestoreExecutors.background(), querySnapshot -> {
+                    List<Todo> todos = toTodos(querySnapshot);
+                    if (Perf.LOG_HOT_PATHS) {
+                        Log.d(TAG, "Loaded page of " + todos.size() + " todos for user: " + userId);
+                    }
+                    deliver(callback, todos);
                 })
-                .addOnFailureListener(e -> {
-                    Log.w(TAG, "Error updating todo", e);
-                    callback.onFailure(e.getMessage());
+                .addOnFailureListener(FirestoreExecutors.background(), e -> {
+                    Log.w(TAG, "Error loading todos page", e);
+                    fail(callback, e.getMessage());
                 });
     }
 
-    public void deleteTodo(String todoId, FirestoreCallback<Void> callback) {
-        Log.d(TAG, "Deleting todo: " + todoId);
-        db.collection(TODOS_COLLECTION)
-                .document(todoId)
-                .delete()
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "Todo deleted successfully: " + todoId);
-                    callback.onSuccess(null);
+    /**
+     * The live window's query (newest page first) answered from Firestore's
+     * local cache only, without waiting for the network. Delivers an empty
+     * list when nothing is cached.
+     */
+    public void getCachedTodos(String userId, TodoFilter filter, FirestoreCallback<List<Todo>> callback) {
+        todosQuery(db, userId, filter)
+                .limit(TODOS_PAGE_SIZE)
+                .get(Source.CACHE)
+                .addOnSuccessListener(FirestoreExecutors.background(), querySnapshot -> {
+                    List<Todo> todos = toTodos(querySnapshot);
+                    if (Perf.LOG_HOT_PATHS) {
+                        Log.d(TAG, "Read " + todos.size() + " cached todos for user: " + userId);
+                    }
+                    deliver(callback, todos);
+                })
+                .addOnFailureListener(FirestoreExecutors.background(), e -> {
+                    Log.w(TAG, "Error reading cached todos", e);
+                    fail(callback, e.getMessage());
+                });
+    }
+
+    /**
+     * The server's current copy of the user's todos with the given ids.
+     * Ids missing from the result no longer exist (or aren't the user's).
+     * Always asks the server: a cache answer can't tell a deleted todo
+     * from one that was never cached, so offline this fails instead.
+     */
+    public void getTodosByIds(String userId, List<String> todoIds, FirestoreCallback<List<Todo>> callback) {
+        List<Task<QuerySnapshot>> reads = new ArrayList<>();
+        for (int i = 0; i < todoIds.size(); i += MAX_IN_VALUES) {
+            reads.add(db.collection(TODOS_COLLECTION)
+                    .whereEqualTo("userId", userId)
+                    .whereIn(FieldPath.documentId(),
+                            new ArrayList<>(todoIds.subList(i, Math.min(i + MAX_IN_VALUES, todoIds.size()))))
+                    .get(Source.SERVER));
+        }
+        Tasks.whenAllSuccess(reads)
+                .addOnSuccessListener(FirestoreExecutors.background(), results -> {
+                    List<Todo> todos = new ArrayList<>(todoIds.size());
+                    for (Object result : results) {
+                        todos.addAll(toTodos((QuerySnapshot) result));
+                    }
+                    deliver(callback, todos);
                 })
-                .addOnFailureListener(e -> {
-                    Log.w(TAG, "Error deleting todo", e);
-                    callback.onFailure(e.getMessage());
+                .addOnFailureListener(FirestoreExecutors.background(), e -> {
+                    Log.w(TAG, "Error reading todos by id", e);
+                    fail(callback, e.getMessage());
+                });
+    }
+
+    /**
+     * Counts the user's todos with server-side count() aggregations, without
+     * reading the documents themselves.
+     */
+    public void countTodos(String userId, FirestoreCallback<TodoStats> callback) {
+        Query userTodos = db.collection(TODOS_COLLECTION).whereEqualTo("userId", userId);
+        userTodos.count().get(AggregateSource.SERVER)
+                .addOnSuccessListener(FirestoreExecutors.background(), totalSnapshot -> userTodos
+                        .whereEqualTo("completed", true)
+                        .count().get(AggregateSource.SERVER)
+                        .addOnSuccessListener(FirestoreExecutors.background(), completedSnapshot -> {
+                            TodoStats stats = new TodoStats((int) totalSnapshot.getCount(),
+                                    (int) completedSnapshot.getCount());
+                            Log.d(TAG, "Counted " + stats.getTotal() + " todos for user: " + userId);
+                            deliver(callback, stats);
+                        })
+                        .addOnFailureListener(FirestoreExecutors.background(), e -> {
+                            Log.w(TAG, "Error counting completed todos", e);
+                            fail(callback, e.getMessage());
+                        }))
+                .addOnFailureListener(FirestoreExecutors.background(), e -> {
+                    Log.w(TAG, "Error counting todos", e);
+                    fail(callback, e.getMessage());
                 });
     }
 
-    public LiveData<List<Todo>> getUserTodos(String userId) {
-        Log.d(TAG, "getUserTodos called for userId: " + userId);
+    /**
+     * Rapid flips of the same todo are debounced into one write of the final
+     * state, or none if they cancel out.
+     */
+    public void toggleTodoComplete(String userId, String todoId, boolean wasCompleted, boolean isCompleted,
+                                   FirestoreCallback<Void> callback) {
+        if (Perf.LOG_HOT_PATHS) {
+            Log.d(TAG, "Toggling todo completion: " + todoId + " to " + isCompleted);
+        }
+        toggleDebouncer.toggle(userId, todoId, wasCompleted, isCompleted, loggingCallback("Todo completion status updated: " + todoId,
+                "Error updating todo completion", callback));
+    }
 
-        // Always setup a fresh listener for the user
-        setupTodosListener(userId);
-        currentUserId = userId;
+    // Bulk Operations
+    // Todos are passed as last known so the stats document can be updated;
+    // ones without a userId only carry their id and are left out of it.
+    public void setTodosCompleted(List<Todo> todos, boolean isCompleted,
+                                  FirestoreCallback<BulkWriteResult> callback) {
+        Log.d(TAG, "Setting " + todos.size() + " todos completed: " + isCompleted);
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("completed", isCompleted);
 
-        return todosLiveData;
+        List<String> ids = new ArrayList<>(todos.size());
+        Map<String, TodoStatsDelta> stats = new HashMap<>();
+        for (Todo todo : todos) {
+            ids.add(todo.getId());
+            TodoStatsDelta delta = TodoStatsDelta.forCompletion(todo.getUserId(), todo.isCompleted(), isCompleted);
+            if (delta != null) {
+                stats.put(todo.getId(), delta);
+            }
+        }
+        bulkWriter.update(ids, updates, stats, callback);
     }
 
-    private void setupTodosListener(String userId) {
-        // Remove existing listener first
-        removeListener();
+    public void deleteTodos(List<Todo> todos, FirestoreCallback<BulkWriteResult> callback) {
+        Log.d(TAG, "Deleting " + todos.size() + " todos");
+        List<String> ids = new ArrayList<>(todos.size());
+        Map<String, TodoStatsDelta> stats = new HashMap<>();
+        for (Todo todo : todos) {
+            ids.add(todo.getId());
+            TodoStatsDelta delta = TodoStatsDelta.forDelete(todo);
+            if (delta != null) {
+                stats.put(todo.getId(), delta);
+            }
+        }
+        bulkWriter.delete(ids, stats, callback);
+    }
 
-        Log.d(TAG, "Setting up fresh todos listener for user: " + userId);
+    /**
+     * All of the user's todos with the given completion state, including
+     * ones outside the loaded pages.
+     */
+    public void getTodosByCompletion(String userId, boolean isCompleted, FirestoreCallback<List<Todo>> callback) {
+        db.collection(TODOS_COLLECTION)
+                .whereEqualTo("userId", userId)
+                .whereEqualTo("completed", isCompleted)
+                .get()
+                .addOnSuccessListener(FirestoreExecutors.background(), querySnapshot -> {
+                    deliver(callback, toTodos(querySnapshot));
+                })
+                .addOnFailureListener(FirestoreExecutors.background(), e -> {
+                    Log.w(TAG, "Error querying todos by completion", e);
+                    fail(callback, e.getMessage());
+                });
+    }
 
-        todosListener = db.collection(TODOS_COLLECTION)
+    // Due-date queries, run on the server against the (userId, dueDay) and
+    // (userId, completed, dueDay) composite indexes. Days are epoch days.
+    /**
+     * Open todos due before {@code today}, oldest first.
+     */
+    public void getOverdueTodos(String userId, long today, FirestoreCallback<List<Todo>> callback) {
+        Query query = db.collection(TODOS_COLLECTION)
                 .whereEqualTo("userId", userId)
-                .orderBy("createdAt", Query.Direction.DESCENDING)
-                .addSnapshotListener((value, error) -> {
-                    if (error != null) {
-                        Log.w(TAG, "Listen failed for user: " + userId, error);
-                        return;
-                    }
+                .whereEqualTo("completed", false)
+                .whereLessThan("dueDay", today)
+                .orderBy("dueDay", Query.Direction.ASCENDING);
+        getTodos(query, "overdue", callback);
+    }
 
-                    List<Todo> todos = new ArrayList<>();
-                    if (value != null && !value.isEmpty()) {
-                        Log.d(TAG, "Received " + value.size() + " todos from Firestore for user: " + userId);
-                        for (DocumentSnapshot doc : value.getDocuments()) {
-                            try {
-                                Todo todo = doc.toObject(Todo.class);
-                                if (todo != null) {
-                                    todo.setId(doc.getId());
-                                    todos.add(todo);
-                                    Log.d(TAG, "Added todo: " + todo.getTitle() + " (ID: " + todo.getId() + ")");
-                                } else {
-                                    Log.w(TAG, "Failed to convert document to Todo: " + doc.getId());
-                                }
-                            } catch (Exception e) {
-                                Log.e(TAG, "Error converting document to Todo: " + doc.getId(), e);
-                            }
-                        }
-                    } else {
-                        Log.d(TAG, "No todos found for user: " + userId);
-                    }
+    /**
+     * Todos due from {@code fromDay} to {@code toDay}, both inclusive,
+     * soonest first.
+     */
+    public void getTodosDueBetween(String userId, long fromDay, long toDay, FirestoreCallback<List<Todo>> callback) {
+        Query query = db.collection(TODOS_COLLECTION)
+                .whereEqualTo("userId", userId)
+                .whereGreaterThanOrEqualTo("dueDay", fromDay)
+                .whereLessThanOrEqualTo("dueDay", toDay)
+                .orderBy("dueDay", Query.Direction.ASCENDING);
+        getTodos(query, "due between " + fromDay + " and " + toDay, callback);
+    }
 
-                    Log.d(TAG, "Updating LiveData with " + todos.size() + " todos for user: " + userId);
-                    todosLiveData.postValue(todos);
+    private void getTodos(Query query, String description, FirestoreCallback<List<Todo>> callback) {
+        query.get()
+                .addOnSuccessListener(FirestoreExecutors.background(), querySnapshot -> {
+                    List<Todo> todos = toTodos(querySnapshot);
+                    if (Perf.LOG_HOT_PATHS) {
+                        Log.d(TAG, "Loaded " + todos.size() + " todos " + description);
+                    }
+                    deliver(callback, todos);
+                })
+                .addOnFailureListener(FirestoreExecutors.background(), e -> {
+                    Log.w(TAG, "Error loading todos " + description, e);
+                    fail(callback, e.getMessage());
                 });
     }
 
-    public void toggleTodoComplete(String todoId, boolean isCompleted, FirestoreCallback<Void> callback) {
-        Log.d(TAG, "Toggling todo completion: " + todoId + " to " + isCompleted);
-        db.collection(TODOS_COLLECTION)
-                .document(todoId)
-                .update("completed", isCompleted)
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "Todo completion status updated: " + todoId);
-                    callback.onSuccess(null);
+    /**
+     * Reads the per-user stats document. Delivers null if it doesn't exist
+     * yet.
+     */
+    public void getTodoStats(String userId, FirestoreCallback<TodoStats> callback) {
+        TodoStatsDelta.statsRef(db, userId)
+                .get()
+                .addOnSuccessListener(FirestoreExecutors.background(), snapshot -> {
+                    if (!snapshot.exists()) {
+                        deliver(callback, null);
+                        return;
+                    }
+                    Long total = snapshot.getLong(TodoStatsDelta.FIELD_TOTAL);
+                    Long completed = snapshot.getLong(TodoStatsDelta.FIELD_COMPLETED);
+                    deliver(callback, new TodoStats(
+                            total != null ? total.intValue() : 0,
+                            completed != null ? completed.intValue() : 0,
+                            countsOf(snapshot.get(TodoStatsDelta.FIELD_BY_PRIORITY)),
+                            countsOf(snapshot.get(TodoStatsDelta.FIELD_BY_CATEGORY))));
                 })
-                .addOnFailureListener(e -> {
-                    Log.w(TAG, "Error updating todo completion", e);
-                    callback.onFailure(e.getMessage());
+                .addOnFailureListener(FirestoreExecutors.background(), e -> {
+                    Log.w(TAG, "Error reading todo stats", e);
+                    fail(callback, e.getMessage());
                 });
     }
 
+    private List<Todo> toTodos(QuerySnapshot querySnapshot) {
+        FirestoreExecutors.checkNotMainThread("FirestoreManager.toTodos");
+        FirestoreCacheMonitor.record(querySnapshot);
+        Perf.beginSection("FirestoreManager.toTodos");
+        long start = Perf.start();
+        try {
+            List<Todo> todos = new ArrayList<>(querySnapshot.size());
+            for (QueryDocumentSnapshot doc : querySnapshot) {
+                try {
+                    todos.add(TodoCodec.decode(doc));
+                } catch (Exception e) {
+                    Log.e(TAG, "Error converting document to Todo: " + doc.getId(), e);
+                }
+            }
+            Perf.DOCUMENTS_DECODED.add(todos.size());
+            return todos;
+        } finally {
+            Perf.QUERY_MAPPING.stop(start);
+            Perf.endSection();
+        }
+    }
+
+    // Reads are mapped on the background executor; callers get the result
+    // on the main thread
+    private static <T> void deliver(FirestoreCallback<T> callback, T result) {
+        FirestoreExecutors.main().execute(() -> callback.onSuccess(result));
+    }
+
+    private static void fail(FirestoreCallback<?> callback, String error) {
+        FirestoreExecutors.main().execute(() -> callback.onFailure(error));
+    }
+
+    private static Map<String, Integer> countsOf(Object field) {
+        Map<String, Integer> counts = new HashMap<>();
+        if (field instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) field).entrySet()) {
+                if (entry.getValue() instanceof Number) {
+                    counts.put(String.valueOf(entry.getKey()), ((Number) entry.getValue()).intValue());
+                }
+            }
+        }
+        return counts;
+    }
+
     // User Operations
     public void getUser(String userId, FirestoreCallback<User> callback) {
         Log.d(TAG, "Getting user: " + userId);
         db.collection(USERS_COLLECTION)
                 .document(userId)
                 .get()
-                .addOnSuccessListener(documentSnapshot -> {
+                .addOnSuccessListener(FirestoreExecutors.background(), documentSnapshot -> {
                     if (documentSnapshot.exists()) {
-                        User user = documentSnapshot.toObject(User.class);
+                        User user = UserCodec.decode(documentSnapshot);
                         Log.d(TAG, "User retrieved successfully: " + userId);
-                        callback.onSuccess(user);
+                        deliver(callback, user);
                     } else {
                         Log.w(TAG, "User not found: " + userId);
-                        callback.onFailure("User not found");
+                        fail(callback, "User not found");
                     }
                 })
-                .addOnFailureListener(e -> {
+                .addOnFailureListener(FirestoreExecutors.background(), e -> {
                     Log.w(TAG, "Error getting user", e);
-                    callback.onFailure(e.getMessage());
+                    fail(callback, e.getMessage());
                 });
     }
 
@@ -178,31 +480,14 @@ public class FirestoreManager {
         Log.d(TAG, "Updating user: " + user.getUid());
         db.collection(USERS_COLLECTION)
                 .document(user.getUid())
-                .set(user)
-                .addOnSuccessListener(aVoid -> {
+                .set(UserCodec.encode(user))
+                .addOnSuccessListener(FirestoreExecutors.background(), aVoid -> {
                     Log.d(TAG, "User updated successfully: " + user.getUid());
-                    callback.onSuccess(null);
+                    deliver(callback, null);
                 })
-                .addOnFailureListener(e -> {
+                .addOnFailureListener(FirestoreExecutors.background(), e -> {
                     Log.w(TAG, "Error updating user", e);
-                    callback.onFailure(e.getMessage());
+                    fail(callback, e.getMessage());
                 });
     }
-
-    public void removeListener() {
-        if (todosListener != null) {
-            Log.d(TAG, "Removing todos listener for user: " + currentUserId);
-            todosListener.remove();
-            todosListener = null;
-        }
-    }
-
-    public void forceRefresh() {
-        if (currentUserId != null) {
-            Log.d(TAG, "Force refreshing data for user: " + currentUserId);
-            setupTodosListener(currentUserId);
-        } else {
-            Log.w(TAG, "Cannot force refresh - no current user ID");
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,81 @@
+package com.example.todolist.data.firebase;
+
+import com.example.todolist.data.model.Todo;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes todo documents field by field instead of through
+ * Firestore's reflective class mapper, which resolves getters, setters and
+ * annotations for every document of every snapshot.
+ *
+ * Mirrors what the mapper does with {@link Todo}'s annotations: the id
+ * comes from the document, not a field; missing fields keep Todo's
+ * defaults; null timestamps are written as server timestamps. Any field
+ * added to Todo has to be added here too.
+ */
+public final class TodoCodec {
+    static final String FIELD_TITLE = "title";
+    static final String FIELD_DESCRIPTION = "description";
+    static final String FIELD_DATE = "date";
+    static final String FIELD_DUE_DAY = "dueDay";
+    static final String FIELD_USER_ID = "userId";
+    static final String FIELD_COMPLETED = "completed";
+    static final String FIELD_PRIORITY = "priority";
+    static final String FIELD_CATEGORY = "category";
+    static final String FIELD_CREATED_AT = "createdAt";
+    static final String FIELD_UPDATED_AT = "updatedAt";
+
+    private static final int FIELD_COUNT = 10;
+
+    private TodoCodec() {
+    }
+
+    /**
+     * Throws a RuntimeException if a field holds the wrong type, like the
+     * reflective mapper.
+     */
+    public static Todo decode(DocumentSnapshot doc) {
+        Todo todo = new Todo();
+        todo.setId(doc.getId());
+        todo.setTitle(doc.getString(FIELD_TITLE));
+        todo.setDescription(doc.getString(FIELD_DESCRIPTION));
+        todo.setDate(doc.getString(FIELD_DATE));
+        todo.setDueDay(doc.getLong(FIELD_DUE_DAY));
+        todo.setUserId(doc.getString(FIELD_USER_ID));
+        Boolean completed = doc.getBoolean(FIELD_COMPLETED);
+        todo.setCompleted(completed != null && completed);
+        todo.setPriority(doc.getString(FIELD_PRIORITY));
+        todo.setCategory(doc.getString(FIELD_CATEGORY));
+        todo.setCreatedAt(doc.getDate(FIELD_CREATED_AT));
+        todo.setUpdatedAt(doc.getDate(FIELD_UPDATED_AT));
+        return todo;
+    }
+
+    /**
+     * Data for a full set() of the todo's document.
+     */
+    public static Map<String, Object> encode(Todo todo) {
+        Map<String, Object> data = new HashMap<>(FIELD_COUNT * 2);
+        data.put(FIELD_TITLE, todo.getTitle());
+        data.put(FIELD_DESCRIPTION, todo.getDescription());
+        data.put(FIELD_DATE, todo.getDate());
+        data.put(FIELD_DUE_DAY, todo.getDueDay());
+        data.put(FIELD_USER_ID, todo.getUserId());
+        data.put(FIELD_COMPLETED, todo.isCompleted());
+        data.put(FIELD_PRIORITY, todo.getPriority());
+        data.put(FIELD_CATEGORY, todo.getCategory());
+        data.put(FIELD_CREATED_AT, timestamp(todo.getCreatedAt()));
+        data.put(FIELD_UPDATED_AT, timestamp(todo.getUpdatedAt()));
+        return data;
+    }
+
+    // @ServerTimestamp: the server fills in a null date
+    private static Object timestamp(Date date) {
+        return date != null ? date : FieldValue.serverTimestamp();
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.todolist.data.firebase;
+
+import com.example.todolist.data.model.Todo;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Change to a user's todo counters, written with FieldValue.increment into
+ * {@code users/{uid}/stats/todos} in the same batch as the todo write that
+ * caused it. Factory methods return null when the change can't be derived
+ * (e.g. the todo's previous state is unknown); the reconciler repairs that.
+ */
+public class TodoStatsDelta {
+    static final String USERS_COLLECTION = "users";
+    static final String STATS_COLLECTION = "stats";
+    static final String TODO_STATS_DOCUMENT = "todos";
+
+    static final String FIELD_TOTAL = "total";
+    static final String FIELD_COMPLETED = "completed";
+    static final String FIELD_BY_PRIORITY = "byPriority";
+    static final String FIELD_BY_CATEGORY = "byCategory";
+    static final String FIELD_UPDATED_AT = "updatedAt";
+
+    // Todo's own defaults for documents written without these fields
+    private static final String DEFAULT_PRIORITY = "MEDIUM";
+    private static final String DEFAULT_CATEGORY = "General";
+
+    private final String userId;
+    private long total;
+    private long completed;
+    private final Map<String, Long> byPriority = new HashMap<>();
+    private final Map<String, Long> byCategory = new HashMap<>();
+
+    public TodoStatsDelta(String userId) {
+        this.userId = userId;
+    }
+
+    public static DocumentReference statsRef(FirebaseFirestore db, String userId) {
+        return db.collection(USERS_COLLECTION).document(userId)
+                .collection(STATS_COLLECTION).document(TODO_STATS_DOCUMENT);
+    }
+
+    public static TodoStatsDelta forAdd(Todo todo) {
+        if (todo == null || todo.getUserId() == null) {
+            return null;
+        }
+        TodoStatsDelta delta = new TodoStatsDelta(todo.getUserId());
+        delta.count(todo, 1);
+        return delta;
+    }
+
+    public static TodoStatsDelta forDelete(Todo todo) {
+        if (todo == null || todo.getUserId() == null) {
+            return null;
+        }
+        TodoStatsDelta delta = new TodoStatsDelta(todo.getUserId());
+        delta.count(todo, -1);
+        return delta;
+    }
+
+    public static TodoStatsDelta forCompletion(String userId, boolean from, boolean to) {
+        if (userId == null || from == to) {
+            return null;
+        }
+        TodoStatsDelta delta = new TodoStatsDelta(userId);
+        delta.completed = to ? 1 : -1;
+        return delta;
+    }
+
+    /**
+     * Moves between priority and category buckets for an edit of
+     * {@code before} into {@code after}.
+     */
+    public static TodoStatsDelta forEdit(Todo before, Todo after) {
+        if (before == null || before.getUserId() == null) {
+            return null;
+        }
+        TodoStatsDelta delta = new TodoStatsDelta(before.getUserId());
+        String oldPriority = priorityOf(before);
+        String newPriority = priorityOf(after);
+        if (!oldPriority.equals(newPriority)) {
+            delta.bump(delta.byPriority, oldPriority, -1);
+            delta.bump(delta.byPriority, newPriority, 1);
+        }
+        String oldCategory = categoryOf(before);
+        String newCategory = categoryOf(after);
+        if (!oldCategory.equals(newCategory)) {
+            delta.bump(delta.byCategory, oldCategory, -1);
+            delta.bump(delta.byCategory, newCategory, 1);
+        }
+        return delta.isEmpty() ? null : delta;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * Adds {@code other} into this delta. Both must be for the same user.
+     */
+    public void add(TodoStatsDelta other) {
+        total += other.total;
+        completed += other.completed;
+        for (Map.Entry<String, Long> entry : other.byPriority.entrySet()) {
+            bump(byPriority, entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Long> entry : other.byCategory.entrySet()) {
+            bump(byCategory, entry.getKey(), entry.getValue());
+        }
+    }
+
+    public boolean isEmpty() {
+        return total == 0 && completed == 0 && byPriority.isEmpty() && byCategory.isEmpty();
+    }
+
+    /**
+     * Data for a merge set() on the stats document. Nested maps rather than
+     * dotted paths, since set() doesn't interpret dots.
+     */
+    Map<String, Object> toUpdate() {
+        Map<String, Object> data = new HashMap<>();
+        if (total != 0) {
+            data.put(FIELD_TOTAL, FieldValue.increment(total));
+        }
+        if (completed != 0) {
+            data.put(FIELD_COMPLETED, FieldValue.increment(completed));
+        }
+        if (!byPriority.isEmpty()) {
+            data.put(FIELD_BY_PRIORITY, increments(byPriority));
+        }
+        if (!byCategory.isEmpty()) {
+            data.put(FIELD_BY_CATEGORY, increments(byCategory));
+        }
+        data.put(FIELD_UPDATED_AT, FieldValue.serverTimestamp());
+        return data;
+    }
+
+    private void count(Todo todo, long sign) {
+        total += sign;
+        if (todo.isCompleted()) {
+            completed += sign;
+        }
+        bump(byPriority, priorityOf(todo), sign);
+        bump(byCategory, categoryOf(todo), sign);
+    }
+
+    private void bump(Map<String, Long> counts, String key, long by) {
+        long value = counts.containsKey(key) ? counts.get(key) + by : by;
+        if (value == 0) {
+            counts.remove(key);
+        } else {
+            counts.put(key, value);
+        }
+    }
+
+    private static Map<String, Object> increments(Map<String, Long> counts) {
+        Map<String, Object> result = new HashMap<>();
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            result.put(entry.getKey(), FieldValue.increment(entry.getValue()));
+        }
+        return result;
+    }
+
+    static String priorityOf(Todo todo) {
+        return todo.getPriority() != null ? todo.getPriority() : DEFAULT_PRIORITY;
+    }
+
+    static String categoryOf(Todo todo) {
+        return todo.getCategory() != null ? todo.getCategory() : DEFAULT_CATEGORY;
+    }
+}
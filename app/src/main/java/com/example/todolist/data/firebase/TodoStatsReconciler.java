@@ -0,0 +1,161 @@
+package com.example.todolist.data.firebase;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.todolist.data.model.Todo;
+import com.example.todolist.data.model.TodoStats;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.AggregateQuerySnapshot;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Repairs drift in the per-user stats document by recounting with
+ * server-side count() aggregations and overwriting it. Drift comes from
+ * writes whose previous state wasn't known locally, writes made by older
+ * app versions, and the stats document not existing yet.
+ *
+ * Runs at most once per {@link #MIN_INTERVAL_MS} per user on this device.
+ * Increments committed while a recount is in flight can be lost; the next
+ * run picks them up.
+ */
+public class TodoStatsReconciler {
+    private static final String TAG = "TodoStatsReconciler";
+    private static final String TODOS_COLLECTION = "todos";
+    private static final String PREFS_NAME = "todo_stats";
+    private static final String KEY_RECONCILED_AT = "reconciled_at_";
+    private static final long MIN_INTERVAL_MS = 24 * 60 * 60 * 1000L;
+
+    private final FirebaseFirestore db;
+    private final SharedPreferences prefs;
+    private final FirestoreManager firestoreManager;
+
+    public TodoStatsReconciler(Context context, FirestoreManager firestoreManager) {
+        this.db = FirebaseConfig.getFirestore();
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.firestoreManager = firestoreManager;
+    }
+
+    public void reconcileIfStale(String userId) {
+        long last = prefs.getLong(KEY_RECONCILED_AT + userId, 0);
+        if (System.currentTimeMillis() - last < MIN_INTERVAL_MS) {
+            return;
+        }
+        reconcile(userId, new FirestoreManager.FirestoreCallback<TodoStats>() {
+            @Override
+            public void onSuccess(TodoStats result) {
+                prefs.edit().putLong(KEY_RECONCILED_AT + userId, System.currentTimeMillis()).apply();
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Log.w(TAG, "Reconciling todo stats failed: " + error);
+            }
+        });
+    }
+
+    public void reconcile(String userId, FirestoreManager.FirestoreCallback<TodoStats> callback) {
+        firestoreManager.getTodoStats(userId, new FirestoreManager.FirestoreCallback<TodoStats>() {
+            @Override
+            public void onSuccess(TodoStats stored) {
+                // Every value the add/edit screens offer, plus any others
+                // already in the stats document
+                Set<String> priorities = new LinkedHashSet<>(Todo.PRIORITIES);
+                Set<String> categories = new LinkedHashSet<>(Todo.CATEGORIES);
+                if (stored != null) {
+                    priorities.addAll(stored.getByPriority().keySet());
+                    categories.addAll(stored.getByCategory().keySet());
+                }
+                recount(userId, new ArrayList<>(priorities), new ArrayList<>(categories), callback);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                callback.onFailure(error);
+            }
+        });
+    }
+
+    private void recount(String userId, List<String> priorities, List<String> categories,
+                         FirestoreManager.FirestoreCallback<TodoStats> callback) {
+        Query userTodos = db.collection(TODOS_COLLECTION).whereEqualTo("userId", userId);
+
+        List<Task<AggregateQuerySnapshot>> counts = new ArrayList<>();
+        counts.add(count(userTodos));
+        counts.add(count(userTodos.whereEqualTo("completed", true)));
+        for (String priority : priorities) {
+            counts.add(count(userTodos.whereEqualTo("priority", priority)));
+        }
+        for (String category : categories) {
+            counts.add(count(userTodos.whereEqualTo("category", category)));
+        }
+
+        Tasks.whenAllSuccess(counts)
+                .addOnSuccessListener(results -> {
+                    int i = 0;
+                    int total = countAt(results, i++);
+                    int completed = countAt(results, i++);
+                    Map<String, Integer> byPriority = new HashMap<>();
+                    for (String priority : priorities) {
+                        putNonZero(byPriority, priority, countAt(results, i++));
+                    }
+                    Map<String, Integer> byCategory = new HashMap<>();
+                    for (String category : categories) {
+                        putNonZero(byCategory, category, countAt(results, i++));
+                    }
+                    write(userId, new TodoStats(total, completed, byPriority, byCategory), callback);
+                })
+                .addOnFailureListener(e -> {
+                    Log.w(TAG, "Error recounting todos", e);
+                    callback.onFailure(e.getMessage());
+                });
+    }
+
+    private void write(String userId, TodoStats stats, FirestoreManager.FirestoreCallback<TodoStats> callback) {
+        Map<String, Object> data = new HashMap<>();
+        data.put(TodoStatsDelta.FIELD_TOTAL, stats.getTotal());
+        data.put(TodoStatsDelta.FIELD_COMPLETED, stats.getCompleted());
+        data.put(TodoStatsDelta.FIELD_BY_PRIORITY, new HashMap<>(stats.getByPriority()));
+        data.put(TodoStatsDelta.FIELD_BY_CATEGORY, new HashMap<>(stats.getByCategory()));
+        data.put(TodoStatsDelta.FIELD_UPDATED_AT, FieldValue.serverTimestamp());
+        data.put("reconciledAt", FieldValue.serverTimestamp());
+
+        TodoStatsDelta.statsRef(db, userId)
+                .set(data)
+                .addOnSuccessListener(aVoid -> {
+                    Log.d(TAG, "Reconciled todo stats for user " + userId + ": total=" + stats.getTotal()
+                            + ", completed=" + stats.getCompleted());
+                    callback.onSuccess(stats);
+                })
+                .addOnFailureListener(e -> {
+                    Log.w(TAG, "Error writing reconciled todo stats", e);
+                    callback.onFailure(e.getMessage());
+                });
+    }
+
+    private static Task<AggregateQuerySnapshot> count(Query query) {
+        return query.count().get(AggregateSource.SERVER);
+    }
+
+    private static int countAt(List<Object> results, int index) {
+        return (int) ((AggregateQuerySnapshot) results.get(index)).getCount();
+    }
+
+    private static void putNonZero(Map<String, Integer> counts, String key, int value) {
+        if (value != 0) {
+            counts.put(key, value);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.todolist.data.firebase;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collapses rapid completion flips of the same todo into one write of the
+ * final state. A burst ends once the todo has been quiet for
+ * {@code quietMs}, and two writes to the same document are spaced at least
+ * {@code minWriteIntervalMs} apart (Firestore throttles sustained writes
+ * above about one per second per document). A burst that ends in the state
+ * it started from writes nothing.
+ *
+ * Every caller's callback fires when its burst settles. Safe to call from
+ * any thread.
+ */
+public class TodoToggleDebouncer {
+    private static final String TAG = "TodoToggleDebouncer";
+    private static final long DEFAULT_QUIET_MS = 400;
+    private static final long DEFAULT_MIN_WRITE_INTERVAL_MS = 1000;
+
+    private static TodoToggleDebouncer instance;
+
+    private final TodoWriteQueue writeQueue;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Metrics metrics = new Metrics();
+
+    private final Object lock = new Object();
+    private final Map<String, Burst> bursts = new HashMap<>();
+    private final Map<String, Long> lastWriteAt = new HashMap<>();
+
+    private long quietMs = DEFAULT_QUIET_MS;
+    private long minWriteIntervalMs = DEFAULT_MIN_WRITE_INTERVAL_MS;
+
+    public static class Metrics {
+        private final AtomicLong flipsReceived = new AtomicLong();
+        private final AtomicLong writesIssued = new AtomicLong();
+        private final AtomicLong writesSuppressed = new AtomicLong();
+        private final AtomicLong burstsCancelled = new AtomicLong();
+
+        public long getFlipsReceived() {
+            return flipsReceived.get();
+        }
+
+        public long getWritesIssued() {
+            return writesIssued.get();
+        }
+
+        /**
+         * Flips that never became a write of their own.
+         */
+        public long getWritesSuppressed() {
+            return writesSuppressed.get();
+        }
+
+        /**
+         * Bursts that ended in their starting state and wrote nothing.
+         */
+        public long getBurstsCancelled() {
+            return burstsCancelled.get();
+        }
+
+        @Override
+        public String toString() {
+            return "flips=" + getFlipsReceived()
+                    + ", writes=" + getWritesIssued()
+                    + ", suppressed=" + getWritesSuppressed()
+                    + ", cancelled=" + getBurstsCancelled();
+        }
+    }
+
+    /**
+     * Flips of one todo that have not been written yet.
+     */
+    private static class Burst {
+        final String userId;
+        final String todoId;
+        // State before the first flip of the burst
+        final boolean initialState;
+        boolean finalState;
+        int flips;
+        final List<FirestoreManager.FirestoreCallback<Void>> callbacks = new ArrayList<>();
+        final Runnable flushRunnable;
+
+        Burst(String userId, String todoId, boolean initialState, Runnable flushRunnable) {
+            this.userId = userId;
+            this.todoId = todoId;
+            this.initialState = initialState;
+            this.flushRunnable = flushRunnable;
+        }
+    }
+
+    private TodoToggleDebouncer() {
+        this(TodoWriteQueue.getInstance());
+    }
+
+    @VisibleForTesting
+    TodoToggleDebouncer(TodoWriteQueue writeQueue) {
+        this.writeQueue = writeQueue;
+    }
+
+    public static synchronized TodoToggleDebouncer getInstance() {
+        if (instance == null) {
+            instance = new TodoToggleDebouncer();
+        }
+        return instance;
+    }
+
+    public void setQuietMs(long quietMs) {
+        this.quietMs = quietMs;
+    }
+
+    public void setMinWriteIntervalMs(long minWriteIntervalMs) {
+        this.minWriteIntervalMs = minWriteIntervalMs;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Records that the todo went from {@code wasCompleted}, as the caller
+     * last saw it, to {@code completed}. The first call of a burst fixes the
+     * state the burst started from; a call that changes nothing is counted
+     * like any other and writes nothing unless later calls do.
+     */
+    public void toggle(String userId, String todoId, boolean wasCompleted, boolean completed,
+                       FirestoreManager.FirestoreCallback<Void> callback) {
+        metrics.flipsReceived.incrementAndGet();
+        synchronized (lock) {
+            Burst burst = bursts.get(todoId);
+            if (burst == null) {
+                burst = new Burst(userId, todoId, wasCompleted, () -> flush(todoId));
+                bursts.put(todoId, burst);
+            } else {
+                mainHandler.removeCallbacks(burst.flushRunnable);
+            }
+            burst.finalState = completed;
+            burst.flips++;
+            burst.callbacks.add(callback);
+            mainHandler.postDelayed(burst.flushRunnable, delayFor(todoId));
+        }
+    }
+
+    // Caller holds lock
+    private long delayFor(String todoId) {
+        Long last = lastWriteAt.get(todoId);
+        if (last == null) {
+            return quietMs;
+        }
+        long sinceLastWrite = SystemClock.elapsedRealtime() - last;
+        return Math.max(quietMs, minWriteIntervalMs - sinceLastWrite);
+    }
+
+    private void flush(String todoId) {
+        Burst burst;
+        synchronized (lock) {
+            burst = bursts.remove(todoId);
+            if (burst == null) {
+                return;
+            }
+            if (burst.finalState != burst.initialState) {
+                lastWriteAt.put(todoId, SystemClock.elapsedRealtime());
+            }
+        }
+
+        if (burst.finalState == burst.initialState) {
+            // Flipped back to where it started: nothing to write
+            metrics.burstsCancelled.incrementAndGet();
+            metrics.writesSuppressed.addAndGet(burst.flips);
+            Log.d(TAG, "Dropped " + burst.flips + " flips of " + todoId + " that cancel out");
+            complete(burst.callbacks, null);
+            return;
+        }
+
+        metrics.writesIssued.incrementAndGet();
+        metrics.writesSuppressed.addAndGet(burst.flips - 1);
+        if (burst.flips > 1) {
+            Log.d(TAG, "Collapsed " + burst.flips + " flips of " + todoId + " into one write");
+        }
+
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("completed", burst.finalState);
+        TodoStatsDelta stats = TodoStatsDelta.forCompletion(burst.userId, burst.initialState, burst.finalState);
+        writeQueue.update(todoId, updates, stats, new FirestoreManager.FirestoreCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                complete(burst.callbacks, null);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                complete(burst.callbacks, error);
+            }
+        });
+    }
+
+    private static void complete(List<FirestoreManager.FirestoreCallback<Void>> callbacks, String error) {
+        for (FirestoreManager.FirestoreCallback<Void> callback : callbacks) {
+            if (error == null) {
+                callback.onSuccess(null);
+            } else {
+                callback.onFailure(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.todolist.data.firebase;
+
+import android.util.Log;
+
+import com.example.todolist.data.model.Todo;
+import com.example.todolist.data.model.TodoChangeSet;
+import com.example.todolist.perf.Perf;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ordered, id-indexed copy of a todo query result that is patched in place
+ * from {@link QuerySnapshot#getDocumentChanges()}. Only added and modified
+ * documents are deserialized, so the cost of a snapshot is proportional to
+ * what changed rather than to the size of the list.
+ *
+ * For a query with a limit, removals of the oldest todos caused by newer
+ * ones entering the window are reported as EVICTED rather than REMOVED.
+ *
+ * Not thread-safe. The registry confines each working set to
+ * {@link FirestoreExecutors#background()}.
+ */
+public class TodoWorkingSet {
+    private static final String TAG = "TodoWorkingSet";
+
+    private final int limit;
+
+    private final List<Todo> todos = new ArrayList<>();
+    private final Map<String, Todo> todosById = new HashMap<>();
+    private boolean receivedFirstSnapshot = false;
+    // False while a document that failed to decode is missing from the list,
+    // in which case Firestore's indices no longer line up with ours.
+    private boolean inSync = false;
+
+    /**
+     * @param limit the query's limit, or 0 for an unlimited query
+     */
+    public TodoWorkingSet(int limit) {
+        this.limit = limit;
+    }
+
+    public TodoChangeSet apply(QuerySnapshot snapshot) {
+        FirestoreExecutors.checkNotMainThread("TodoWorkingSet.apply");
+        List<DocumentChange> documentChanges = snapshot.getDocumentChanges();
+
+        // Decode up front so a bad document cannot leave the positional
+        // patching below half applied.
+        Map<String, Todo> decoded = new HashMap<>();
+        boolean decodeFailed = false;
+        for (DocumentChange dc : documentChanges) {
+            if (dc.getType() == DocumentChange.Type.REMOVED) {
+                continue;
+            }
+            Todo todo = toTodo(dc.getDocument());
+            if (todo != null) {
+                decoded.put(todo.getId(), todo);
+            } else {
+                decodeFailed = true;
+            }
+        }
+
+        Perf.DOCUMENTS_DECODED.add(decoded.size());
+        boolean fromCache = snapshot.getMetadata().isFromCache();
+
+        if (!receivedFirstSnapshot || decodeFailed || !inSync) {
+            receivedFirstSnapshot = true;
+            return rebuild(snapshot, decoded, fromCache);
+        }
+
+        List<TodoChangeSet.Change> changes = new ArrayList<>(documentChanges.size());
+        List<Integer> removals = new ArrayList<>();
+        for (DocumentChange dc : documentChanges) {
+            String id = dc.getDocument().getId();
+            int oldIndex = dc.getOldIndex();
+            int newIndex = dc.getNewIndex();
+
+            switch (dc.getType()) {
+                case ADDED: {
+                    Todo todo = decoded.get(id);
+                    todos.add(newIndex, todo);
+                    todosById.put(id, todo);
+                    changes.add(new TodoChangeSet.Change(TodoChangeSet.Type.ADDED, todo, -1, newIndex));
+                    break;
+                }
+                case MODIFIED: {
+                    Todo todo = decoded.get(id);
+                    if (oldIndex == newIndex) {
+                        todos.set(newIndex, todo);
+                    } else {
+                        todos.remove(oldIndex);
+                        todos.add(newIndex, todo);
+                    }
+                    todosById.put(id, todo);
+                    changes.add(new TodoChangeSet.Change(TodoChangeSet.Type.MODIFIED, todo, oldIndex, newIndex));
+                    break;
+                }
+                case REMOVED: {
+                    Todo removed = todos.remove(oldIndex);
+                    todosById.remove(id);
+                    removals.add(changes.size());
+                    changes.add(new TodoChangeSet.Change(TodoChangeSet.Type.REMOVED, removed, oldIndex, -1));
+                    break;
+                }
+            }
+        }
+
+        if (isFull() && !removals.isEmpty()) {
+            markEvictions(changes, removals);
+        }
+
+        return new TodoChangeSet(changes, todos.size(), false, isFull(), fromCache);
+    }
+
+    private boolean isFull() {
+        return limit > 0 && todos.size() >= limit;
+    }
+
+    /**
+     * A full window that lost a todo no newer than its current oldest entry
+     * only had it pushed out. A real delete from a full window is always
+     * backfilled with an older todo, so the deleted one is newer than the
+     * window's new oldest entry.
+     */
+    private void markEvictions(List<TodoChangeSet.Change> changes, List<Integer> removals) {
+        Date oldestInWindow = todos.get(todos.size() - 1).getCreatedAt();
+        if (oldestInWindow == null) {
+            return;
+        }
+        for (int index : removals) {
+            TodoChangeSet.Change removal = changes.get(index);
+            Date createdAt = removal.getTodo().getCreatedAt();
+            if (createdAt != null && !createdAt.after(oldestInWindow)) {
+                changes.set(index, new TodoChangeSet.Change(TodoChangeSet.Type.EVICTED,
+                        removal.getTodo(), removal.getOldIndex(), -1));
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the list in snapshot order, reusing already decoded todos for
+     * documents that did not change. Documents that fail to decode are left
+     * out, which is why positions have to be recomputed here.
+     */
+    private TodoChangeSet rebuild(QuerySnapshot snapshot, Map<String, Todo> decoded, boolean fromCache) {
+        Map<String, Todo> previous = new HashMap<>(todosById);
+        todos.clear();
+        todosById.clear();
+
+        List<TodoChangeSet.Change> changes = new ArrayList<>(snapshot.size());
+        for (QueryDocumentSnapshot doc : snapshot) {
+            Todo todo = decoded.get(doc.getId());
+            if (todo == null) {
+                todo = previous.get(doc.getId());
+            }
+            if (todo == null) {
+                continue;
+            }
+            changes.add(new TodoChangeSet.Change(TodoChangeSet.Type.ADDED, todo, -1, todos.size()));
+            todos.add(todo);
+            todosById.put(todo.getId(), todo);
+        }
+
+        inSync = todos.size() == snapshot.size();
+        return new TodoChangeSet(changes, todos.size(), true, limit > 0 && snapshot.size() >= limit, fromCache);
+    }
+
+    private Todo toTodo(QueryDocumentSnapshot doc) {
+        try {
+            return TodoCodec.decode(doc);
+        } catch (Exception e) {
+            Log.e(TAG, "Error converting document to Todo: " + doc.getId(), e);
+            return null;
+        }
+    }
+
+    /**
+     * The current contents expressed as a rebuild, for listeners that join
+     * after the first snapshot has already been applied.
+     */
+    public TodoChangeSet asInitialChangeSet() {
+        return initialChangeSet(todos, isFull(), false);
+    }
+
+    /**
+     * {@code todos} expressed as a rebuild, e.g. from a published
+     * {@link #snapshot()} on another thread.
+     */
+    public static TodoChangeSet initialChangeSet(List<Todo> todos, boolean partial, boolean fromCache) {
+        List<TodoChangeSet.Change> changes = new ArrayList<>(todos.size());
+        for (int i = 0; i < todos.size(); i++) {
+            changes.add(new TodoChangeSet.Change(TodoChangeSet.Type.ADDED, todos.get(i), -1, i));
+        }
+        return new TodoChangeSet(changes, todos.size(), true, partial, fromCache);
+    }
+
+    public boolean hasReceivedFirstSnapshot() {
+        return receivedFirstSnapshot;
+    }
+
+    public Todo get(String todoId) {
+        return todosById.get(todoId);
+    }
+
+    public int size() {
+        return todos.size();
+    }
+
+    /**
+     * Copy of the current list, safe to hand to observers.
+     */
+    public List<Todo> snapshot() {
+        return new ArrayList<>(todos);
+    }
+
+    public void clear() {
+        todos.clear();
+        todosById.clear();
+        receivedFirstSnapshot = false;
+        inSync = false;
+    }
+}
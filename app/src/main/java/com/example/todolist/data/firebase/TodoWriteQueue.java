@@ -0,0 +1,445 @@
+package com.example.todolist.data.firebase;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.example.todolist.data.model.Todo;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects todo writes for a short window and commits them as a single
+ * {@link WriteBatch}. Writes to the same document inside a window are
+ * merged (consecutive field updates combine, a delete supersedes earlier
+ * writes, an add followed by a delete cancels out) and every caller still
+ * gets its own callback once the batch settles.
+ *
+ * If a batch fails, each document's writes are retried as their own batch
+ * so one bad write (e.g. updating a todo deleted on another device) does
+ * not fail the others. Safe to call from any thread. Callbacks always run
+ * on the main thread, never from inside an enqueueing call, including
+ * the ones settled without a commit (a cancelled add, an update of a todo
+ * with a pending delete).
+ *
+ * Writes may carry a {@link TodoStatsDelta}; the deltas of every document
+ * in a batch are summed per user and written to the stats document in
+ * that same batch.
+ */
+public class TodoWriteQueue {
+    private static final String TAG = "TodoWriteQueue";
+    private static final String TODOS_COLLECTION = "todos";
+    private static final long DEFAULT_WINDOW_MS = 150;
+    // Firestore's hard limit for a single batch
+    public static final int MAX_BATCH_WRITES = 500;
+    // Room left in each batch for stats document writes
+    static final int STATS_WRITES_RESERVE = 5;
+
+    private static TodoWriteQueue instance;
+
+    private final CollectionReference todos;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable flushRunnable = this::flush;
+    private final Metrics metrics = new Metrics();
+
+    private final Object lock = new Object();
+    private Map<String, DocWrites> pending = new LinkedHashMap<>();
+    private int pendingWriteCount = 0;
+    private boolean flushScheduled = false;
+
+    private long windowMs = DEFAULT_WINDOW_MS;
+    private int maxBatchWrites = MAX_BATCH_WRITES;
+
+    public static class Metrics {
+        private final AtomicLong opsEnqueued = new AtomicLong();
+        private final AtomicLong writesCommitted = new AtomicLong();
+        private final AtomicLong batchesCommitted = new AtomicLong();
+        private final AtomicLong batchesFailed = new AtomicLong();
+        private final AtomicLong totalCommitLatencyMs = new AtomicLong();
+        private final AtomicLong lastCommitLatencyMs = new AtomicLong();
+        private final AtomicLong maxBatchSize = new AtomicLong();
+
+        public long getOpsEnqueued() {
+            return opsEnqueued.get();
+        }
+
+        public long getWritesCommitted() {
+            return writesCommitted.get();
+        }
+
+        public long getBatchesCommitted() {
+            return batchesCommitted.get();
+        }
+
+        public long getBatchesFailed() {
+            return batchesFailed.get();
+        }
+
+        public long getLastCommitLatencyMs() {
+            return lastCommitLatencyMs.get();
+        }
+
+        public long getMaxBatchSize() {
+            return maxBatchSize.get();
+        }
+
+        public double getAverageBatchSize() {
+            long batches = batchesCommitted.get();
+            return batches == 0 ? 0 : (double) writesCommitted.get() / batches;
+        }
+
+        public double getAverageCommitLatencyMs() {
+            long batches = batchesCommitted.get();
+            return batches == 0 ? 0 : (double) totalCommitLatencyMs.get() / batches;
+        }
+
+        @Override
+        public String toString() {
+            return "ops=" + getOpsEnqueued()
+                    + ", writes=" + getWritesCommitted()
+                    + ", batches=" + getBatchesCommitted()
+                    + ", failed=" + getBatchesFailed()
+                    + ", avgBatch=" + String.format(Locale.US, "%.1f", getAverageBatchSize())
+                    + ", avgLatencyMs=" + String.format(Locale.US, "%.0f", getAverageCommitLatencyMs());
+        }
+    }
+
+    private interface Completion {
+        void onSuccess();
+        void onFailure(String error);
+    }
+
+    /**
+     * Everything pending for one document in the current window.
+     */
+    private static class DocWrites {
+        final DocumentReference ref;
+        final List<Completion> completions = new ArrayList<>();
+        boolean isAdd;
+        Todo setData;
+        Map<String, Object> updates;
+        boolean delete;
+        TodoStatsDelta stats;
+
+        DocWrites(DocumentReference ref) {
+            this.ref = ref;
+        }
+
+        void addStats(TodoStatsDelta delta) {
+            if (delta == null) {
+                return;
+            }
+            if (stats == null) {
+                stats = new TodoStatsDelta(delta.getUserId());
+            }
+            stats.add(delta);
+        }
+
+        int writeCount() {
+            if (delete) {
+                return 1;
+            }
+            return (setData != null ? 1 : 0) + (updates != null ? 1 : 0);
+        }
+
+        void applyTo(WriteBatch batch) {
+            if (delete) {
+                batch.delete(ref);
+                return;
+            }
+            if (setData != null) {
+                batch.set(ref, TodoCodec.encode(setData));
+            }
+            if (updates != null) {
+                batch.update(ref, updates);
+            }
+        }
+    }
+
+    private TodoWriteQueue() {
+        this(FirebaseConfig.getFirestore().collection(TODOS_COLLECTION));
+    }
+
+    @VisibleForTesting
+    TodoWriteQueue(CollectionReference todos) {
+        this.todos = todos;
+    }
+
+    public static synchronized TodoWriteQueue getInstance() {
+        if (instance == null) {
+            instance = new TodoWriteQueue();
+        }
+        return instance;
+    }
+
+    /**
+     * How long writes are collected before a commit.
+     */
+    public void setWindowMs(long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    /**
+     * A batch is committed early once it holds this many writes.
+     */
+    public void setMaxBatchWrites(int maxBatchWrites) {
+        this.maxBatchWrites = Math.min(maxBatchWrites, MAX_BATCH_WRITES);
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the new document id immediately; the callback fires once the
+     * batch holding the write settles.
+     */
+    public String add(Todo todo, FirestoreManager.FirestoreCallback<String> callback) {
+        DocumentReference ref = todos.document();
+        String id = ref.getId();
+        synchronized (lock) {
+            DocWrites writes = new DocWrites(ref);
+            writes.isAdd = true;
+            writes.setData = todo;
+            writes.addStats(TodoStatsDelta.forAdd(todo));
+            writes.completions.add(completion(callback, id));
+            pending.put(id, writes);
+            onEnqueued(0, writes);
+        }
+        return id;
+    }
+
+    public void set(Todo todo, FirestoreManager.FirestoreCallback<Void> callback) {
+        set(todo, null, callback);
+    }
+
+    /**
+     * Replaces the whole document. The queue can't derive a stats delta
+     * from the new data alone, so {@code stats} describes the change from
+     * the server's copy (see {@link TodoStatsDelta#forEdit}); pass null if
+     * that copy isn't known and leave the stats to the reconciler.
+     */
+    public void set(Todo todo, TodoStatsDelta stats, FirestoreManager.FirestoreCallback<Void> callback) {
+        synchronized (lock) {
+            DocWrites writes = writesFor(todo.getId());
+            int before = writes.writeCount();
+            writes.setData = todo;
+            writes.updates = null;
+            writes.delete = false;
+            writes.addStats(stats);
+            writes.completions.add(completion(callback, null));
+            onEnqueued(before, writes);
+        }
+    }
+
+    public void update(String todoId, Map<String, Object> fields, FirestoreManager.FirestoreCallback<Void> callback) {
+        update(todoId, fields, null, callback);
+    }
+
+    public void update(String todoId, Map<String, Object> fields, TodoStatsDelta stats,
+                       FirestoreManager.FirestoreCallback<Void> callback) {
+        synchronized (lock) {
+            DocWrites writes = writesFor(todoId);
+            if (writes.delete) {
+                mainHandler.post(() -> callback.onFailure("Todo was deleted"));
+                return;
+            }
+            int before = writes.writeCount();
+            if (writes.updates == null) {
+                writes.updates = new HashMap<>();
+            }
+            writes.updates.putAll(fields);
+            writes.addStats(stats);
+            writes.completions.add(completion(callback, null));
+            onEnqueued(before, writes);
+        }
+    }
+
+    public void delete(String todoId, FirestoreManager.FirestoreCallback<Void> callback) {
+        delete(todoId, null, callback);
+    }
+
+    /**
+     * {@code stats} describes removing the todo as the server last had it;
+     * it replaces the deltas of writes to the same todo that the delete
+     * supersedes.
+     */
+    public void delete(String todoId, TodoStatsDelta stats, FirestoreManager.FirestoreCallback<Void> callback) {
+        synchronized (lock) {
+            DocWrites writes = writesFor(todoId);
+            int before = writes.writeCount();
+            writes.completions.add(completion(callback, null));
+            if (writes.isAdd) {
+                // Created and deleted within the same window: nothing to send
+                pending.remove(todoId);
+                pendingWriteCount -= before;
+                metrics.opsEnqueued.incrementAndGet();
+                mainHandler.post(() -> complete(writes.completions, null));
+                return;
+            }
+            writes.setData = null;
+            writes.updates = null;
+            writes.delete = true;
+            writes.stats = null;
+            writes.addStats(stats);
+            onEnqueued(before, writes);
+        }
+    }
+
+    // Caller holds lock
+    private DocWrites writesFor(String todoId) {
+        DocWrites writes = pending.get(todoId);
+        if (writes == null) {
+            writes = new DocWrites(todos.document(todoId));
+            pending.put(todoId, writes);
+        }
+        return writes;
+    }
+
+    // Caller holds lock
+    private void onEnqueued(int writesBefore, DocWrites writes) {
+        metrics.opsEnqueued.incrementAndGet();
+        pendingWriteCount += writes.writeCount() - writesBefore;
+
+        if (pendingWriteCount >= maxBatchWrites) {
+            mainHandler.removeCallbacks(flushRunnable);
+            flushScheduled = true;
+            mainHandler.post(flushRunnable);
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            mainHandler.postDelayed(flushRunnable, windowMs);
+        }
+    }
+
+    /**
+     * Commits everything pending now instead of waiting for the window.
+     */
+    public void flush() {
+        Map<String, DocWrites> toCommit;
+        synchronized (lock) {
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            toCommit = pending;
+            pending = new LinkedHashMap<>();
+            pendingWriteCount = 0;
+        }
+
+        // Split into Firestore-sized batches
+        List<DocWrites> chunk = new ArrayList<>();
+        int chunkWrites = 0;
+        for (DocWrites writes : toCommit.values()) {
+            int count = writes.writeCount();
+            if (chunkWrites + count > MAX_BATCH_WRITES - STATS_WRITES_RESERVE && !chunk.isEmpty()) {
+                commit(chunk, chunkWrites, true);
+                chunk = new ArrayList<>();
+                chunkWrites = 0;
+            }
+            chunk.add(writes);
+            chunkWrites += count;
+        }
+        if (!chunk.isEmpty()) {
+            commit(chunk, chunkWrites, true);
+        }
+    }
+
+    private void commit(List<DocWrites> docs, int docWriteCount, boolean retryIndividually) {
+        WriteBatch batch = todos.getFirestore().batch();
+        Map<String, TodoStatsDelta> statsByUser = new HashMap<>();
+        for (DocWrites writes : docs) {
+            writes.applyTo(batch);
+            if (writes.stats != null) {
+                TodoStatsDelta userStats = statsByUser.get(writes.stats.getUserId());
+                if (userStats == null) {
+                    userStats = new TodoStatsDelta(writes.stats.getUserId());
+                    statsByUser.put(writes.stats.getUserId(), userStats);
+                }
+                userStats.add(writes.stats);
+            }
+        }
+        int statsWrites = 0;
+        for (TodoStatsDelta stats : statsByUser.values()) {
+            if (!stats.isEmpty()) {
+                batch.set(TodoStatsDelta.statsRef(todos.getFirestore(), stats.getUserId()),
+                        stats.toUpdate(), SetOptions.merge());
+                statsWrites++;
+            }
+        }
+        int writeCount = docWriteCount + statsWrites;
+
+        long start = SystemClock.elapsedRealtime();
+        batch.commit()
+                .addOnSuccessListener(aVoid -> {
+                    long latency = SystemClock.elapsedRealtime() - start;
+                    recordCommit(writeCount, latency);
+                    Log.d(TAG, "Committed batch of " + writeCount + " writes in " + latency + "ms");
+                    for (DocWrites writes : docs) {
+                        complete(writes.completions, null);
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    metrics.batchesFailed.incrementAndGet();
+                    if (retryIndividually && docs.size() > 1) {
+                        Log.w(TAG, "Batch of " + writeCount + " writes failed, retrying per document", e);
+                        for (DocWrites writes : docs) {
+                            commit(Collections.singletonList(writes), writes.writeCount(), false);
+                        }
+                        return;
+                    }
+                    Log.w(TAG, "Error committing todo writes", e);
+                    for (DocWrites writes : docs) {
+                        complete(writes.completions, e.getMessage());
+                    }
+                });
+    }
+
+    private void recordCommit(int writeCount, long latencyMs) {
+        metrics.batchesCommitted.incrementAndGet();
+        metrics.writesCommitted.addAndGet(writeCount);
+        metrics.totalCommitLatencyMs.addAndGet(latencyMs);
+        metrics.lastCommitLatencyMs.set(latencyMs);
+        long max;
+        do {
+            max = metrics.maxBatchSize.get();
+        } while (writeCount > max && !metrics.maxBatchSize.compareAndSet(max, writeCount));
+    }
+
+    private static void complete(List<Completion> completions, String error) {
+        for (Completion completion : completions) {
+            if (error == null) {
+                completion.onSuccess();
+            } else {
+                completion.onFailure(error);
+            }
+        }
+    }
+
+    private static <T> Completion completion(FirestoreManager.FirestoreCallback<T> callback, T result) {
+        return new Completion() {
+            @Override
+            public void onSuccess() {
+                callback.onSuccess(result);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                callback.onFailure(error);
+            }
+        };
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.todolist.data.firebase;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.core.util.Pair;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.todolist.data.model.Todo;
+import com.example.todolist.data.model.TodoChangeSet;
+import com.example.todolist.data.model.TodoFilter;
+import com.example.todolist.perf.FirstContent;
+import com.example.todolist.perf.Perf;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.MetadataChanges;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps at most one live todos query per user and {@link TodoFilter} and
+ * shares it between every subscription that asks for it. Callers
+ * acquire/release the query; once the last reference is released the
+ * Firestore listener stays attached for a grace period, so quick screen
+ * changes, resumes and switching back to the previous filter re-use the
+ * already loaded result instead of re-reading it.
+ *
+ * Switching to a new filter attaches a new listener, which Firestore
+ * answers from documents it already has cached before the server's
+ * answer, so the swap itself doesn't wait on the network.
+ *
+ * All methods must be called on the main thread. Snapshots are decoded
+ * and applied to the working set on {@link FirestoreExecutors#background()};
+ * the resulting change sets and lists are published back on the main
+ * thread, which is where listeners and LiveData observers see them.
+ *
+ * Firestore usually answers a new listener from its local cache first.
+ * That result is published right away, marked
+ * {@link TodoChangeSet#isFromCache()}, and the first server result after
+ * it is published again as a full initial change set so consumers can
+ * drop anything the cache still had.
+ */
+public class TodosListenerRegistry {
+    private static final String TAG = "TodosListenerRegistry";
+    private static final long DEFAULT_DETACH_GRACE_PERIOD_MS = 30_000;
+
+    private static TodosListenerRegistry instance;
+
+    private final FirebaseFirestore db;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<Pair<String, TodoFilter>, Entry> entries = new HashMap<>();
+    private long detachGracePeriodMs = DEFAULT_DETACH_GRACE_PERIOD_MS;
+
+    private class Entry {
+        final String userId;
+        final TodoFilter filter;
+        final TodoWorkingSet workingSet = new TodoWorkingSet(FirestoreManager.TODOS_PAGE_SIZE);
+        final MutableLiveData<List<Todo>> todosLiveData = new MutableLiveData<>();
+        final List<FirestoreManager.TodoChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+        final Runnable detachRunnable = this::detach;
+        ListenerRegistration registration;
+        int refCount;
+        // Last list published on the main thread, null until the first
+        // snapshot arrives; new change listeners start from this
+        List<Todo> published;
+        boolean publishedPartial;
+        boolean publishedFromCache;
+        // Bumped on every attach so results of a replaced listener are dropped
+        int attachGeneration;
+        // Set when the initial result came from the cache and the server
+        // hasn't answered yet. Only touched on the background executor.
+        boolean awaitingServer;
+
+        Entry(String userId, TodoFilter filter) {
+            this.userId = userId;
+            this.filter = filter;
+        }
+
+        // For logs
+        String describe() {
+            return filter.isAll() ? userId : userId + " " + filter;
+        }
+
+        void attach() {
+            int generation = ++attachGeneration;
+            published = null;
+            // Queued ahead of the new listener's first snapshot
+            FirestoreExecutors.background().execute(() -> {
+                workingSet.clear();
+                awaitingServer = false;
+            });
+            Log.d(TAG, "Attaching todos listener for user: " + describe());
+
+            registration = FirestoreManager.todosQuery(db, userId, filter)
+                    // Only the newest page is live, older pages are fetched on demand
+                    .limit(FirestoreManager.TODOS_PAGE_SIZE)
+                    // Metadata changes too, so a server answer that matches
+                    // the cached result still reaches us
+                    .addSnapshotListener(FirestoreExecutors.background(), MetadataChanges.INCLUDE, (value, error) -> {
+                        if (error != null) {
+                            Log.w(TAG, "Listen failed for user: " + describe(), error);
+                            return;
+                        }
+                        if (value == null) {
+                            return;
+                        }
+
+                        Perf.beginSection("TodosListener.apply");
+                        long start = Perf.start();
+                        TodoChangeSet changeSet;
+                        try {
+                            changeSet = workingSet.apply(value);
+                        } finally {
+                            Perf.SNAPSHOT_APPLY.stop(start);
+                            Perf.endSection();
+                        }
+                        Perf.SNAPSHOTS.increment();
+                        if (changeSet.isInitial()) {
+                            awaitingServer = changeSet.isFromCache();
+                        } else if (awaitingServer && !changeSet.isFromCache()) {
+                            awaitingServer = false;
+                            changeSet = workingSet.asInitialChangeSet();
+                        }
+                        if (changeSet.isEmpty() && !changeSet.isInitial()) {
+                            // Metadata-only snapshot, nothing the UI cares about
+                            return;
+                        }
+
+                        if (Perf.LOG_HOT_PATHS) {
+                            Log.d(TAG, "Applied " + changeSet.getChanges().size() + " changes, "
+                                    + changeSet.getResultSize() + " todos for user: " + describe());
+                        }
+
+                        FirestoreCacheMonitor.record(value);
+                        List<Todo> todos = workingSet.snapshot();
+                        TodoChangeSet delivered = changeSet;
+                        mainHandler.post(() -> publish(generation, delivered, todos));
+                    });
+        }
+
+        private void publish(int generation, TodoChangeSet changeSet, List<Todo> todos) {
+            if (generation != attachGeneration || registration == null) {
+                return;
+            }
+            Perf.beginSection("TodosListener.publish");
+            long start = Perf.start();
+            try {
+                published = todos;
+                publishedPartial = changeSet.isPartial();
+                publishedFromCache = changeSet.isFromCache();
+                for (FirestoreManager.TodoChangeListener listener : changeListeners) {
+                    listener.onTodosChanged(changeSet);
+                }
+                todosLiveData.setValue(todos);
+            } finally {
+                Perf.SNAPSHOT_DELIVERY.stop(start);
+                Perf.endSection();
+            }
+            if (!changeSet.isFromCache()) {
+                FirstContent.record(FirstContent.Path.LIVE);
+            }
+        }
+
+        void detach() {
+            if (registration != null) {
+                Log.d(TAG, "Detaching todos listener for user: " + describe());
+                registration.remove();
+                registration = null;
+            }
+            entries.remove(Pair.create(userId, filter));
+        }
+    }
+
+    private TodosListenerRegistry() {
+        db = FirebaseConfig.getFirestore();
+    }
+
+    public static synchronized TodosListenerRegistry getInstance() {
+        if (instance == null) {
+            instance = new TodosListenerRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * How long an unreferenced query stays attached before it is removed.
+     */
+    public void setDetachGracePeriodMs(long detachGracePeriodMs) {
+        this.detachGracePeriodMs = detachGracePeriodMs;
+    }
+
+    public LiveData<List<Todo>> acquire(String userId, TodoFilter filter) {
+        Pair<String, TodoFilter> key = Pair.create(userId, filter);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(userId, filter);
+            entries.put(key, entry);
+            entry.attach();
+        } else {
+            mainHandler.removeCallbacks(entry.detachRunnable);
+        }
+        entry.refCount++;
+        Log.d(TAG, "Acquired todos query for user: " + entry.describe() + " (refs: " + entry.refCount + ")");
+        return entry.todosLiveData;
+    }
+
+    public void release(String userId, TodoFilter filter) {
+        Entry entry = entries.get(Pair.create(userId, filter));
+        if (entry == null || entry.refCount == 0) {
+            Log.w(TAG, "release called without matching acquire for user: " + userId);
+            return;
+        }
+
+        entry.refCount--;
+        Log.d(TAG, "Released todos query for user: " + entry.describe() + " (refs: " + entry.refCount + ")");
+        if (entry.refCount == 0) {
+            mainHandler.postDelayed(entry.detachRunnable, detachGracePeriodMs);
+        }
+    }
+
+    /**
+     * Listeners joining a query that already has data first receive the
+     * current contents as an initial change set.
+     */
+    public void addTodoChangeListener(String userId, TodoFilter filter, FirestoreManager.TodoChangeListener listener) {
+        Entry entry = entries.get(Pair.create(userId, filter));
+        if (entry == null) {
+            Log.w(TAG, "addTodoChangeListener called before acquire for user: " + userId);
+            return;
+        }
+        entry.changeListeners.add(listener);
+        if (entry.published != null) {
+            listener.onTodosChanged(TodoWorkingSet.initialChangeSet(
+                    entry.published, entry.publishedPartial, entry.publishedFromCache));
+        }
+    }
+
+    public void removeTodoChangeListener(String userId, TodoFilter filter,
+                                         FirestoreManager.TodoChangeListener listener) {
+        Entry entry = entries.get(Pair.create(userId, filter));
+        if (entry != null) {
+            entry.changeListeners.remove(listener);
+        }
+    }
+
+    /**
+     * Re-attaches the query, re-reading the full result. Only meant for an
+     * explicit user-initiated refresh.
+     */
+    public void forceRefresh(String userId, TodoFilter filter) {
+        Entry entry = entries.get(Pair.create(userId, filter));
+        if (entry == null) {
+            Log.w(TAG, "Cannot force refresh - no query for user: " + userId);
+            return;
+        }
+        if (entry.registration != null) {
+            entry.registration.remove();
+        }
+        entry.attach();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.todolist.data.firebase;
+
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+
+import com.example.todolist.data.model.Todo;
+import com.example.todolist.data.model.TodoFilter;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * One consumer's hold on the shared todos query of a user and filter,
+ * through {@link TodosListenerRegistry}. Switching users or filters
+ * releases the previous query once the new one is held, so the registry
+ * keeps it for a quick switch back; {@link #release()} gives it up when
+ * the consumer is done.
+ */
+public class TodosSubscription {
+    private static final String TAG = "TodosSubscription";
+
+    private final TodosListenerRegistry listenerRegistry = TodosListenerRegistry.getInstance();
+    private LiveData<List<Todo>> todosLiveData;
+    private final List<FirestoreManager.TodoChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    private final FirestoreManager.TodoChangeListener changeForwarder = changeSet -> {
+        for (FirestoreManager.TodoChangeListener listener : changeListeners) {
+            listener.onTodosChanged(changeSet);
+        }
+    };
+    private String currentUserId;
+    private TodoFilter currentFilter;
+
+    public LiveData<List<Todo>> getUserTodos(String userId) {
+        return getUserTodos(userId, TodoFilter.ALL);
+    }
+
+    public LiveData<List<Todo>> getUserTodos(String userId, TodoFilter filter) {
+        Log.d(TAG, "getUserTodos called for userId: " + userId + ", filter: " + filter);
+
+        if (userId.equals(currentUserId) && filter.equals(currentFilter) && todosLiveData != null) {
+            // Already holding the shared query for this user and filter
+            return todosLiveData;
+        }
+
+        LiveData<List<Todo>> acquired = listenerRegistry.acquire(userId, filter);
+        release();
+        todosLiveData = acquired;
+        listenerRegistry.addTodoChangeListener(userId, filter, changeForwarder);
+        currentUserId = userId;
+        currentFilter = filter;
+
+        return todosLiveData;
+    }
+
+    /**
+     * Change sets are delivered for every snapshot, in order, unlike the list
+     * LiveData which only keeps the latest value.
+     */
+    public void addTodoChangeListener(FirestoreManager.TodoChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeTodoChangeListener(FirestoreManager.TodoChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Releases this subscription's reference to the shared todos query. The
+     * registry keeps it attached for a grace period in case it is needed
+     * again shortly.
+     */
+    public void release() {
+        if (currentUserId != null && todosLiveData != null) {
+            Log.d(TAG, "Releasing todos query for user: " + currentUserId);
+            listenerRegistry.removeTodoChangeListener(currentUserId, currentFilter, changeForwarder);
+            listenerRegistry.release(currentUserId, currentFilter);
+            todosLiveData = null;
+            currentUserId = null;
+            currentFilter = null;
+        }
+    }
+
+    public void forceRefresh() {
+        if (currentUserId != null) {
+            Log.d(TAG, "Force refreshing data for user: " + currentUserId);
+            listenerRegistry.forceRefresh(currentUserId, currentFilter);
+        } else {
+            Log.w(TAG, "Cannot force refresh - no current user ID");
+        }
+    }
+}
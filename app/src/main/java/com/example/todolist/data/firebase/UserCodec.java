@@ -0,0 +1,45 @@
+package com.example.todolist.data.firebase;
+
+import com.example.todolist.data.model.User;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reflection-free mapping of user profile documents, the counterpart of
+ * {@link TodoCodec}. Any field added to User has to be added here too.
+ */
+public final class UserCodec {
+    static final String FIELD_UID = "uid";
+    static final String FIELD_NAME = "name";
+    static final String FIELD_EMAIL = "email";
+    static final String FIELD_PHOTO_URL = "photoUrl";
+    static final String FIELD_CREATED_AT = "createdAt";
+
+    private static final int FIELD_COUNT = 5;
+
+    private UserCodec() {
+    }
+
+    public static User decode(DocumentSnapshot doc) {
+        User user = new User();
+        user.setUid(doc.getString(FIELD_UID));
+        user.setName(doc.getString(FIELD_NAME));
+        user.setEmail(doc.getString(FIELD_EMAIL));
+        user.setPhotoUrl(doc.getString(FIELD_PHOTO_URL));
+        Long createdAt = doc.getLong(FIELD_CREATED_AT);
+        user.setCreatedAt(createdAt != null ? createdAt : 0);
+        return user;
+    }
+
+    public static Map<String, Object> encode(User user) {
+        Map<String, Object> data = new HashMap<>(FIELD_COUNT * 2);
+        data.put(FIELD_UID, user.getUid());
+        data.put(FIELD_NAME, user.getName());
+        data.put(FIELD_EMAIL, user.getEmail());
+        data.put(FIELD_PHOTO_URL, user.getPhotoUrl());
+        data.put(FIELD_CREATED_AT, user.getCreatedAt());
+        return data;
+    }
+}
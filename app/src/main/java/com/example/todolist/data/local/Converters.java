@@ -0,0 +1,18 @@
+package com.example.todolist.data.local;
+
+import androidx.room.TypeConverter;
+
+import java.util.Date;
+
+public class Converters {
+
+    @TypeConverter
+    public static Long fromDate(Date date) {
+        return date != null ? date.getTime() : null;
+    }
+
+    @TypeConverter
+    public static Date toDate(Long millis) {
+        return millis != null ? new Date(millis) : null;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.todolist.data.local;
+
+import android.util.Log;
+
+import com.example.todolist.data.firebase.FirestoreManager;
+import com.example.todolist.data.model.Todo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Settles Room rows a filtered query stopped vouching for. Leaving the
+ * filter and being deleted look the same to that query, so each id is
+ * looked up on the server: todos that still exist are stored with their
+ * current state, the rest are deleted. If the server can't be reached the
+ * rows are kept as they are; the next unfiltered sync settles them.
+ */
+public class StaleTodoResolver {
+    private static final String TAG = "StaleTodoResolver";
+
+    private final FirestoreManager firestoreManager;
+    private final TodoDao todoDao;
+    private final String userId;
+
+    public StaleTodoResolver(FirestoreManager firestoreManager, TodoDao todoDao, String userId) {
+        this.firestoreManager = firestoreManager;
+        this.todoDao = todoDao;
+        this.userId = userId;
+    }
+
+    public void resolve(Collection<String> todoIds) {
+        if (todoIds.isEmpty()) {
+            return;
+        }
+        List<String> ids = new ArrayList<>(todoIds);
+        firestoreManager.getTodosByIds(userId, ids, new FirestoreManager.FirestoreCallback<List<Todo>>() {
+            @Override
+            public void onSuccess(List<Todo> todos) {
+                TodoDatabase.databaseExecutor.execute(() -> apply(ids, todos));
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Log.w(TAG, "Could not check " + ids.size() + " todos, keeping them: " + error);
+            }
+        });
+    }
+
+    private void apply(List<String> ids, List<Todo> found) {
+        Set<String> foundIds = new HashSet<>();
+        for (Todo todo : found) {
+            foundIds.add(todo.getId());
+        }
+        List<String> deleted = new ArrayList<>();
+        for (String id : ids) {
+            if (!foundIds.contains(id)) {
+                deleted.add(id);
+            }
+        }
+        try {
+            todoDao.applyChanges(userId, false, null, found, deleted);
+            Log.d(TAG, "Checked " + ids.size() + " todos: " + found.size() + " kept, "
+                    + deleted.size() + " deleted for user: " + userId);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to apply checked todos for user: " + userId, e);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.todolist.data.local;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Transaction;
+import androidx.room.Upsert;
+
+import com.example.todolist.data.model.Todo;
+import com.example.todolist.data.model.TodoFilter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+@Dao
+public interface TodoDao {
+    // Stay well below SQLite's 999 bound-variable limit on API 28
+    int MAX_IDS_PER_STATEMENT = 500;
+
+    // A user's todos matching a TodoFilter; a null filter value matches any
+    String MATCHING = "userId = :userId"
+            + " AND (:completed IS NULL OR completed = :completed)"
+            + " AND (:priority IS NULL OR priority = :priority)"
+            + " AND (:category IS NULL OR category = :category)";
+
+    // Newest first. A todo whose add the server hasn't acknowledged has no
+    // createdAt yet; SQLite would sort its NULL last, so it goes on top.
+    @Query("SELECT * FROM todos WHERE " + MATCHING + " ORDER BY createdAt IS NULL DESC, createdAt DESC")
+    LiveData<List<Todo>> observeMatching(String userId, Boolean completed, String priority, String category);
+
+    default LiveData<List<Todo>> observeUserTodos(String userId, TodoFilter filter) {
+        return observeMatching(userId, filter.getCompleted(), filter.getPriority(), filter.getCategory());
+    }
+
+    @Query("SELECT * FROM todos WHERE id = :todoId")
+    Todo getTodo(String todoId);
+
+    @Query("SELECT * FROM todos WHERE id IN (:todoIds)")
+    List<Todo> getTodos(List<String> todoIds);
+
+    @Query("SELECT EXISTS(SELECT 1 FROM todos WHERE " + MATCHING + ")")
+    boolean hasMatching(String userId, Boolean completed, String priority, String category);
+
+    default boolean hasUserTodos(String userId, TodoFilter filter) {
+        return hasMatching(userId, filter.getCompleted(), filter.getPriority(), filter.getCategory());
+    }
+
+    @Upsert
+    void upsertAll(List<Todo> todos);
+
+    @Query("DELETE FROM todos WHERE id IN (:todoIds)")
+    void deleteByIds(List<String> todoIds);
+
+    @Query("DELETE FROM todos WHERE userId = :userId")
+    void deleteAllForUser(String userId);
+
+    @Query("SELECT id FROM todos WHERE " + MATCHING)
+    List<String> getIdsMatching(String userId, Boolean completed, String priority, String category);
+
+    @Query("UPDATE todos SET completed = :completed WHERE id IN (:todoIds)")
+    void setCompleted(List<String> todoIds, boolean completed);
+
+    // Pending todos have no server timestamp yet and always count as newest
+    @Query("DELETE FROM todos WHERE userId = :userId AND (createdAt IS NULL OR createdAt >= :boundary)")
+    void deleteNotOlderThan(String userId, Date boundary);
+
+    @Query("SELECT id FROM todos WHERE " + MATCHING + " AND (createdAt IS NULL OR createdAt >= :boundary)")
+    List<String> getIdsMatchingNotOlderThan(String userId, Boolean completed, String priority, String category,
+                                            Date boundary);
+
+    @Query("DELETE FROM todos WHERE userId = :userId AND createdAt < :newerBound "
+            + "AND createdAt >= :olderBound AND id NOT IN (:keepIds)")
+    void deleteInRangeExcept(String userId, Date newerBound, Date olderBound, List<String> keepIds);
+
+    @Query("DELETE FROM todos WHERE userId = :userId AND createdAt < :newerBound AND id NOT IN (:keepIds)")
+    void deleteOlderThanExcept(String userId, Date newerBound, List<String> keepIds);
+
+    @Query("SELECT id FROM todos WHERE " + MATCHING + " AND createdAt < :newerBound "
+            + "AND createdAt >= :olderBound AND id NOT IN (:keepIds)")
+    List<String> getIdsInRangeExcept(String userId, Boolean completed, String priority, String category,
+                                     Date newerBound, Date olderBound, List<String> keepIds);
+
+    @Query("SELECT id FROM todos WHERE " + MATCHING + " AND createdAt < :newerBound AND id NOT IN (:keepIds)")
+    List<String> getIdsOlderThanExcept(String userId, Boolean completed, String priority, String category,
+                                       Date newerBound, List<String> keepIds);
+
+    /**
+     * Ids of the rows a reset for {@code filter} would replace: all of the
+     * user's matching rows, or only those no older than {@code boundary}.
+     */
+    default List<String> getIdsCoveredBy(String userId, TodoFilter filter, Date boundary) {
+        if (boundary == null) {
+            return getIdsMatching(userId, filter.getCompleted(), filter.getPriority(), filter.getCategory());
+        }
+        return getIdsMatchingNotOlderThan(userId, filter.getCompleted(), filter.getPriority(),
+                filter.getCategory(), boundary);
+    }
+
+    /**
+     * Applies one batch of synced changes atomically, so observers see a
+     * single invalidation per batch. On reset, rows covered by the new
+     * server result are replaced: all of the user's rows, or only those no
+     * older than {@code resetBoundary} when the result was a limited window.
+     */
+    @Transaction
+    default void applyChanges(String userId, boolean reset, Date resetBoundary,
+                              List<Todo> upserts, List<String> deletedIds) {
+        if (reset) {
+            if (resetBoundary == null) {
+                deleteAllForUser(userId);
+            } else {
+                deleteNotOlderThan(userId, resetBoundary);
+            }
+        }
+        deleteByIdsChunked(deletedIds);
+        if (!upserts.isEmpty()) {
+            upsertAll(upserts);
+        }
+    }
+
+    /**
+     * Mirrors a confirmed write locally, for todos outside the live window
+     * that the listener will not report on.
+     */
+    @Transaction
+    default void setCompletedChunked(List<String> todoIds, boolean completed) {
+        for (int i = 0; i < todoIds.size(); i += MAX_IDS_PER_STATEMENT) {
+            setCompleted(todoIds.subList(i, Math.min(i + MAX_IDS_PER_STATEMENT, todoIds.size())), completed);
+        }
+    }
+
+    @Transaction
+    default List<Todo> getTodosChunked(List<String> todoIds) {
+        List<Todo> todos = new ArrayList<>(todoIds.size());
+        for (int i = 0; i < todoIds.size(); i += MAX_IDS_PER_STATEMENT) {
+            todos.addAll(getTodos(todoIds.subList(i, Math.min(i + MAX_IDS_PER_STATEMENT, todoIds.size()))));
+        }
+        return todos;
+    }
+
+    @Transaction
+    default void deleteByIdsChunked(List<String> todoIds) {
+        for (int i = 0; i < todoIds.size(); i += MAX_IDS_PER_STATEMENT) {
+            deleteByIds(todoIds.subList(i, Math.min(i + MAX_IDS_PER_STATEMENT, todoIds.size())));
+        }
+    }
+
+    /**
+     * Stores a page fetched from the server. {@code olderBound} is null for
+     * the last page, which covers everything older than the cursor.
+     *
+     * An unfiltered page drops local rows in its range that the server no
+     * longer has. A filtered page can't tell a deleted todo from one that
+     * stopped matching, so nothing is dropped; the ids of the rows it
+     * didn't confirm are returned for the caller to check with the server.
+     */
+    @Transaction
+    default List<String> applyPage(String userId, TodoFilter filter, Date newerBound, Date olderBound,
+                                   List<Todo> page) {
+        List<String> ids = new ArrayList<>(page.size());
+        for (Todo todo : page) {
+            ids.add(todo.getId());
+        }
+        List<String> unconfirmed = Collections.emptyList();
+        if (filter.isAll()) {
+            if (olderBound == null) {
+                deleteOlderThanExcept(userId, newerBound, ids);
+            } else {
+                deleteInRangeExcept(userId, newerBound, olderBound, ids);
+            }
+        } else if (olderBound == null) {
+            unconfirmed = getIdsOlderThanExcept(userId, filter.getCompleted(), filter.getPriority(),
+                    filter.getCategory(), newerBound, ids);
+        } else {
+            unconfirmed = getIdsInRangeExcept(userId, filter.getCompleted(), filter.getPriority(),
+                    filter.getCategory(), newerBound, olderBound, ids);
+        }
+        upsertAll(page);
+        return unconfirmed;
+    }
+}
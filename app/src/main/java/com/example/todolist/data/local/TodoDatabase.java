@@ -0,0 +1,47 @@
+package com.example.todolist.data.local;
+
+import android.content.Context;
+
+import androidx.room.Database;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.room.TypeConverters;
+
+import com.example.todolist.data.model.Todo;
+import com.example.todolist.data.model.User;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local source of truth for todos and users. Screens observe Room; Firestore
+ * changes are written into it by {@link TodoSyncEngine}.
+ */
+@Database(entities = {Todo.class, User.class}, version = 2, exportSchema = false)
+@TypeConverters(Converters.class)
+public abstract class TodoDatabase extends RoomDatabase {
+    private static final String DATABASE_NAME = "todo_database";
+
+    private static volatile TodoDatabase instance;
+
+    // Single thread so local writes are applied in the order they arrive
+    public static final ExecutorService databaseExecutor = Executors.newSingleThreadExecutor();
+
+    public abstract TodoDao todoDao();
+
+    public abstract UserDao userDao();
+
+    public static TodoDatabase getInstance(Context context) {
+        if (instance == null) {
+            synchronized (TodoDatabase.class) {
+                if (instance == null) {
+                    instance = Room.databaseBuilder(context.getApplicationContext(),
+                                    TodoDatabase.class, DATABASE_NAME)
+                            .fallbackToDestructiveMigration()
+                            .build();
+                }
+            }
+        }
+        return instance;
+    }
+}
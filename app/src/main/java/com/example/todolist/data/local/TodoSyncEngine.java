@@ -0,0 +1,226 @@
+package com.example.todolist.data.local;
+
+import android.util.Log;
+
+import com.example.todolist.data.firebase.FirestoreManager;
+import com.example.todolist.data.model.Todo;
+import com.example.todolist.data.model.TodoChangeSet;
+import com.example.todolist.data.model.TodoFilter;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies Firestore change sets for one user and filter into Room. Only the
+ * unfiltered query deletes rows. A filtered query reports a todo that
+ * stopped matching (e.g. was completed under "Active only") as removed,
+ * just like a deleted one, so those ids and the rows a filtered reset no
+ * longer covers are handed to a {@link StaleTodoResolver} to check with
+ * the server instead.
+ *
+ * Change sets that arrive while a write is still pending are merged by
+ * document id and committed together in a single transaction. Todos
+ * evicted from the live window are kept, they still exist and belong to
+ * an older page.
+ *
+ * An initial result from Firestore's cache only adds to Room: the cache
+ * may be missing todos that Room still has and the server would confirm.
+ * Rows are dropped once the server's own initial result arrives.
+ *
+ * Room can also hold rows from an earlier session further back than the
+ * live window. The {@link SyncedRange} says how far back Room has been
+ * checked against the server since then; older pages are fetched from its
+ * end, not from the oldest row stored.
+ */
+public class TodoSyncEngine implements FirestoreManager.TodoChangeListener {
+    private static final String TAG = "TodoSyncEngine";
+
+    private final TodoDatabase database;
+    private final String userId;
+    private final TodoFilter filter;
+    private final StaleTodoResolver staleTodoResolver;
+
+    private final Object lock = new Object();
+    private final Map<String, Todo> pendingUpserts = new LinkedHashMap<>();
+    private final Set<String> pendingDeletes = new LinkedHashSet<>();
+    // Removals reported by a filtered query, to be checked with the server
+    private final Set<String> pendingChecks = new LinkedHashSet<>();
+    private boolean pendingReset = false;
+    private Date pendingResetBoundary = null;
+    private boolean flushScheduled = false;
+    // Set once the server's initial result has been taken; priming from
+    // the cache after that could bring back deleted rows
+    private volatile boolean serverSynced = false;
+    // Written on the database thread only
+    private volatile SyncedRange syncedRange = null;
+
+    public TodoSyncEngine(TodoDatabase database, String userId, TodoFilter filter,
+                          StaleTodoResolver staleTodoResolver) {
+        this.database = database;
+        this.userId = userId;
+        this.filter = filter;
+        this.staleTodoResolver = staleTodoResolver;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public TodoFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Null until the server's initial result has been stored.
+     */
+    public SyncedRange getSyncedRange() {
+        return syncedRange;
+    }
+
+    /**
+     * Extends the range past a page stored after {@code from} was read.
+     * Ignored if a server reset has replaced the range since. Must be
+     * called on the database executor.
+     */
+    public void extendSyncedRange(SyncedRange from, Date olderBound) {
+        if (syncedRange == from) {
+            syncedRange = new SyncedRange(olderBound);
+        }
+    }
+
+    @Override
+    public void onTodosChanged(TodoChangeSet changeSet) {
+        synchronized (lock) {
+            if (changeSet.isInitial() && !changeSet.isFromCache()) {
+                // Full server result: anything pending is superseded
+                serverSynced = true;
+                pendingUpserts.clear();
+                pendingDeletes.clear();
+                pendingChecks.clear();
+                Date boundary = changeSet.isPartial() ? oldestCreatedAt(changeSet) : null;
+                // A window without a usable boundary cannot say which rows it covers
+                pendingReset = !changeSet.isPartial() || boundary != null;
+                pendingResetBoundary = boundary;
+            }
+
+            for (TodoChangeSet.Change change : changeSet.getChanges()) {
+                String id = change.getTodo().getId();
+                if (change.getType() == TodoChangeSet.Type.EVICTED) {
+                    continue;
+                }
+                if (change.getType() == TodoChangeSet.Type.REMOVED) {
+                    pendingUpserts.remove(id);
+                    (filter.isAll() ? pendingDeletes : pendingChecks).add(id);
+                } else {
+                    pendingDeletes.remove(id);
+                    pendingChecks.remove(id);
+                    pendingUpserts.put(id, change.getTodo());
+                }
+            }
+
+            if (!flushScheduled) {
+                flushScheduled = true;
+                TodoDatabase.databaseExecutor.execute(this::flush);
+            }
+        }
+    }
+
+    /**
+     * Fills Room with todos read from Firestore's cache while it has none
+     * for the user, e.g. on the first launch after a reinstall with a
+     * restored cache or after a destructive migration. Never deletes.
+     */
+    public void prime(List<Todo> todos) {
+        if (todos.isEmpty()) {
+            return;
+        }
+        // Same executor as flush(), so a server reset can't be overtaken
+        TodoDatabase.databaseExecutor.execute(() -> {
+            TodoDao todoDao = database.todoDao();
+            if (serverSynced || todoDao.hasUserTodos(userId, filter)) {
+                return;
+            }
+            todoDao.upsertAll(todos);
+            Log.d(TAG, "Primed " + todos.size() + " cached todos for user: " + userId);
+        });
+    }
+
+    private static Date oldestCreatedAt(TodoChangeSet changeSet) {
+        List<TodoChangeSet.Change> changes = changeSet.getChanges();
+        return changes.isEmpty() ? null : changes.get(changes.size() - 1).getTodo().getCreatedAt();
+    }
+
+    private void flush() {
+        boolean reset;
+        Date resetBoundary;
+        List<Todo> upserts;
+        List<String> deletes;
+        Set<String> checks;
+
+        synchronized (lock) {
+            reset = pendingReset;
+            resetBoundary = pendingResetBoundary;
+            upserts = new ArrayList<>(pendingUpserts.values());
+            deletes = new ArrayList<>(pendingDeletes);
+            checks = new LinkedHashSet<>(pendingChecks);
+            pendingReset = false;
+            pendingResetBoundary = null;
+            pendingUpserts.clear();
+            pendingDeletes.clear();
+            pendingChecks.clear();
+            flushScheduled = false;
+        }
+
+        boolean serverReset = reset;
+        TodoDao todoDao = database.todoDao();
+        try {
+            if (reset && !filter.isAll()) {
+                // Matching rows the new result doesn't confirm may just have left the filter
+                checks.addAll(todoDao.getIdsCoveredBy(userId, filter, resetBoundary));
+                for (Todo todo : upserts) {
+                    checks.remove(todo.getId());
+                }
+                reset = false;
+            }
+            todoDao.applyChanges(userId, reset, resetBoundary, upserts, deletes);
+            if (serverReset) {
+                // Back to the live window; pages past it are fetched again
+                syncedRange = new SyncedRange(resetBoundary);
+            }
+            Log.d(TAG, "Synced " + upserts.size() + " upserts, " + deletes.size() + " deletes, "
+                    + checks.size() + " to check (reset: " + reset + ") for user: " + userId);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to apply todo changes for user: " + userId, e);
+            return;
+        }
+        staleTodoResolver.resolve(checks);
+    }
+
+    /**
+     * Todos created from {@link #getOldest()} onwards are in Room as the
+     * server last reported them.
+     */
+    public static final class SyncedRange {
+        private final Date oldest;
+
+        SyncedRange(Date oldest) {
+            this.oldest = oldest;
+        }
+
+        /**
+         * Null once the range reaches the user's oldest todo.
+         */
+        public Date getOldest() {
+            return oldest;
+        }
+
+        public boolean reachesEnd() {
+            return oldest == null;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.todolist.data.local;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Upsert;
+
+import com.example.todolist.data.model.User;
+
+@Dao
+public interface UserDao {
+
+    @Query("SELECT * FROM users WHERE uid = :uid")
+    LiveData<User> observeUser(String uid);
+
+    @Query("SELECT * FROM users WHERE uid = :uid")
+    User getUser(String uid);
+
+    @Upsert
+    void upsert(User user);
+}
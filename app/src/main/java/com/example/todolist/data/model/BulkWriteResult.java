@@ -0,0 +1,39 @@
+package com.example.todolist.data.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a bulk write. Batches commit independently, so some todos can
+ * be written while others fail; each id is in exactly one of the lists.
+ */
+public class BulkWriteResult {
+    private final List<String> writtenIds;
+    private final List<String> failedIds;
+    private final String firstError;
+
+    public BulkWriteResult(List<String> writtenIds, List<String> failedIds, String firstError) {
+        this.writtenIds = Collections.unmodifiableList(writtenIds);
+        this.failedIds = Collections.unmodifiableList(failedIds);
+        this.firstError = firstError;
+    }
+
+    public List<String> getWrittenIds() {
+        return writtenIds;
+    }
+
+    public List<String> getFailedIds() {
+        return failedIds;
+    }
+
+    public boolean hasFailures() {
+        return !failedIds.isEmpty();
+    }
+
+    /**
+     * The first error a failed write reported, null if none failed.
+     */
+    public String getFirstError() {
+        return firstError;
+    }
+}
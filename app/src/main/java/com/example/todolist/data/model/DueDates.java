@@ -0,0 +1,65 @@
+package com.example.todolist.data.model;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.Calendar;
+
+/**
+ * Conversions between the "dd/MM/yyyy" display string stored in
+ * {@link Todo#getDate()} and the epoch day stored in {@link Todo#getDueDay()}.
+ * The formatter is immutable and shared, so nothing is allocated per call
+ * apart from the result.
+ */
+public final class DueDates {
+    private static final DateTimeFormatter DISPLAY_FORMAT =
+            DateTimeFormatter.ofPattern("dd/MM/uuuu").withResolverStyle(ResolverStyle.STRICT);
+
+    private DueDates() {
+    }
+
+    /**
+     * Returns the epoch day of a display string, or null if it isn't a valid
+     * date.
+     */
+    public static Long toEpochDay(String date) {
+        if (date == null || date.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(date.trim(), DISPLAY_FORMAT).toEpochDay();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    public static String format(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).format(DISPLAY_FORMAT);
+    }
+
+    public static String format(Calendar calendar) {
+        return LocalDate.of(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1,
+                calendar.get(Calendar.DAY_OF_MONTH)).format(DISPLAY_FORMAT);
+    }
+
+    /**
+     * Moves {@code calendar} to the given display date; leaves it alone if
+     * the string doesn't parse.
+     */
+    public static void setCalendar(Calendar calendar, String date) {
+        Long epochDay = toEpochDay(date);
+        if (epochDay != null) {
+            LocalDate day = LocalDate.ofEpochDay(epochDay);
+            calendar.set(day.getYear(), day.getMonthValue() - 1, day.getDayOfMonth());
+        }
+    }
+
+    /**
+     * Today's epoch day in the device's time zone, which is the zone the
+     * user picked the due dates in.
+     */
+    public static long today() {
+        return LocalDate.now().toEpochDay();
+    }
+}
@@ -1,38 +1,84 @@
 package com.example.todolist.data.model;
 
-import com.google.firebase.firestore.DocumentId;
-import com.google.firebase.firestore.ServerTimestamp;
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
-
+import java.util.List;
+import java.util.Objects;
+
+@Entity(tableName = "todos",
+        indices = {
+                @Index({"userId", "createdAt"}),
+                @Index({"userId", "completed", "createdAt"}),
+                @Index({"userId", "priority", "createdAt"}),
+                @Index({"userId", "dueDay"})
+        })
+// Firestore fields are mapped by TodoCodec; keep it in step with this class.
+// No Firestore types here, so the model also compiles on a plain JVM.
 public class Todo {
-    @DocumentId
+    // Values offered by the add and edit screens
+    public static final List<String> PRIORITIES =
+            Collections.unmodifiableList(Arrays.asList("HIGH", "MEDIUM", "LOW"));
+    public static final List<String> CATEGORIES = Collections.unmodifiableList(
+            Arrays.asList("General", "Work", "Personal", "Shopping", "Health", "Study"));
+
+    @PrimaryKey
+    @NonNull
     private String id;
     private String title;
     private String description;
     private String date;
+    // Days since 1970-01-01 for date, null if date doesn't parse. Written
+    // alongside date so due dates can be range-queried and sorted.
+    private Long dueDay;
     private String userId;
     private boolean completed; // Changed from isCompleted to completed
     private String priority; // HIGH, MEDIUM, LOW
     private String category;
-    @ServerTimestamp
     private Date createdAt;
-    @ServerTimestamp
     private Date updatedAt;
+    // Local-only: set on optimistic copies whose write is not confirmed yet
+    @Ignore
+    private boolean pendingWrite;
 
     public Todo() {
-        // Required empty constructor for Firestore
+        // Required empty constructor for Room
     }
 
+    @Ignore
     public Todo(String title, String description, String date, String userId) {
         this.title = title;
         this.description = description;
         this.date = date;
+        this.dueDay = DueDates.toEpochDay(date);
         this.userId = userId;
         this.completed = false; // Updated
         this.priority = "MEDIUM";
         this.category = "General";
     }
 
+    @Ignore
+    public Todo(Todo other) {
+        this.id = other.id;
+        this.title = other.title;
+        this.description = other.description;
+        this.date = other.date;
+        this.dueDay = other.dueDay;
+        this.userId = other.userId;
+        this.completed = other.completed;
+        this.priority = other.priority;
+        this.category = other.category;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.pendingWrite = other.pendingWrite;
+    }
+
     // Getters and Setters
     public String getId() {
         return id;
@@ -66,6 +112,22 @@ public class Todo {
         this.date = date;
     }
 
+    public Long getDueDay() {
+        return dueDay;
+    }
+
+    public void setDueDay(Long dueDay) {
+        this.dueDay = dueDay;
+    }
+
+    /**
+     * Sets the display date and the epoch day derived from it.
+     */
+    public void setDueDate(String date) {
+        this.date = date;
+        this.dueDay = DueDates.toEpochDay(date);
+    }
+
     public String getUserId() {
         return userId;
     }
@@ -114,4 +176,25 @@ public class Todo {
     public void setUpdatedAt(Date updatedAt) {
         this.updatedAt = updatedAt;
     }
-}
\ No newline at end of file
+
+    public boolean isPendingWrite() {
+        return pendingWrite;
+    }
+
+    public void setPendingWrite(boolean pendingWrite) {
+        this.pendingWrite = pendingWrite;
+    }
+
+    /**
+     * Compares the fields a user sees and edits, ignoring ids, timestamps
+     * and sync state.
+     */
+    public boolean sameFields(@NonNull Todo other) {
+        return completed == other.completed
+                && Objects.equals(title, other.title)
+                && Objects.equals(description, other.description)
+                && Objects.equals(date, other.date)
+                && Objects.equals(priority, other.priority)
+                && Objects.equals(category, other.category);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.todolist.data.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes what changed in the user's todo list between two snapshots.
+ * Positions follow Firestore's DocumentChange semantics: each change is
+ * applied in order, so indices refer to the list as it looks after the
+ * previous changes in the same set.
+ */
+public class TodoChangeSet {
+
+    public enum Type {
+        ADDED,
+        MODIFIED,
+        REMOVED,
+        // Left a limited query window because newer todos pushed it out;
+        // the document itself still exists. Positionally same as REMOVED.
+        EVICTED
+    }
+
+    public static class Change {
+        private final Type type;
+        private final Todo todo;
+        private final int oldIndex;
+        private final int newIndex;
+
+        public Change(Type type, Todo todo, int oldIndex, int newIndex) {
+            this.type = type;
+            this.todo = todo;
+            this.oldIndex = oldIndex;
+            this.newIndex = newIndex;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public Todo getTodo() {
+            return todo;
+        }
+
+        // -1 for ADDED
+        public int getOldIndex() {
+            return oldIndex;
+        }
+
+        // -1 for REMOVED and EVICTED
+        public int getNewIndex() {
+            return newIndex;
+        }
+    }
+
+    private final List<Change> changes;
+    private final int resultSize;
+    private final boolean initial;
+    private final boolean partial;
+    private final boolean fromCache;
+
+    public TodoChangeSet(List<Change> changes, int resultSize, boolean initial, boolean partial) {
+        this(changes, resultSize, initial, partial, false);
+    }
+
+    public TodoChangeSet(List<Change> changes, int resultSize, boolean initial, boolean partial,
+                         boolean fromCache) {
+        this.changes = Collections.unmodifiableList(changes);
+        this.resultSize = resultSize;
+        this.initial = initial;
+        this.partial = partial;
+        this.fromCache = fromCache;
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    /**
+     * Size of the list after all changes have been applied.
+     */
+    public int getResultSize() {
+        return resultSize;
+    }
+
+    /**
+     * True when the list was rebuilt from scratch (first snapshot after a
+     * listener is attached, or recovery from a document that failed to
+     * decode). Consumers should drop what they hold and treat every change
+     * as an insertion into an empty list.
+     */
+    public boolean isInitial() {
+        return initial;
+    }
+
+    /**
+     * True when the result came from a limited query that filled its limit,
+     * so older todos than the last one in the list may exist.
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    /**
+     * True when Firestore answered from its local cache before the server
+     * did. An initial change set from the cache may miss todos or still
+     * hold deleted ones; the first one from the server follows as a new
+     * initial change set.
+     */
+    public boolean isFromCache() {
+        return fromCache;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.todolist.data.model;
+
+import java.util.Objects;
+
+/**
+ * Which of a user's todos a list shows: any combination of completion
+ * state, priority and category, each null for "any". Filters run on the
+ * server, so only matching todos are downloaded, and on the Room copy.
+ * Every combination needs a composite index (see firestore.indexes.json).
+ *
+ * Immutable; equal filters share a live query.
+ */
+public final class TodoFilter {
+    public static final TodoFilter ALL = new TodoFilter(null, null, null);
+    public static final TodoFilter ACTIVE = new TodoFilter(false, null, null);
+
+    private final Boolean completed;
+    private final String priority;
+    private final String category;
+
+    public TodoFilter(Boolean completed, String priority, String category) {
+        this.completed = completed;
+        this.priority = priority;
+        this.category = category;
+    }
+
+    public static TodoFilter byCompletion(boolean completed) {
+        return new TodoFilter(completed, null, null);
+    }
+
+    public static TodoFilter byPriority(String priority) {
+        return new TodoFilter(null, priority, null);
+    }
+
+    public static TodoFilter byCategory(String category) {
+        return new TodoFilter(null, null, category);
+    }
+
+    public TodoFilter withCompleted(Boolean completed) {
+        return new TodoFilter(completed, priority, category);
+    }
+
+    public TodoFilter withPriority(String priority) {
+        return new TodoFilter(completed, priority, category);
+    }
+
+    public TodoFilter withCategory(String category) {
+        return new TodoFilter(completed, priority, category);
+    }
+
+    public Boolean getCompleted() {
+        return completed;
+    }
+
+    public String getPriority() {
+        return priority;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public boolean isAll() {
+        return completed == null && priority == null && category == null;
+    }
+
+    /**
+     * Same test as the server query, for todos that haven't been through it
+     * yet, like optimistic edits.
+     */
+    public boolean matches(Todo todo) {
+        return (completed == null || completed == todo.isCompleted())
+                && (priority == null || priority.equals(todo.getPriority()))
+                && (category == null || category.equals(todo.getCategory()));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TodoFilter)) {
+            return false;
+        }
+        TodoFilter other = (TodoFilter) o;
+        return Objects.equals(completed, other.completed)
+                && Objects.equals(priority, other.priority)
+                && Objects.equals(category, other.category);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(completed, priority, category);
+    }
+
+    @Override
+    public String toString() {
+        return "TodoFilter{completed=" + completed + ", priority=" + priority + ", category=" + category + "}";
+    }
+}
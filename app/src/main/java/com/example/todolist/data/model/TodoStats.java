@@ -0,0 +1,46 @@
+package com.example.todolist.data.model;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Todo counts for the home screen header. The per-priority and per-category
+ * counts are only filled in when read from the stats document.
+ */
+public class TodoStats {
+    private final int total;
+    private final int completed;
+    private final Map<String, Integer> byPriority;
+    private final Map<String, Integer> byCategory;
+
+    public TodoStats(int total, int completed) {
+        this(total, completed, Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    public TodoStats(int total, int completed, Map<String, Integer> byPriority, Map<String, Integer> byCategory) {
+        this.total = total;
+        this.completed = completed;
+        this.byPriority = Collections.unmodifiableMap(byPriority);
+        this.byCategory = Collections.unmodifiableMap(byCategory);
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getCompleted() {
+        return completed;
+    }
+
+    public int getPending() {
+        return total - completed;
+    }
+
+    public Map<String, Integer> getByPriority() {
+        return byPriority;
+    }
+
+    public Map<String, Integer> getByCategory() {
+        return byCategory;
+    }
+}
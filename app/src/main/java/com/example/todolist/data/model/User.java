@@ -1,6 +1,15 @@
 package com.example.todolist.data.model;
 
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.PrimaryKey;
+
+@Entity(tableName = "users")
+// Firestore fields are mapped by UserCodec; keep it in step with this class
 public class User {
+    @PrimaryKey
+    @NonNull
     private String uid;
     private String name;
     private String email;
@@ -11,6 +20,7 @@ public class User {
         // Required empty constructor for Firestore
     }
 
+    @Ignore
     public User(String uid, String name, String email, String photoUrl) {
         this.uid = uid;
         this.name = name;
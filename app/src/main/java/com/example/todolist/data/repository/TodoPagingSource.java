@@ -0,0 +1,120 @@
+package com.example.todolist.data.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.todolist.data.firebase.FirestoreManager;
+import com.example.todolist.data.local.StaleTodoResolver;
+import com.example.todolist.data.local.TodoDao;
+import com.example.todolist.data.local.TodoDatabase;
+import com.example.todolist.data.local.TodoSyncEngine;
+import com.example.todolist.data.model.Todo;
+import com.example.todolist.data.model.TodoFilter;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Loads older pages of a user's todos into Room on demand. The newest page
+ * is kept current by the live listener; everything past it is fetched with
+ * {@code startAfter} on the end of the sync engine's {@link TodoSyncEngine.SyncedRange},
+ * which starts at the live window and grows as pages are stored. Rows an
+ * earlier session cached further back are not trusted as a cursor: todos
+ * created elsewhere since then would sit between them and the window.
+ * Pages follow the same filter as the live query; local rows a filtered
+ * page doesn't confirm are checked with the server rather than deleted.
+ */
+public class TodoPagingSource {
+    private static final String TAG = "TodoPagingSource";
+
+    private final FirestoreManager firestoreManager;
+    private final TodoDao todoDao;
+    private final TodoSyncEngine syncEngine;
+    private final String userId;
+    private final TodoFilter filter;
+    private final StaleTodoResolver staleTodoResolver;
+    private final int pageSize;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private boolean loading = false;
+    private boolean endReached = false;
+
+    public TodoPagingSource(FirestoreManager firestoreManager, TodoDao todoDao, TodoSyncEngine syncEngine,
+                            StaleTodoResolver staleTodoResolver, int pageSize) {
+        this.firestoreManager = firestoreManager;
+        this.todoDao = todoDao;
+        this.syncEngine = syncEngine;
+        this.userId = syncEngine.getUserId();
+        this.filter = syncEngine.getFilter();
+        this.staleTodoResolver = staleTodoResolver;
+        this.pageSize = pageSize;
+    }
+
+    public TodoSyncEngine getSyncEngine() {
+        return syncEngine;
+    }
+
+    public boolean isEndReached() {
+        return endReached;
+    }
+
+    /**
+     * Reports whether more pages may follow. Calls made while a page is in
+     * flight are ignored. Must be called on the main thread.
+     */
+    public void loadNextPage(FirestoreManager.FirestoreCallback<Boolean> callback) {
+        if (loading) {
+            return;
+        }
+        loading = true;
+
+        // Read on the database thread, after any pending server reset
+        TodoDatabase.databaseExecutor.execute(() -> {
+            TodoSyncEngine.SyncedRange range = syncEngine.getSyncedRange();
+            if (range == null) {
+                // Not synced yet; the live listener delivers the first page
+                finish(callback, true, null);
+                return;
+            }
+            if (range.reachesEnd()) {
+                finish(callback, false, null);
+                return;
+            }
+            Date cursor = range.getOldest();
+
+            firestoreManager.getTodosPage(userId, filter, cursor, pageSize, new FirestoreManager.FirestoreCallback<List<Todo>>() {
+                @Override
+                public void onSuccess(List<Todo> page) {
+                    boolean hasMore = page.size() >= pageSize;
+                    Date olderBound = hasMore ? page.get(page.size() - 1).getCreatedAt() : null;
+                    TodoDatabase.databaseExecutor.execute(() -> {
+                        List<String> unconfirmed = todoDao.applyPage(userId, filter, cursor, olderBound, page);
+                        Log.d(TAG, "Stored page of " + page.size() + " todos older than " + cursor);
+                        syncEngine.extendSyncedRange(range, olderBound);
+                        staleTodoResolver.resolve(unconfirmed);
+                        finish(callback, hasMore, null);
+                    });
+                }
+
+                @Override
+                public void onFailure(String error) {
+                    finish(callback, true, error);
+                }
+            });
+        });
+    }
+
+    private void finish(FirestoreManager.FirestoreCallback<Boolean> callback, boolean hasMore, String error) {
+        // Callbacks may arrive on the database thread; state is read on main
+        mainHandler.post(() -> {
+            loading = false;
+            if (error != null) {
+                callback.onFailure(error);
+                return;
+            }
+            endReached = !hasMore;
+            callback.onSuccess(hasMore);
+        });
+    }
+}
@@ -1,40 +1,397 @@
 package com.example.todolist.data.repository;
 
+import android.content.Context;
+
 import androidx.lifecycle.LiveData;
 
+import com.example.todolist.AppContainer;
+import com.example.todolist.data.firebase.DueDayBackfill;
 import com.example.todolist.data.firebase.FirestoreManager;
+import com.example.todolist.data.firebase.TodoStatsDelta;
+import com.example.todolist.data.firebase.TodoStatsReconciler;
+import com.example.todolist.data.firebase.TodosSubscription;
+import com.example.todolist.data.local.StaleTodoResolver;
+import com.example.todolist.data.local.TodoDao;
+import com.example.todolist.data.local.TodoDatabase;
+import com.example.todolist.data.local.TodoSyncEngine;
+import com.example.todolist.data.model.BulkWriteResult;
+import com.example.todolist.data.model.DueDates;
 import com.example.todolist.data.model.Todo;
+import com.example.todolist.data.model.TodoFilter;
+import com.example.todolist.data.model.TodoStats;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
+/**
+ * Reads come from Room; the Firestore listener keeps Room up to date through
+ * a {@link TodoSyncEngine}. Writes still go to Firestore, whose local
+ * snapshot for the pending write flows back into Room right away. Confirmed
+ * writes are also mirrored into Room directly, since todos on older pages
+ * are outside the live listener's window.
+ *
+ * Lists can be filtered by completion, priority and category
+ * ({@link TodoFilter}). The filter is part of the Firestore query, so only
+ * matching todos are downloaded and synced.
+ */
 public class TodoRepository {
     private FirestoreManager firestoreManager;
+    // This repository's hold on the live todos query
+    private final TodosSubscription subscription = new TodosSubscription();
+    private TodoDatabase database;
+    private TodoDao todoDao;
+    private TodoSyncEngine syncEngine;
+    private TodoPagingSource pagingSource;
+    private TodoStatsReconciler statsReconciler;
+    private DueDayBackfill dueDayBackfill;
 
-    public TodoRepository() {
-        firestoreManager = new FirestoreManager();
+    public TodoRepository(Context context) {
+        AppContainer container = AppContainer.from(context);
+        firestoreManager = container.getFirestoreManager();
+        database = container.getDatabase();
+        todoDao = database.todoDao();
+        statsReconciler = container.getStatsReconciler();
+        dueDayBackfill = container.getDueDayBackfill();
     }
 
-    public void addTodo(Todo todo, FirestoreManager.FirestoreCallback<String> callback) {
-        firestoreManager.addTodo(todo, callback);
+    public String addTodo(Todo todo, FirestoreManager.FirestoreCallback<String> callback) {
+        return firestoreManager.addTodo(todo, callback);
     }
 
+    /**
+     * Sends only the user-editable fields that differ from the last known
+     * server state in Room. Without a local copy every editable field is
+     * sent, which still leaves completed and createdAt untouched.
+     */
     public void updateTodo(Todo todo, FirestoreManager.FirestoreCallback<Void> callback) {
-        firestoreManager.updateTodo(todo, callback);
+        if (todo.getId() == null) {
+            callback.onFailure("Todo ID is null");
+            return;
+        }
+
+        TodoDatabase.databaseExecutor.execute(() -> {
+            Todo base = todoDao.getTodo(todo.getId());
+            Map<String, Object> changes = changedFields(base, todo);
+            if (changes.isEmpty()) {
+                callback.onSuccess(null);
+                return;
+            }
+            TodoStatsDelta stats = TodoStatsDelta.forEdit(base, todo);
+            firestoreManager.updateTodoFields(todo.getId(), changes, stats, withLocalWrite(() -> {
+                if (base != null) {
+                    base.setTitle(todo.getTitle());
+                    base.setDescription(todo.getDescription());
+                    base.setDueDate(todo.getDate());
+                    base.setPriority(todo.getPriority());
+                    base.setCategory(todo.getCategory());
+                    todoDao.upsertAll(Collections.singletonList(base));
+                }
+            }, callback));
+        });
+    }
+
+    private static Map<String, Object> changedFields(Todo base, Todo edited) {
+        Map<String, Object> changes = new HashMap<>();
+        if (base == null || !Objects.equals(base.getTitle(), edited.getTitle())) {
+            changes.put("title", edited.getTitle());
+        }
+        if (base == null || !Objects.equals(base.getDescription(), edited.getDescription())) {
+            changes.put("description", edited.getDescription());
+        }
+        if (base == null || !Objects.equals(base.getDate(), edited.getDate())) {
+            changes.put("date", edited.getDate());
+            changes.put("dueDay", DueDates.toEpochDay(edited.getDate()));
+        }
+        if (base == null || !Objects.equals(base.getPriority(), edited.getPriority())) {
+            changes.put("priority", edited.getPriority());
+        }
+        if (base == null || !Objects.equals(base.getCategory(), edited.getCategory())) {
+            changes.put("category", edited.getCategory());
+        }
+        return changes;
     }
 
+    /**
+     * The Room copy supplies the previous state for the stats document.
+     */
     public void deleteTodo(String todoId, FirestoreManager.FirestoreCallback<Void> callback) {
-        firestoreManager.deleteTodo(todoId, callback);
+        TodoDatabase.databaseExecutor.execute(() -> {
+            Todo deleted = todoDao.getTodo(todoId);
+            firestoreManager.deleteTodo(todoId, deleted, withLocalWrite(
+                    () -> todoDao.deleteByIds(Collections.singletonList(todoId)), callback));
+        });
+    }
+
+    // Bulk operations, split into 500-write batches with bounded concurrency
+    public void completeTodos(List<String> todoIds, FirestoreManager.FirestoreCallback<BulkWriteResult> callback) {
+        TodoDatabase.databaseExecutor.execute(() -> completeResolved(resolve(todoIds), callback));
+    }
+
+    public void deleteTodos(List<String> todoIds, FirestoreManager.FirestoreCallback<BulkWriteResult> callback) {
+        TodoDatabase.databaseExecutor.execute(() -> deleteResolved(resolve(todoIds), callback));
+    }
+
+    /**
+     * Completes every pending todo of the user, not just the loaded ones.
+     */
+    public void completeAllTodos(String userId, FirestoreManager.FirestoreCallback<BulkWriteResult> callback) {
+        firestoreManager.getTodosByCompletion(userId, false, new FirestoreManager.FirestoreCallback<List<Todo>>() {
+            @Override
+            public void onSuccess(List<Todo> todos) {
+                completeResolved(todos, callback);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                callback.onFailure(error);
+            }
+        });
+    }
+
+    /**
+     * Deletes every completed todo of the user, not just the loaded ones.
+     */
+    public void deleteCompletedTodos(String userId, FirestoreManager.FirestoreCallback<BulkWriteResult> callback) {
+        firestoreManager.getTodosByCompletion(userId, true, new FirestoreManager.FirestoreCallback<List<Todo>>() {
+            @Override
+            public void onSuccess(List<Todo> todos) {
+                deleteResolved(todos, callback);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                callback.onFailure(error);
+            }
+        });
+    }
+
+    // Runs on the database executor. Ids without a Room row become id-only
+    // todos, which the stats document skips.
+    private List<Todo> resolve(List<String> todoIds) {
+        List<Todo> todos = todoDao.getTodosChunked(todoIds);
+        Set<String> found = new HashSet<>();
+        for (Todo todo : todos) {
+            found.add(todo.getId());
+        }
+        for (String todoId : todoIds) {
+            if (!found.contains(todoId)) {
+                Todo unknown = new Todo();
+                unknown.setId(todoId);
+                todos.add(unknown);
+            }
+        }
+        return todos;
+    }
+
+    private void completeResolved(List<Todo> todos, FirestoreManager.FirestoreCallback<BulkWriteResult> callback) {
+        firestoreManager.setTodosCompleted(todos, true, withBulkLocalWrite(
+                written -> todoDao.setCompletedChunked(written, true), callback));
+    }
+
+    private void deleteResolved(List<Todo> todos, FirestoreManager.FirestoreCallback<BulkWriteResult> callback) {
+        firestoreManager.deleteTodos(todos, withBulkLocalWrite(todoDao::deleteByIdsChunked, callback));
+    }
+
+    private interface BulkLocalWrite {
+        void apply(List<String> writtenIds);
+    }
+
+    // Mirrors only the todos the bulk write committed
+    private static FirestoreManager.FirestoreCallback<BulkWriteResult> withBulkLocalWrite(
+            BulkLocalWrite localWrite, FirestoreManager.FirestoreCallback<BulkWriteResult> callback) {
+        return new FirestoreManager.FirestoreCallback<BulkWriteResult>() {
+            @Override
+            public void onSuccess(BulkWriteResult result) {
+                if (!result.getWrittenIds().isEmpty()) {
+                    TodoDatabase.databaseExecutor.execute(() -> localWrite.apply(result.getWrittenIds()));
+                }
+                callback.onSuccess(result);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                callback.onFailure(error);
+            }
+        };
+    }
+
+    private static <T> FirestoreManager.FirestoreCallback<T> withLocalWrite(
+            Runnable localWrite, FirestoreManager.FirestoreCallback<T> callback) {
+        return new FirestoreManager.FirestoreCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                TodoDatabase.databaseExecutor.execute(localWrite);
+                callback.onSuccess(result);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                callback.onFailure(error);
+            }
+        };
     }
 
     public LiveData<List<Todo>> getUserTodos(String userId) {
-        return firestoreManager.getUserTodos(userId);
+        return getUserTodos(userId, TodoFilter.ALL);
+    }
+
+    /**
+     * The user's todos matching {@code filter}. Switches the live query to
+     * the filter; the previous query stays attached for a grace period in
+     * case it is switched back.
+     */
+    public LiveData<List<Todo>> getUserTodos(String userId, TodoFilter filter) {
+        startSync(userId, filter);
+        return todoDao.observeUserTodos(userId, filter);
+    }
+
+    public LiveData<List<Todo>> getActiveTodos(String userId) {
+        return getUserTodos(userId, TodoFilter.ACTIVE);
     }
 
-    public void toggleTodoComplete(String todoId, boolean isCompleted, FirestoreManager.FirestoreCallback<Void> callback) {
-        firestoreManager.toggleTodoComplete(todoId, isCompleted, callback);
+    public LiveData<List<Todo>> getUserTodosByCompletion(String userId, boolean completed) {
+        return getUserTodos(userId, TodoFilter.byCompletion(completed));
+    }
+
+    public LiveData<List<Todo>> getUserTodosByPriority(String userId, String priority) {
+        return getUserTodos(userId, TodoFilter.byPriority(priority));
+    }
+
+    public LiveData<List<Todo>> getUserTodosByCategory(String userId, String category) {
+        return getUserTodos(userId, TodoFilter.byCategory(category));
+    }
+
+    // Due-date views, queried on the server by dueDay
+    public void getOverdueTodos(String userId, FirestoreManager.FirestoreCallback<List<Todo>> callback) {
+        firestoreManager.getOverdueTodos(userId, DueDates.today(), callback);
+    }
+
+    public void getTodosDueToday(String userId, FirestoreManager.FirestoreCallback<List<Todo>> callback) {
+        long today = DueDates.today();
+        firestoreManager.getTodosDueBetween(userId, today, today, callback);
+    }
+
+    /**
+     * Todos due from today through the next {@code days - 1} days.
+     */
+    public void getTodosDueWithin(String userId, int days, FirestoreManager.FirestoreCallback<List<Todo>> callback) {
+        long today = DueDates.today();
+        firestoreManager.getTodosDueBetween(userId, today, today + Math.max(days, 1) - 1, callback);
+    }
+
+    /**
+     * Fetches the next older page into Room; the observed LiveData picks it
+     * up from there. The callback reports whether more pages may follow.
+     */
+    public void loadNextPage(String userId, FirestoreManager.FirestoreCallback<Boolean> callback) {
+        if (syncEngine == null || !syncEngine.getUserId().equals(userId)) {
+            // Pages continue from the live window, which isn't open yet
+            callback.onSuccess(true);
+            return;
+        }
+        if (pagingSource == null || pagingSource.getSyncEngine() != syncEngine) {
+            pagingSource = new TodoPagingSource(firestoreManager, todoDao, syncEngine,
+                    new StaleTodoResolver(firestoreManager, todoDao, userId), FirestoreManager.TODOS_PAGE_SIZE);
+        }
+        pagingSource.loadNextPage(callback);
+    }
+
+    private void startSync(String userId, TodoFilter filter) {
+        if (syncEngine != null && syncEngine.getUserId().equals(userId) && syncEngine.getFilter().equals(filter)) {
+            return;
+        }
+        stopSync();
+
+        // Register before acquiring so the initial snapshot is not missed
+        syncEngine = new TodoSyncEngine(database, userId, filter,
+                new StaleTodoResolver(firestoreManager, todoDao, userId));
+        primeFromCache(syncEngine);
+        subscription.addTodoChangeListener(syncEngine);
+        subscription.getUserTodos(userId, filter);
+        statsReconciler.reconcileIfStale(userId);
+        dueDayBackfill.runIfNeeded(userId);
+    }
+
+    /**
+     * Room is what the list shows first. When it has nothing for the user
+     * yet, fill it from Firestore's cache instead of waiting for the live
+     * listener's first snapshot.
+     */
+    private void primeFromCache(TodoSyncEngine engine) {
+        String userId = engine.getUserId();
+        TodoFilter filter = engine.getFilter();
+        TodoDatabase.databaseExecutor.execute(() -> {
+            if (todoDao.hasUserTodos(userId, filter)) {
+                return;
+            }
+            firestoreManager.getCachedTodos(userId, filter, new FirestoreManager.FirestoreCallback<List<Todo>>() {
+                @Override
+                public void onSuccess(List<Todo> todos) {
+                    engine.prime(todos);
+                }
+
+                @Override
+                public void onFailure(String error) {
+                    // The live listener fills Room on its own
+                }
+            });
+        });
+    }
+
+    private void stopSync() {
+        if (syncEngine != null) {
+            subscription.removeTodoChangeListener(syncEngine);
+            syncEngine = null;
+        }
+    }
+
+    public void toggleTodoComplete(String userId, String todoId, boolean wasCompleted, boolean isCompleted,
+                                   FirestoreManager.FirestoreCallback<Void> callback) {
+        firestoreManager.toggleTodoComplete(userId, todoId, wasCompleted, isCompleted, withLocalWrite(
+                () -> todoDao.setCompleted(Collections.singletonList(todoId), isCompleted), callback));
+    }
+
+    /**
+     * Reads the stats document, falling back to count() aggregations while
+     * it doesn't exist yet.
+     */
+    public void loadTodoStats(String userId, FirestoreManager.FirestoreCallback<TodoStats> callback) {
+        firestoreManager.getTodoStats(userId, new FirestoreManager.FirestoreCallback<TodoStats>() {
+            @Override
+            public void onSuccess(TodoStats stats) {
+                if (stats != null) {
+                    callback.onSuccess(stats);
+                } else {
+                    firestoreManager.countTodos(userId, callback);
+                }
+            }
+
+            @Override
+            public void onFailure(String error) {
+                firestoreManager.countTodos(userId, callback);
+            }
+        });
+    }
+
+    public void addTodoChangeListener(FirestoreManager.TodoChangeListener listener) {
+        subscription.addTodoChangeListener(listener);
+    }
+
+    public void removeTodoChangeListener(FirestoreManager.TodoChangeListener listener) {
+        subscription.removeTodoChangeListener(listener);
     }
 
     public void removeListener() {
-        firestoreManager.removeListener();
+        stopSync();
+        subscription.release();
+    }
+
+    public void forceRefresh() {
+        subscription.forceRefresh();
     }
-}
\ No newline at end of file
+}
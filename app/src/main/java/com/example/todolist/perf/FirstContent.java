@@ -0,0 +1,44 @@
+package com.example.todolist.perf;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Time from process start to the first todos being available, recorded
+ * once per process for each {@link Path}. Logged in every build so cold
+ * starts can be compared from logcat:
+ * {@code adb logcat -s FirstContent}.
+ */
+public final class FirstContent {
+    private static final String TAG = "FirstContent";
+
+    public enum Path {
+        // Rows on screen from Room or Firestore's cache, before the server answered
+        CACHE,
+        // The live listener's first server result published
+        LIVE
+    }
+
+    private static final long[] elapsedMs = {-1, -1};
+
+    private FirstContent() {
+    }
+
+    public static synchronized void record(Path path) {
+        if (elapsedMs[path.ordinal()] >= 0) {
+            return;
+        }
+        long elapsed = SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime();
+        elapsedMs[path.ordinal()] = elapsed;
+        Log.i(TAG, "Time to first content (" + path + "): " + elapsed + " ms");
+    }
+
+    /**
+     * Milliseconds since process start, or -1 if {@code path} hasn't
+     * happened yet.
+     */
+    public static synchronized long getElapsedMs(Path path) {
+        return elapsedMs[path.ordinal()];
+    }
+}
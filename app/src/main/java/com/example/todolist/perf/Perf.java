@@ -0,0 +1,194 @@
+package com.example.todolist.perf;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import com.example.todolist.BuildConfig;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Trace sections, counters and timers for the todo list's hot paths:
+ * snapshot delivery, document mapping, row building, diffing and binding.
+ *
+ * Everything is gated on {@link #ENABLED}, a compile-time constant set with
+ * {@code -PperfTracing=true}. When it is false javac drops the guarded
+ * code, so a normal build pays nothing. Sections show up in Perfetto and
+ * systrace captures of builds with it on.
+ */
+public final class Perf {
+    private static final String TAG = "Perf";
+
+    public static final boolean ENABLED = BuildConfig.PERF_TRACING;
+
+    /**
+     * Guard for per-event logs on hot paths (per snapshot, per toggle, per
+     * row). False in release builds, where the string building is compiled
+     * out together with the call.
+     */
+    public static final boolean LOG_HOT_PATHS = BuildConfig.DEBUG;
+
+    /**
+     * Async section from adding a todo to the server acknowledging it;
+     * measured by the macrobenchmark module.
+     */
+    public static final String ADD_TODO_ROUND_TRIP = "AddTodo.roundTrip";
+
+    public static final Counter SNAPSHOTS = new Counter("snapshots");
+    public static final Counter DOCUMENTS_DECODED = new Counter("documentsDecoded");
+    public static final Counter ROWS_BUILT = new Counter("rowsBuilt");
+    public static final Counter ROWS_REUSED = new Counter("rowsReused");
+    public static final Counter ROWS_BOUND = new Counter("rowsBound");
+
+    public static final Timer SNAPSHOT_APPLY = new Timer("snapshotApply");
+    public static final Timer SNAPSHOT_DELIVERY = new Timer("snapshotDelivery");
+    public static final Timer QUERY_MAPPING = new Timer("queryMapping");
+    public static final Timer ROW_BUILD = new Timer("rowBuild");
+    public static final Timer DIFF = new Timer("diff");
+    public static final Timer BIND = new Timer("bind");
+
+    private static final Counter[] COUNTERS = {SNAPSHOTS, DOCUMENTS_DECODED, ROWS_BUILT, ROWS_REUSED, ROWS_BOUND};
+    private static final Timer[] TIMERS = {SNAPSHOT_APPLY, SNAPSHOT_DELIVERY, QUERY_MAPPING, ROW_BUILD, DIFF, BIND};
+
+    public static class Counter {
+        private final String name;
+        private final AtomicLong value = new AtomicLong();
+
+        Counter(String name) {
+            this.name = name;
+        }
+
+        public void increment() {
+            if (ENABLED) {
+                value.incrementAndGet();
+            }
+        }
+
+        public void add(long delta) {
+            if (ENABLED) {
+                value.addAndGet(delta);
+            }
+        }
+
+        public long get() {
+            return value.get();
+        }
+
+        @Override
+        public String toString() {
+            return name + "=" + get();
+        }
+    }
+
+    /**
+     * Count, total and maximum of durations, in nanoseconds.
+     */
+    public static class Timer {
+        private final String name;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        Timer(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Records the time since {@code startNanos}, a value from
+         * {@link Perf#start()}.
+         */
+        public void stop(long startNanos) {
+            if (!ENABLED) {
+                return;
+            }
+            long elapsed = SystemClock.elapsedRealtimeNanos() - startNanos;
+            count.incrementAndGet();
+            totalNanos.addAndGet(elapsed);
+            long max;
+            do {
+                max = maxNanos.get();
+            } while (elapsed > max && !maxNanos.compareAndSet(max, elapsed));
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public double getAverageMs() {
+            long n = count.get();
+            return n == 0 ? 0 : totalNanos.get() / 1e6 / n;
+        }
+
+        public double getMaxMs() {
+            return maxNanos.get() / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return name + "{n=" + getCount()
+                    + ", avgMs=" + String.format(Locale.US, "%.2f", getAverageMs())
+                    + ", maxMs=" + String.format(Locale.US, "%.2f", getMaxMs()) + "}";
+        }
+    }
+
+    private Perf() {
+    }
+
+    /**
+     * Opens a trace section on the current thread. Must be closed with
+     * {@link #endSection()} on the same thread.
+     */
+    public static void beginSection(String name) {
+        if (ENABLED) {
+            Trace.beginSection(name);
+        }
+    }
+
+    public static void endSection() {
+        if (ENABLED) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Opens a trace section that may end on another thread, such as one
+     * spanning a write and its server acknowledgement. {@code cookie}
+     * tells apart overlapping sections with the same name. Needs API 29;
+     * a no-op below it.
+     */
+    public static void beginAsyncSection(String name, int cookie) {
+        if (ENABLED && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(name, cookie);
+        }
+    }
+
+    public static void endAsyncSection(String name, int cookie) {
+        if (ENABLED && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(name, cookie);
+        }
+    }
+
+    /**
+     * Start time for a {@link Timer}; 0 when disabled.
+     */
+    public static long start() {
+        return ENABLED ? SystemClock.elapsedRealtimeNanos() : 0;
+    }
+
+    public static void logSummary() {
+        if (!ENABLED) {
+            return;
+        }
+        StringBuilder summary = new StringBuilder();
+        for (Counter counter : COUNTERS) {
+            summary.append(counter).append(", ");
+        }
+        for (Timer timer : TIMERS) {
+            summary.append(timer).append(", ");
+        }
+        Log.i(TAG, summary.substring(0, summary.length() - 2));
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.todolist.startup;
+
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.todolist.perf.Perf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the app's initializers as a dependency graph. MAIN initializers run
+ * inline in {@link #start()}, in the order they were added, and are what
+ * sits on the critical path to the first frame. BACKGROUND initializers
+ * run on a small pool as soon as their dependencies have finished.
+ *
+ * Dependencies must be added before the initializers that need them, and
+ * a MAIN initializer may only depend on other MAIN initializers, so the
+ * main thread never waits on the pool. Once everything has run, each
+ * initializer's thread, start offset and duration is logged.
+ */
+public final class StartupOrchestrator {
+    private static final String TAG = "Startup";
+    private static final int BACKGROUND_THREADS = 2;
+
+    public enum Dispatch {MAIN, BACKGROUND}
+
+    /**
+     * How one initializer ran; offsets are from {@link #start()}.
+     */
+    public static final class Timing {
+        public final String name;
+        public final Dispatch dispatch;
+        public final long startOffsetNanos;
+        public final long durationNanos;
+
+        Timing(String name, Dispatch dispatch, long startOffsetNanos, long durationNanos) {
+            this.name = name;
+            this.dispatch = dispatch;
+            this.startOffsetNanos = startOffsetNanos;
+            this.durationNanos = durationNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s [%s] +%.1fms %.1fms", name, dispatch,
+                    startOffsetNanos / 1e6, durationNanos / 1e6);
+        }
+    }
+
+    private static final class Initializer {
+        final String name;
+        final Dispatch dispatch;
+        final Runnable body;
+        final List<Initializer> dependents = new ArrayList<>();
+        final AtomicInteger pendingDependencies;
+        volatile Timing timing;
+
+        Initializer(String name, Dispatch dispatch, Runnable body, int dependencies) {
+            this.name = name;
+            this.dispatch = dispatch;
+            this.body = body;
+            this.pendingDependencies = new AtomicInteger(dependencies);
+        }
+    }
+
+    private final Map<String, Initializer> initializers = new LinkedHashMap<>();
+    private final AtomicInteger remaining = new AtomicInteger();
+    private ExecutorService background;
+    private long startNanos;
+    private volatile long mainThreadNanos;
+
+    public StartupOrchestrator add(String name, Dispatch dispatch, Runnable body, String... dependencies) {
+        if (initializers.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate initializer " + name);
+        }
+        Initializer initializer = new Initializer(name, dispatch, body, dependencies.length);
+        for (String dependency : dependencies) {
+            Initializer required = initializers.get(dependency);
+            if (required == null) {
+                throw new IllegalArgumentException(name + " depends on " + dependency
+                        + ", which has to be added first");
+            }
+            if (dispatch == Dispatch.MAIN && required.dispatch != Dispatch.MAIN) {
+                throw new IllegalArgumentException("MAIN initializer " + name
+                        + " can't wait for BACKGROUND initializer " + dependency);
+            }
+            required.dependents.add(initializer);
+        }
+        initializers.put(name, initializer);
+        return this;
+    }
+
+    /**
+     * Starts the background initializers that can run right away, then
+     * runs the MAIN ones. Call once, on the main thread.
+     */
+    public void start() {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            throw new IllegalStateException("start() must be called on the main thread");
+        }
+        startNanos = SystemClock.elapsedRealtimeNanos();
+        // One more for the main thread's pass, so the report waits for it
+        remaining.set(initializers.size() + 1);
+        background = newBackgroundExecutor();
+
+        for (Initializer initializer : initializers.values()) {
+            if (initializer.dispatch == Dispatch.BACKGROUND && initializer.pendingDependencies.get() == 0) {
+                background.execute(() -> run(initializer));
+            }
+        }
+        // Insertion order is a topological order, and MAIN initializers
+        // only depend on MAIN ones, so each is ready when reached
+        for (Initializer initializer : initializers.values()) {
+            if (initializer.dispatch == Dispatch.MAIN) {
+                run(initializer);
+            }
+        }
+        mainThreadNanos = SystemClock.elapsedRealtimeNanos() - startNanos;
+        Log.i(TAG, String.format(Locale.US, "Main thread initializers took %.1fms", mainThreadNanos / 1e6));
+        finished();
+    }
+
+    /**
+     * Timings of the initializers that have finished, in the order they
+     * were added.
+     */
+    public List<Timing> getTimings() {
+        List<Timing> timings = new ArrayList<>();
+        for (Initializer initializer : initializers.values()) {
+            if (initializer.timing != null) {
+                timings.add(initializer.timing);
+            }
+        }
+        return Collections.unmodifiableList(timings);
+    }
+
+    private void run(Initializer initializer) {
+        long begin = SystemClock.elapsedRealtimeNanos();
+        Perf.beginSection("Startup." + initializer.name);
+        try {
+            initializer.body.run();
+        } catch (RuntimeException e) {
+            // Whatever needed this will fail on first use, with a better
+            // message than a crash at launch
+            Log.e(TAG, "Initializer " + initializer.name + " failed", e);
+        } finally {
+            Perf.endSection();
+        }
+        long end = SystemClock.elapsedRealtimeNanos();
+        initializer.timing = new Timing(initializer.name, initializer.dispatch, begin - startNanos, end - begin);
+
+        for (Initializer dependent : initializer.dependents) {
+            if (dependent.pendingDependencies.decrementAndGet() == 0
+                    && dependent.dispatch == Dispatch.BACKGROUND) {
+                background.execute(() -> run(dependent));
+            }
+        }
+        finished();
+    }
+
+    private void finished() {
+        if (remaining.decrementAndGet() == 0) {
+            background.shutdown();
+            logTimings();
+        }
+    }
+
+    private void logTimings() {
+        StringBuilder report = new StringBuilder("Initializers: ");
+        report.append(String.format(Locale.US, "main thread %.1fms; ", mainThreadNanos / 1e6));
+        List<Timing> timings = getTimings();
+        for (int i = 0; i < timings.size(); i++) {
+            report.append(i == 0 ? "" : ", ").append(timings.get(i));
+        }
+        Log.i(TAG, report.toString());
+    }
+
+    private static ExecutorService newBackgroundExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(BACKGROUND_THREADS, BACKGROUND_THREADS,
+                5, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "startup-" + count.incrementAndGet());
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -1,36 +1,71 @@
 package com.example.todolist.ui.adapter;
 
+import android.content.Context;
 import android.graphics.Paint;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.CheckBox;
 import android.widget.ImageButton;
+import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.cardview.widget.CardView;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.todolist.R;
 import com.example.todolist.data.model.Todo;
+import com.example.todolist.perf.Perf;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+public class TodoAdapter extends ListAdapter<TodoRowModel, TodoAdapter.TodoViewHolder> {
+    // Builds row models and diffs them, in submission order
+    private static final Executor ROW_EXECUTOR = Executors.newSingleThreadExecutor();
 
-public class TodoAdapter extends RecyclerView.Adapter<TodoAdapter.TodoViewHolder> {
-    private List<Todo> todos = new ArrayList<>();
     private OnTodoClickListener listener;
+    private final TodoRowModel.Factory rowFactory;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Bumped on every setTodos so a slower earlier build isn't submitted
+    private int generation;
+    // Document ids are strings, RecyclerView wants longs; hand out one per
+    // id in the current list. Never reused, so pruning can't cause clashes.
+    private final Map<String, Long> stableIds = new HashMap<>();
+    private long nextStableId = 0;
+    // Rebinding only the selection highlight when selection changes
+    private static final Object PAYLOAD_SELECTION = new Object();
+    private final Set<String> selectedIds = new HashSet<>();
+    private boolean selectionMode = false;
 
     public interface OnTodoClickListener {
         void onTodoClick(Todo todo);
         void onEditClick(Todo todo);
         void onDeleteClick(Todo todo);
         void onCompleteToggle(Todo todo, boolean isCompleted);
+        // Called when selection mode starts, ends (count 0) or the count changes
+        void onSelectionChanged(int selectedCount);
     }
 
-    public TodoAdapter(OnTodoClickListener listener) {
+    public TodoAdapter(Context context, OnTodoClickListener listener) {
+        super(new AsyncDifferConfig.Builder<>(new TodoDiffCallback())
+                .setBackgroundThreadExecutor(ROW_EXECUTOR)
+                .build());
+        this.rowFactory = new TodoRowModel.Factory(context);
         this.listener = listener;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -43,26 +78,156 @@ public class TodoAdapter extends RecyclerView.Adapter<TodoAdapter.TodoViewHolder
 
     @Override
     public void onBindViewHolder(@NonNull TodoViewHolder holder, int position) {
-        Todo todo = todos.get(position);
-        holder.bind(todo);
+        Perf.beginSection("TodoAdapter.bind");
+        long start = Perf.start();
+        holder.bind(getItem(position));
+        Perf.BIND.stop(start);
+        Perf.ROWS_BOUND.increment();
+        Perf.endSection();
     }
 
     @Override
-    public int getItemCount() {
-        return todos.size();
+    public void onBindViewHolder(@NonNull TodoViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.contains(PAYLOAD_SELECTION)) {
+            holder.bindSelection(getItem(position));
+        } else {
+            super.onBindViewHolder(holder, position, payloads);
+        }
+    }
+
+    @Override
+    public long getItemId(int position) {
+        String id = getItem(position).getId();
+        Long stableId = stableIds.get(id);
+        if (stableId == null) {
+            stableId = nextStableId++;
+            stableIds.put(id, stableId);
+        }
+        return stableId;
+    }
+
+    /**
+     * Forgets stable ids and selections of todos that left the list, so
+     * neither grows with every todo ever shown.
+     */
+    @Override
+    public void onCurrentListChanged(@NonNull List<TodoRowModel> previousList,
+                                     @NonNull List<TodoRowModel> currentList) {
+        Set<String> currentIds = new HashSet<>(currentList.size() * 2);
+        for (TodoRowModel row : currentList) {
+            currentIds.add(row.getId());
+        }
+        stableIds.keySet().retainAll(currentIds);
+
+        if (selectedIds.retainAll(currentIds) && selectionMode) {
+            if (selectedIds.isEmpty()) {
+                clearSelection();
+            } else {
+                notifySelectionChanged();
+            }
+        }
     }
 
+    /**
+     * Builds row models and diffs them against the current list on a
+     * background thread, then dispatches only the resulting change
+     * notifications.
+     */
     public void setTodos(List<Todo> todos) {
-        this.todos = new ArrayList<>(todos); // Create a copy to avoid reference issues
-        notifyDataSetChanged();
+        setTodos(todos, null);
+    }
+
+    /**
+     * Like {@link #setTodos(List)}, running {@code onCommitted} on the main
+     * thread once the list is displayed. Not run if a later call replaces
+     * this list before it is committed.
+     */
+    public void setTodos(List<Todo> todos, Runnable onCommitted) {
+        int requested = ++generation;
+        List<Todo> snapshot = new ArrayList<>(todos);
+        ROW_EXECUTOR.execute(() -> {
+            Perf.beginSection("TodoAdapter.buildRows");
+            long buildStart = Perf.start();
+            List<TodoRowModel> rows = rowFactory.build(snapshot);
+            Perf.ROW_BUILD.stop(buildStart);
+            Perf.endSection();
+
+            mainHandler.post(() -> {
+                if (requested != generation) {
+                    return;
+                }
+                if (Perf.ENABLED) {
+                    // Diff on ROW_EXECUTOR plus dispatch of the updates
+                    long diffStart = Perf.start();
+                    submitList(rows, () -> {
+                        Perf.DIFF.stop(diffStart);
+                        if (onCommitted != null) {
+                            onCommitted.run();
+                        }
+                    });
+                } else {
+                    submitList(rows, onCommitted);
+                }
+            });
+        });
+    }
+
+    public boolean isSelectionMode() {
+        return selectionMode;
+    }
+
+    public List<String> getSelectedIds() {
+        return new ArrayList<>(selectedIds);
+    }
+
+    public void selectAll() {
+        selectionMode = true;
+        for (TodoRowModel row : getCurrentList()) {
+            selectedIds.add(row.getId());
+        }
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+        notifySelectionChanged();
+    }
+
+    public void clearSelection() {
+        selectionMode = false;
+        selectedIds.clear();
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+        notifySelectionChanged();
+    }
+
+    private void toggleSelection(int position) {
+        String id = getItem(position).getId();
+        if (!selectedIds.remove(id)) {
+            selectedIds.add(id);
+        }
+        notifyItemChanged(position, PAYLOAD_SELECTION);
+
+        if (selectedIds.isEmpty()) {
+            clearSelection();
+        } else {
+            notifySelectionChanged();
+        }
+    }
+
+    private void notifySelectionChanged() {
+        if (listener != null) {
+            listener.onSelectionChanged(selectedIds.size());
+        }
     }
 
     class TodoViewHolder extends RecyclerView.ViewHolder {
         private TextView tvTitle, tvDescription, tvDate, tvPriority, tvCategory;
         private CheckBox cbCompleted;
         private ImageButton btnEdit, btnDelete;
+        private ImageView ivSyncState;
         private View priorityIndicator;
         private boolean isBinding = false; // Flag to prevent recursive calls
+        private final int selectedBackground;
+        private final int defaultBackground;
+        // Paint flags from the layout, without strike-through
+        private final int titlePaintFlags;
+        private final int descriptionPaintFlags;
 
         public TodoViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -75,93 +240,86 @@ public class TodoAdapter extends RecyclerView.Adapter<TodoAdapter.TodoViewHolder
             btnEdit = itemView.findViewById(R.id.btnEdit);
             btnDelete = itemView.findViewById(R.id.btnDelete);
             priorityIndicator = itemView.findViewById(R.id.priorityIndicator);
+            ivSyncState = itemView.findViewById(R.id.ivSyncState);
+
+            selectedBackground = ContextCompat.getColor(itemView.getContext(), R.color.primary_light_color);
+            defaultBackground = ContextCompat.getColor(itemView.getContext(), R.color.card_background);
+            titlePaintFlags = tvTitle.getPaintFlags() & ~Paint.STRIKE_THRU_TEXT_FLAG;
+            descriptionPaintFlags = tvDescription.getPaintFlags() & ~Paint.STRIKE_THRU_TEXT_FLAG;
 
             itemView.setOnClickListener(v -> {
-                if (listener != null && getAdapterPosition() != RecyclerView.NO_POSITION) {
-                    listener.onTodoClick(todos.get(getAdapterPosition()));
+                if (getAdapterPosition() == RecyclerView.NO_POSITION) {
+                    return;
                 }
+                if (selectionMode) {
+                    toggleSelection(getAdapterPosition());
+                } else if (listener != null) {
+                    listener.onTodoClick(getItem(getAdapterPosition()).getTodo());
+                }
+            });
+
+            itemView.setOnLongClickListener(v -> {
+                if (getAdapterPosition() == RecyclerView.NO_POSITION) {
+                    return false;
+                }
+                selectionMode = true;
+                toggleSelection(getAdapterPosition());
+                return true;
             });
 
             btnEdit.setOnClickListener(v -> {
                 if (listener != null && getAdapterPosition() != RecyclerView.NO_POSITION) {
-                    listener.onEditClick(todos.get(getAdapterPosition()));
+                    listener.onEditClick(getItem(getAdapterPosition()).getTodo());
                 }
             });
 
             btnDelete.setOnClickListener(v -> {
                 if (listener != null && getAdapterPosition() != RecyclerView.NO_POSITION) {
-                    listener.onDeleteClick(todos.get(getAdapterPosition()));
+                    listener.onDeleteClick(getItem(getAdapterPosition()).getTodo());
                 }
             });
 
             cbCompleted.setOnCheckedChangeListener((buttonView, isChecked) -> {
                 if (!isBinding && listener != null && getAdapterPosition() != RecyclerView.NO_POSITION) {
-                    Todo todo = todos.get(getAdapterPosition());
+                    Todo todo = getItem(getAdapterPosition()).getTodo();
                     listener.onCompleteToggle(todo, isChecked);
                 }
             });
         }
 
-        public void bind(Todo todo) {
+        public void bind(TodoRowModel row) {
             isBinding = true; // Prevent checkbox listener from firing during binding
 
-            tvTitle.setText(todo.getTitle());
-            tvDescription.setText(todo.getDescription());
-            tvDate.setText(todo.getDate());
-            tvPriority.setText(todo.getPriority());
-            tvCategory.setText(todo.getCategory());
+            tvTitle.setText(row.getTitle());
+            tvDescription.setText(row.getDescription());
+            tvDate.setText(row.getDateText());
+            tvPriority.setText(row.getPriorityText());
+            tvCategory.setText(row.getCategory());
+            ivSyncState.setVisibility(row.isPendingWrite() ? View.VISIBLE : View.GONE);
 
             // Set checkbox state without triggering listener
-            cbCompleted.setChecked(todo.isCompleted());
-
-            // Set priority color
-            int priorityColor = getPriorityColor(todo.getPriority());
-            priorityIndicator.setBackgroundColor(priorityColor);
-            tvPriority.setTextColor(priorityColor);
-
-            // Apply visual changes for completed todos
-            if (todo.isCompleted()) {
-                // Strike through text
-                tvTitle.setPaintFlags(tvTitle.getPaintFlags() | Paint.STRIKE_THRU_TEXT_FLAG);
-                tvDescription.setPaintFlags(tvDescription.getPaintFlags() | Paint.STRIKE_THRU_TEXT_FLAG);
+            cbCompleted.setChecked(row.isCompleted());
 
-                // Reduce opacity
-                itemView.setAlpha(0.7f);
+            priorityIndicator.setBackgroundColor(row.getPriorityColor());
+            tvPriority.setTextColor(row.getPriorityColor());
 
-                // Disable edit button for completed todos
-                btnEdit.setEnabled(false);
-                btnEdit.setAlpha(0.5f);
-            } else {
-                // Remove strike through
-                tvTitle.setPaintFlags(tvTitle.getPaintFlags() & (~Paint.STRIKE_THRU_TEXT_FLAG));
-                tvDescription.setPaintFlags(tvDescription.getPaintFlags() & (~Paint.STRIKE_THRU_TEXT_FLAG));
-
-                // Full opacity
-                itemView.setAlpha(1.0f);
+            // Completed todos: struck through, faded, not editable
+            boolean completed = row.isCompleted();
+            tvTitle.setPaintFlags(completed ? titlePaintFlags | Paint.STRIKE_THRU_TEXT_FLAG : titlePaintFlags);
+            tvDescription.setPaintFlags(completed
+                    ? descriptionPaintFlags | Paint.STRIKE_THRU_TEXT_FLAG : descriptionPaintFlags);
+            itemView.setAlpha(completed ? 0.7f : 1.0f);
+            btnEdit.setEnabled(!completed);
+            btnEdit.setAlpha(completed ? 0.5f : 1.0f);
 
-                // Enable edit button
-                btnEdit.setEnabled(true);
-                btnEdit.setAlpha(1.0f);
-            }
+            bindSelection(row);
 
             isBinding = false; // Re-enable checkbox listener
         }
 
-        private int getPriorityColor(String priority) {
-            if (priority == null) {
-                return ContextCompat.getColor(itemView.getContext(), R.color.priority_medium);
-            }
-
-            switch (priority.toUpperCase()) {
-                case "HIGH":
-                    return ContextCompat.getColor(itemView.getContext(), R.color.priority_high);
-                case "MEDIUM":
-                    return ContextCompat.getColor(itemView.getContext(), R.color.priority_medium);
-                case "LOW":
-                    return ContextCompat.getColor(itemView.getContext(), R.color.priority_low);
-                default:
-                    return ContextCompat.getColor(itemView.getContext(), R.color.priority_medium);
-            }
+        void bindSelection(TodoRowModel row) {
+            boolean selected = selectionMode && selectedIds.contains(row.getId());
+            ((CardView) itemView).setCardBackgroundColor(selected ? selectedBackground : defaultBackground);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.example.todolist.ui.adapter;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+
+import java.util.Objects;
+
+/**
+ * Identity is the Firestore document id, content is every value the row
+ * displays. Runs on the AsyncListDiffer background thread.
+ */
+public class TodoDiffCallback extends DiffUtil.ItemCallback<TodoRowModel> {
+
+    @Override
+    public boolean areItemsTheSame(@NonNull TodoRowModel oldItem, @NonNull TodoRowModel newItem) {
+        return Objects.equals(oldItem.getId(), newItem.getId());
+    }
+
+    @Override
+    public boolean areContentsTheSame(@NonNull TodoRowModel oldItem, @NonNull TodoRowModel newItem) {
+        return oldItem.equals(newItem);
+    }
+}
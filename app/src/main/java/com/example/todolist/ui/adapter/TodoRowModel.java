@@ -0,0 +1,223 @@
+package com.example.todolist.ui.adapter;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+
+import com.example.todolist.R;
+import com.example.todolist.data.model.DueDates;
+import com.example.todolist.data.model.Todo;
+import com.example.todolist.perf.Perf;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Everything a todo row shows, resolved ahead of time so that binding only
+ * assigns values. Built by {@link Factory} off the main thread; immutable,
+ * and equal to another model exactly when the row would look the same.
+ */
+public final class TodoRowModel {
+    private final Todo todo;
+    private final String id;
+    private final String title;
+    private final String description;
+    private final String dateText;
+    private final String priorityText;
+    private final int priorityColor;
+    private final String category;
+    private final boolean completed;
+    private final boolean pendingWrite;
+
+    private TodoRowModel(Todo todo, String dateText, int priorityColor) {
+        this.todo = todo;
+        this.id = todo.getId();
+        this.title = todo.getTitle();
+        this.description = todo.getDescription();
+        this.dateText = dateText;
+        this.priorityText = todo.getPriority();
+        this.priorityColor = priorityColor;
+        this.category = todo.getCategory();
+        this.completed = todo.isCompleted();
+        this.pendingWrite = todo.isPendingWrite();
+    }
+
+    /**
+     * The todo this row was built from, handed back to click listeners.
+     */
+    public Todo getTodo() {
+        return todo;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Due date, followed by "Today", "Tomorrow" or "Overdue" when one
+     * applies.
+     */
+    public String getDateText() {
+        return dateText;
+    }
+
+    public String getPriorityText() {
+        return priorityText;
+    }
+
+    public int getPriorityColor() {
+        return priorityColor;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public boolean isPendingWrite() {
+        return pendingWrite;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TodoRowModel)) {
+            return false;
+        }
+        TodoRowModel other = (TodoRowModel) o;
+        return priorityColor == other.priorityColor
+                && completed == other.completed
+                && pendingWrite == other.pendingWrite
+                && Objects.equals(id, other.id)
+                && Objects.equals(title, other.title)
+                && Objects.equals(description, other.description)
+                && Objects.equals(dateText, other.dateText)
+                && Objects.equals(priorityText, other.priorityText)
+                && Objects.equals(category, other.category);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, title, description, dateText, priorityText, priorityColor,
+                category, completed, pendingWrite);
+    }
+
+    /**
+     * Builds row models for a list of todos. Colors and labels are resolved
+     * once up front, and the previous build's model is reused for a todo
+     * whose displayed fields haven't changed since.
+     *
+     * Not thread-safe; call from one background thread.
+     */
+    public static class Factory {
+        private final int highColor;
+        private final int mediumColor;
+        private final int lowColor;
+        private final String todayLabel;
+        private final String tomorrowLabel;
+        private final String overdueLabel;
+        private final String labelFormat;
+
+        private Map<String, TodoRowModel> previous = new HashMap<>();
+        private long previousDay;
+
+        public Factory(Context context) {
+            Context appContext = context.getApplicationContext();
+            highColor = ContextCompat.getColor(appContext, R.color.priority_high);
+            mediumColor = ContextCompat.getColor(appContext, R.color.priority_medium);
+            lowColor = ContextCompat.getColor(appContext, R.color.priority_low);
+            todayLabel = appContext.getString(R.string.today);
+            tomorrowLabel = appContext.getString(R.string.tomorrow);
+            overdueLabel = appContext.getString(R.string.overdue);
+            labelFormat = appContext.getString(R.string.due_date_with_label);
+        }
+
+        public List<TodoRowModel> build(List<Todo> todos) {
+            long today = DueDates.today();
+            // Relative labels change at midnight, so nothing carries over
+            boolean reuse = today == previousDay;
+
+            List<TodoRowModel> models = new ArrayList<>(todos.size());
+            Map<String, TodoRowModel> built = new HashMap<>();
+            for (Todo todo : todos) {
+                TodoRowModel model = reuse ? previous.get(todo.getId()) : null;
+                if (model == null || !isCurrent(model, todo)) {
+                    model = new TodoRowModel(todo, dateText(todo, today), priorityColor(todo.getPriority()));
+                    Perf.ROWS_BUILT.increment();
+                } else {
+                    Perf.ROWS_REUSED.increment();
+                }
+                models.add(model);
+                built.put(model.getId(), model);
+            }
+
+            previous = built;
+            previousDay = today;
+            return models;
+        }
+
+        private static boolean isCurrent(TodoRowModel model, Todo todo) {
+            Todo old = model.getTodo();
+            return old.isPendingWrite() == todo.isPendingWrite()
+                    && Objects.equals(old.getDueDay(), todo.getDueDay())
+                    && old.sameFields(todo);
+        }
+
+        private String dateText(Todo todo, long today) {
+            String label = relativeLabel(todo, today);
+            if (label == null) {
+                return todo.getDate();
+            }
+            return String.format(Locale.getDefault(), labelFormat, todo.getDate(), label);
+        }
+
+        private String relativeLabel(Todo todo, long today) {
+            Long dueDay = todo.getDueDay();
+            if (dueDay == null || todo.isCompleted()) {
+                return null;
+            }
+            if (dueDay < today) {
+                return overdueLabel;
+            } else if (dueDay == today) {
+                return todayLabel;
+            } else if (dueDay == today + 1) {
+                return tomorrowLabel;
+            }
+            return null;
+        }
+
+        private int priorityColor(String priority) {
+            if (priority == null) {
+                return mediumColor;
+            }
+
+            switch (priority.toUpperCase(Locale.ROOT)) {
+                case "HIGH":
+                    return highColor;
+                case "LOW":
+                    return lowColor;
+                case "MEDIUM":
+                default:
+                    return mediumColor;
+            }
+        }
+    }
+}
@@ -1,40 +1,52 @@
 package com.example.todolist.ui.fragment;
 
+import android.app.Activity;
 import android.content.Intent;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.LayoutInflater;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.todolist.AppContainer;
+import com.example.todolist.R;
 import com.example.todolist.databinding.FragmentHomeBinding;
 import com.example.todolist.data.firebase.FirebaseAuthManager;
 import com.example.todolist.data.model.Todo;
+import com.example.todolist.data.model.TodoFilter;
+import com.example.todolist.data.model.TodoStats;
+import com.example.todolist.perf.FirstContent;
 import com.example.todolist.ui.adapter.TodoAdapter;
 import com.example.todolist.ui.main.AddTodoActivity;
 import com.example.todolist.ui.main.EditTodoActivity;
 import com.example.todolist.ui.main.TodoViewModel;
 import com.google.firebase.auth.FirebaseUser;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class HomeFragment extends Fragment implements TodoAdapter.OnTodoClickListener {
     private static final String TAG = "HomeFragment";
     private static final int ADD_TODO_REQUEST = 1001;
     private static final int EDIT_TODO_REQUEST = 1002;
+    // Start fetching the next page this many rows before the end of the list
+    private static final int PREFETCH_DISTANCE = 15;
 
     private FragmentHomeBinding binding;
     private TodoViewModel viewModel;
     private TodoAdapter adapter;
     private FirebaseAuthManager authManager;
+    private boolean showingSelectionMenu = false;
+    private boolean reportedFullyDrawn = false;
 
     @Nullable
     @Override
@@ -47,19 +59,85 @@ public class HomeFragment extends Fragment implements TodoAdapter.OnTodoClickLis
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
 
-        authManager = new FirebaseAuthManager(requireActivity());
+        authManager = AppContainer.from(requireContext()).getAuthManager();
+        setupToolbar();
         setupRecyclerView();
         setupViewModel();
+        updateFilterItem();
         setupFab();
         observeViewModel();
 
         Log.d(TAG, "HomeFragment onViewCreated - setting up initial data");
     }
 
+    private void setupToolbar() {
+        binding.toolbar.inflateMenu(R.menu.home_menu);
+        binding.toolbar.setOnMenuItemClickListener(item -> {
+            int id = item.getItemId();
+            if (id == R.id.action_active_only) {
+                // Only active todos are downloaded while this is on
+                viewModel.setFilter(item.isChecked() ? TodoFilter.ALL : TodoFilter.ACTIVE);
+                updateFilterItem();
+                return true;
+            } else if (id == R.id.action_complete_all) {
+                viewModel.completeAllTodos();
+                return true;
+            } else if (id == R.id.action_delete_completed) {
+                confirmDelete("Delete all completed todos?", () -> viewModel.deleteCompletedTodos());
+                return true;
+            } else if (id == R.id.action_complete_selected) {
+                viewModel.completeTodos(adapter.getSelectedIds());
+                adapter.clearSelection();
+                return true;
+            } else if (id == R.id.action_delete_selected) {
+                List<String> selected = adapter.getSelectedIds();
+                confirmDelete("Delete " + selected.size() + " selected todos?", () -> {
+                    viewModel.deleteTodos(selected);
+                    adapter.clearSelection();
+                });
+                return true;
+            } else if (id == R.id.action_select_all) {
+                adapter.selectAll();
+                return true;
+            }
+            return false;
+        });
+        binding.toolbar.setNavigationOnClickListener(v -> adapter.clearSelection());
+    }
+
+    private void updateFilterItem() {
+        MenuItem item = binding.toolbar.getMenu().findItem(R.id.action_active_only);
+        if (item != null) {
+            item.setChecked(TodoFilter.ACTIVE.equals(viewModel.getFilter()));
+        }
+    }
+
+    private void confirmDelete(String message, Runnable onConfirm) {
+        new AlertDialog.Builder(requireContext())
+                .setTitle("Delete Todos")
+                .setMessage(message)
+                .setPositiveButton("Delete", (dialog, which) -> onConfirm.run())
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
     private void setupRecyclerView() {
-        adapter = new TodoAdapter(this);
-        binding.recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        adapter = new TodoAdapter(requireContext(), this);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(getContext());
+        binding.recyclerView.setLayoutManager(layoutManager);
         binding.recyclerView.setAdapter(adapter);
+        binding.recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy <= 0) {
+                    return;
+                }
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                if (lastVisible >= adapter.getItemCount() - PREFETCH_DISTANCE) {
+                    viewModel.loadNextPage();
+                }
+            }
+        });
         Log.d(TAG, "RecyclerView setup completed");
     }
 
@@ -88,24 +166,29 @@ public class HomeFragment extends Fragment implements TodoAdapter.OnTodoClickLis
 
     private void observeViewModel() {
         viewModel.getUserTodos().observe(getViewLifecycleOwner(), todos -> {
-            Log.d(TAG, "Received todos update: " + (todos != null ? todos.size() : 0) + " items");
-
             if (todos != null) {
-                adapter.setTodos(todos);
-                updateStatistics(todos);
-
-                // Show/hide empty view
-                if (todos.isEmpty()) {
-                    binding.emptyView.setVisibility(View.VISIBLE);
-                    binding.recyclerView.setVisibility(View.GONE);
-                    Log.d(TAG, "Showing empty view");
+                if (!todos.isEmpty() && !reportedFullyDrawn) {
+                    // Startup benchmarks measure time to full display up
+                    // to the first rows on screen
+                    reportedFullyDrawn = true;
+                    boolean beforeServer = !viewModel.hasLiveTodos();
+                    adapter.setTodos(todos, () -> {
+                        if (beforeServer) {
+                            FirstContent.record(FirstContent.Path.CACHE);
+                        }
+                        if (isAdded()) {
+                            requireActivity().reportFullyDrawn();
+                        }
+                    });
                 } else {
-                    binding.emptyView.setVisibility(View.GONE);
-                    binding.recyclerView.setVisibility(View.VISIBLE);
-                    Log.d(TAG, "Showing recycler view with " + todos.size() + " todos");
+                    adapter.setTodos(todos);
                 }
+                updateEmptyView();
             }
         });
+        viewModel.hasNoTodos().observe(getViewLifecycleOwner(), noTodos -> updateEmptyView());
+
+        viewModel.getStatistics().observe(getViewLifecycleOwner(), this::updateStatistics);
 
         viewModel.getErrorMessage().observe(getViewLifecycleOwner(), error -> {
             if (error != null) {
@@ -122,23 +205,20 @@ public class HomeFragment extends Fragment implements TodoAdapter.OnTodoClickLis
         });
     }
 
-    private void updateStatistics(List<Todo> todos) {
-        int total = todos.size();
-        int completed = 0;
-
-        for (Todo todo : todos) {
-            if (todo.isCompleted()) {
-                completed++;
-            }
-        }
-
-        int pending = total - completed;
-
-        binding.tvTotalTodos.setText(String.valueOf(total));
-        binding.tvPendingTodos.setText(String.valueOf(pending));
-        binding.tvCompletedTodos.setText(String.valueOf(completed));
+    private void updateEmptyView() {
+        List<Todo> todos = viewModel.getUserTodos().getValue();
+        boolean empty = todos == null || todos.isEmpty();
+        // Before the query has answered, an empty list only means "still
+        // loading"; showing the empty view then would flash it on cold start
+        boolean showEmptyView = empty && Boolean.TRUE.equals(viewModel.hasNoTodos().getValue());
+        binding.emptyView.setVisibility(showEmptyView ? View.VISIBLE : View.GONE);
+        binding.recyclerView.setVisibility(empty ? View.GONE : View.VISIBLE);
+    }
 
-        Log.d(TAG, "Statistics updated - Total: " + total + ", Pending: " + pending + ", Completed: " + completed);
+    private void updateStatistics(TodoStats stats) {
+        binding.tvTotalTodos.setText(String.valueOf(stats.getTotal()));
+        binding.tvPendingTodos.setText(String.valueOf(stats.getPending()));
+        binding.tvCompletedTodos.setText(String.valueOf(stats.getCompleted()));
     }
 
     @Override
@@ -167,22 +247,35 @@ public class HomeFragment extends Fragment implements TodoAdapter.OnTodoClickLis
     }
 
     @Override
-    public void onCompleteToggle(Todo todo, boolean isCompleted) {
-        Log.d(TAG, "Toggle completion for todo: " + todo.getTitle() + " to " + isCompleted);
-
-        // Update the local todo object immediately for UI responsiveness
-        todo.setCompleted(isCompleted);
-        adapter.notifyDataSetChanged();
+    public void onSelectionChanged(int selectedCount) {
+        if (binding == null) {
+            return;
+        }
+        boolean selectionMode = adapter.isSelectionMode();
+        if (selectionMode != showingSelectionMenu) {
+            showingSelectionMenu = selectionMode;
+            binding.toolbar.getMenu().clear();
+            binding.toolbar.inflateMenu(selectionMode ? R.menu.home_selection_menu : R.menu.home_menu);
+            updateFilterItem();
+            if (selectionMode) {
+                binding.toolbar.setNavigationIcon(R.drawable.ic_arrow_back);
+            } else {
+                binding.toolbar.setNavigationIcon(null);
+            }
+        }
 
-        // Update statistics immediately
-        List<Todo> currentTodos = new ArrayList<>();
-        if (viewModel.getUserTodos().getValue() != null) {
-            currentTodos.addAll(viewModel.getUserTodos().getValue());
+        if (selectionMode) {
+            binding.toolbar.setTitle(getString(R.string.selected_count, selectedCount));
+        } else {
+            binding.toolbar.setTitle(R.string.home_title);
         }
-        updateStatistics(currentTodos);
+    }
 
-        // Then update in Firebase
-        viewModel.toggleTodoComplete(todo.getId(), isCompleted);
+    @Override
+    public void onCompleteToggle(Todo todo, boolean isCompleted) {
+        // The ViewModel overlays the new state right away and rolls it back
+        // if the write fails.
+        viewModel.toggleTodoComplete(todo.getId(), todo.isCompleted(), isCompleted);
     }
 
     @Override
@@ -191,37 +284,59 @@ public class HomeFragment extends Fragment implements TodoAdapter.OnTodoClickLis
 
         Log.d(TAG, "onActivityResult - requestCode: " + requestCode + ", resultCode: " + resultCode);
 
-        if (resultCode == getActivity().RESULT_OK) {
-            switch (requestCode) {
-                case ADD_TODO_REQUEST:
-                    Log.d(TAG, "Add todo completed successfully - refreshing data");
-                    refreshData();
-                    break;
-                case EDIT_TODO_REQUEST:
-                    Log.d(TAG, "Edit todo completed successfully - refreshing data");
-                    refreshData();
+        // Add and edit screens hand their result back here so the change
+        // goes through the ViewModel overlay and shows up immediately.
+        if (resultCode != Activity.RESULT_OK || data == null) {
+            return;
+        }
+        switch (requestCode) {
+            case ADD_TODO_REQUEST:
+                FirebaseUser currentUser = authManager.getCurrentUser();
+                if (currentUser != null) {
+                    Todo todo = todoFromResult(data, currentUser.getUid());
+                    Log.d(TAG, "Adding todo from result: " + todo.getTitle());
+                    viewModel.addTodo(todo);
+                }
+                break;
+            case EDIT_TODO_REQUEST:
+                String todoId = data.getStringExtra("TODO_ID");
+                if (todoId == null) {
                     break;
-            }
+                }
+                if ("DELETE".equals(data.getStringExtra("ACTION"))) {
+                    viewModel.deleteTodo(todoId);
+                } else {
+                    Todo todo = todoFromResult(data, viewModel.getCurrentUserId());
+                    todo.setId(todoId);
+                    viewModel.updateTodo(todo);
+                }
+                break;
         }
     }
 
+    private static Todo todoFromResult(Intent data, String userId) {
+        Todo todo = new Todo(data.getStringExtra("TITLE"), data.getStringExtra("DESCRIPTION"),
+                data.getStringExtra("DATE"), userId);
+        todo.setPriority(data.getStringExtra("PRIORITY"));
+        todo.setCategory(data.getStringExtra("CATEGORY"));
+        return todo;
+    }
+
     @Override
     public void onResume() {
         super.onResume();
-        Log.d(TAG, "HomeFragment onResume - refreshing data");
+        Log.d(TAG, "HomeFragment onResume");
         refreshData();
     }
 
     private void refreshData() {
-        Log.d(TAG, "Refreshing data...");
-
         // Clear any previous messages
         viewModel.clearMessages();
 
-        // Re-setup ViewModel with current user
+        // Make sure we are bound to the signed-in user; this is a no-op while
+        // the shared listener for that user is live.
         FirebaseUser currentUser = authManager.getCurrentUser();
         if (currentUser != null) {
-            Log.d(TAG, "Refreshing data for user: " + currentUser.getUid());
             viewModel.setUserId(currentUser.getUid());
         } else {
             Log.w(TAG, "Cannot refresh data - current user is null");
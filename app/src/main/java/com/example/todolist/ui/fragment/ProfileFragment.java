@@ -11,6 +11,7 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
 import com.bumptech.glide.Glide;
+import com.example.todolist.AppContainer;
 import com.example.todolist.R;
 import com.example.todolist.databinding.FragmentProfileBinding;
 import com.example.todolist.data.firebase.FirebaseAuthManager;
@@ -36,7 +37,7 @@ public class ProfileFragment extends Fragment {
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
 
-        authManager = new FirebaseAuthManager(requireActivity());
+        authManager = AppContainer.from(requireContext()).getAuthManager();
         setupProfile();
         setupButtons();
     }
@@ -66,7 +67,7 @@ public class ProfileFragment extends Fragment {
 
     private void setupButtons() {
         binding.btnSignOut.setOnClickListener(v -> {
-            authManager.signOut(() -> {
+            authManager.signOut(requireActivity(), () -> {
                 Intent intent = new Intent(getContext(), LoginActivity.class);
                 intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
                 startActivity(intent);
@@ -1,33 +1,29 @@
 package com.example.todolist.ui.main;
 
 import android.app.DatePickerDialog;
+import android.content.Intent;
 import android.os.Bundle;
-import android.view.View;
 import android.widget.ArrayAdapter;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.todolist.AppContainer;
 import com.example.todolist.R;
 import com.example.todolist.databinding.ActivityAddTodoBinding;
 import com.example.todolist.data.firebase.FirebaseAuthManager;
-import com.example.todolist.data.firebase.FirestoreManager;
+import com.example.todolist.data.model.DueDates;
 import com.example.todolist.data.model.Todo;
 import com.google.firebase.auth.FirebaseUser;
 
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.Locale;
 
 public class AddTodoActivity extends AppCompatActivity {
     private ActivityAddTodoBinding binding;
     private FirebaseAuthManager authManager;
-    private FirestoreManager firestoreManager;
     private Calendar selectedDate;
 
     // Data for dropdowns
-    private String[] priorityOptions = {"HIGH", "MEDIUM", "LOW"};
-    private String[] categoryOptions = {"General", "Work", "Personal", "Shopping", "Health", "Study"};
     private String selectedPriority = "MEDIUM";
     private String selectedCategory = "General";
 
@@ -48,8 +44,7 @@ public class AddTodoActivity extends AppCompatActivity {
     }
 
     private void initializeComponents() {
-        authManager = new FirebaseAuthManager(this);
-        firestoreManager = new FirestoreManager();
+        authManager = AppContainer.from(this).getAuthManager();
         selectedDate = Calendar.getInstance();
     }
 
@@ -96,12 +91,12 @@ public class AddTodoActivity extends AppCompatActivity {
                 ArrayAdapter<String> priorityAdapter = new ArrayAdapter<>(
                         this,
                         android.R.layout.simple_dropdown_item_1line,
-                        priorityOptions
+                        Todo.PRIORITIES
                 );
                 binding.spinnerPriority.setAdapter(priorityAdapter);
                 binding.spinnerPriority.setText(selectedPriority, false);
                 binding.spinnerPriority.setOnItemClickListener((parent, view, position, id) -> {
-                    selectedPriority = priorityOptions[position];
+                    selectedPriority = Todo.PRIORITIES.get(position);
                 });
             }
 
@@ -110,12 +105,12 @@ public class AddTodoActivity extends AppCompatActivity {
                 ArrayAdapter<String> categoryAdapter = new ArrayAdapter<>(
                         this,
                         android.R.layout.simple_dropdown_item_1line,
-                        categoryOptions
+                        Todo.CATEGORIES
                 );
                 binding.spinnerCategory.setAdapter(categoryAdapter);
                 binding.spinnerCategory.setText(selectedCategory, false);
                 binding.spinnerCategory.setOnItemClickListener((parent, view, position, id) -> {
-                    selectedCategory = categoryOptions[position];
+                    selectedCategory = Todo.CATEGORIES.get(position);
                 });
             }
         } catch (Exception e) {
@@ -164,9 +159,8 @@ public class AddTodoActivity extends AppCompatActivity {
 
     private void updateDateField() {
         try {
-            SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
             if (binding.etDate != null) {
-                binding.etDate.setText(sdf.format(selectedDate.getTime()));
+                binding.etDate.setText(DueDates.format(selectedDate));
             }
         } catch (Exception e) {
             if (binding.etDate != null) {
@@ -205,38 +199,17 @@ public class AddTodoActivity extends AppCompatActivity {
                 return;
             }
 
-            // Show loading
-            showLoading();
-
-            // Create and save todo
-            Todo todo = new Todo(title, description, date, currentUser.getUid());
-            todo.setPriority(selectedPriority);
-            todo.setCategory(selectedCategory);
-
-            firestoreManager.addTodo(todo, new FirestoreManager.FirestoreCallback<String>() {
-                @Override
-                public void onSuccess(String result) {
-                    runOnUiThread(() -> {
-                        hideLoading();
-                        Toast.makeText(AddTodoActivity.this, "Todo added successfully", Toast.LENGTH_SHORT).show();
-
-                        // Set result OK to trigger refresh in calling activity
-                        setResult(RESULT_OK);
-                        finish();
-                    });
-                }
-
-                @Override
-                public void onFailure(String error) {
-                    runOnUiThread(() -> {
-                        hideLoading();
-                        Toast.makeText(AddTodoActivity.this, "Failed to add todo: " + error, Toast.LENGTH_LONG).show();
-                    });
-                }
-            });
+            // The list screen writes the todo and shows it right away
+            Intent result = new Intent();
+            result.putExtra("TITLE", title);
+            result.putExtra("DESCRIPTION", description);
+            result.putExtra("DATE", date);
+            result.putExtra("PRIORITY", selectedPriority);
+            result.putExtra("CATEGORY", selectedCategory);
+            setResult(RESULT_OK, result);
+            finish();
 
         } catch (Exception e) {
-            hideLoading();
             Toast.makeText(this, "Error saving todo: " + e.getMessage(), Toast.LENGTH_LONG).show();
         }
     }
@@ -267,31 +240,6 @@ public class AddTodoActivity extends AppCompatActivity {
         }
     }
 
-    private void showLoading() {
-        try {
-            if (binding.progressBar != null) {
-                binding.progressBar.setVisibility(View.VISIBLE);
-            }
-            if (binding.btnSave != null) {
-                binding.btnSave.setEnabled(false);
-            }
-        } catch (Exception e) {
-            // Ignore loading UI errors
-        }
-    }
-
-    private void hideLoading() {
-        try {
-            if (binding.progressBar != null) {
-                binding.progressBar.setVisibility(View.GONE);
-            }
-            if (binding.btnSave != null) {
-                binding.btnSave.setEnabled(true);
-            }
-        } catch (Exception e) {
-            // Ignore loading UI errors
-        }
-    }
 
     @Override
     public boolean onSupportNavigateUp() {
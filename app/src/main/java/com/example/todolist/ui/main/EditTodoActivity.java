@@ -1,35 +1,30 @@
 package com.example.todolist.ui.main;
 
 import android.app.DatePickerDialog;
+import android.content.Intent;
 import android.os.Bundle;
-import android.view.View;
 import android.widget.ArrayAdapter;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.todolist.AppContainer;
 import com.example.todolist.databinding.ActivityEditTodoBinding;
 import com.example.todolist.data.firebase.FirebaseAuthManager;
-import com.example.todolist.data.firebase.FirestoreManager;
+import com.example.todolist.data.model.DueDates;
 import com.example.todolist.data.model.Todo;
 import com.google.firebase.auth.FirebaseUser;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.Locale;
 
 public class EditTodoActivity extends AppCompatActivity {
     private ActivityEditTodoBinding binding;
     private FirebaseAuthManager authManager;
-    private FirestoreManager firestoreManager;
     private Calendar selectedDate;
     private String todoId;
 
     // Data for dropdowns
-    private String[] priorityOptions = {"HIGH", "MEDIUM", "LOW"};
-    private String[] categoryOptions = {"General", "Work", "Personal", "Shopping", "Health", "Study"};
     private String selectedPriority = "MEDIUM";
     private String selectedCategory = "General";
 
@@ -51,8 +46,7 @@ public class EditTodoActivity extends AppCompatActivity {
     }
 
     private void initializeComponents() {
-        authManager = new FirebaseAuthManager(this);
-        firestoreManager = new FirestoreManager();
+        authManager = AppContainer.from(this).getAuthManager();
         selectedDate = Calendar.getInstance();
     }
 
@@ -98,11 +92,11 @@ public class EditTodoActivity extends AppCompatActivity {
                 ArrayAdapter<String> priorityAdapter = new ArrayAdapter<>(
                         this,
                         android.R.layout.simple_dropdown_item_1line,
-                        priorityOptions
+                        Todo.PRIORITIES
                 );
                 binding.spinnerPriority.setAdapter(priorityAdapter);
                 binding.spinnerPriority.setOnItemClickListener((parent, view, position, id) -> {
-                    selectedPriority = priorityOptions[position];
+                    selectedPriority = Todo.PRIORITIES.get(position);
                 });
             }
 
@@ -111,11 +105,11 @@ public class EditTodoActivity extends AppCompatActivity {
                 ArrayAdapter<String> categoryAdapter = new ArrayAdapter<>(
                         this,
                         android.R.layout.simple_dropdown_item_1line,
-                        categoryOptions
+                        Todo.CATEGORIES
                 );
                 binding.spinnerCategory.setAdapter(categoryAdapter);
                 binding.spinnerCategory.setOnItemClickListener((parent, view, position, id) -> {
-                    selectedCategory = categoryOptions[position];
+                    selectedCategory = Todo.CATEGORIES.get(position);
                 });
             }
         } catch (Exception e) {
@@ -175,15 +169,8 @@ public class EditTodoActivity extends AppCompatActivity {
                 binding.spinnerCategory.setText(selectedCategory, false);
             }
 
-            // Parse and set the date
-            if (date != null && !date.isEmpty()) {
-                try {
-                    SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
-                    selectedDate.setTime(sdf.parse(date));
-                } catch (ParseException e) {
-                    // Keep current date if parsing fails
-                }
-            }
+            // Parse and set the date; keeps the current date if it doesn't parse
+            DueDates.setCalendar(selectedDate, date);
         } catch (Exception e) {
             Toast.makeText(this, "Error loading todo data: " + e.getMessage(), Toast.LENGTH_SHORT).show();
         }
@@ -220,9 +207,8 @@ public class EditTodoActivity extends AppCompatActivity {
 
     private void updateDateField() {
         try {
-            SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
             if (binding.etDate != null) {
-                binding.etDate.setText(sdf.format(selectedDate.getTime()));
+                binding.etDate.setText(DueDates.format(selectedDate));
             }
         } catch (Exception e) {
             // Ignore date formatting errors
@@ -259,37 +245,18 @@ public class EditTodoActivity extends AppCompatActivity {
                 return;
             }
 
-            // Show loading
-            showLoading();
-
-            // Create and update todo
-            Todo todo = new Todo(title, description, date, currentUser.getUid());
-            todo.setId(todoId);
-            todo.setPriority(selectedPriority);
-            todo.setCategory(selectedCategory);
-
-            firestoreManager.updateTodo(todo, new FirestoreManager.FirestoreCallback<Void>() {
-                @Override
-                public void onSuccess(Void result) {
-                    runOnUiThread(() -> {
-                        hideLoading();
-                        Toast.makeText(EditTodoActivity.this, "Todo updated successfully", Toast.LENGTH_SHORT).show();
-                        setResult(RESULT_OK);
-                        finish();
-                    });
-                }
-
-                @Override
-                public void onFailure(String error) {
-                    runOnUiThread(() -> {
-                        hideLoading();
-                        Toast.makeText(EditTodoActivity.this, "Failed to update todo: " + error, Toast.LENGTH_LONG).show();
-                    });
-                }
-            });
+            // The list screen applies the edit and shows it right away
+            Intent result = new Intent();
+            result.putExtra("TODO_ID", todoId);
+            result.putExtra("TITLE", title);
+            result.putExtra("DESCRIPTION", description);
+            result.putExtra("DATE", date);
+            result.putExtra("PRIORITY", selectedPriority);
+            result.putExtra("CATEGORY", selectedCategory);
+            setResult(RESULT_OK, result);
+            finish();
 
         } catch (Exception e) {
-            hideLoading();
             Toast.makeText(this, "Error updating todo: " + e.getMessage(), Toast.LENGTH_LONG).show();
         }
     }
@@ -340,65 +307,13 @@ public class EditTodoActivity extends AppCompatActivity {
     }
 
     private void deleteTodo() {
-        try {
-            showLoading();
-
-            firestoreManager.deleteTodo(todoId, new FirestoreManager.FirestoreCallback<Void>() {
-                @Override
-                public void onSuccess(Void result) {
-                    runOnUiThread(() -> {
-                        hideLoading();
-                        Toast.makeText(EditTodoActivity.this, "Todo deleted successfully", Toast.LENGTH_SHORT).show();
-                        setResult(RESULT_OK);
-                        finish();
-                    });
-                }
-
-                @Override
-                public void onFailure(String error) {
-                    runOnUiThread(() -> {
-                        hideLoading();
-                        Toast.makeText(EditTodoActivity.this, "Failed to delete todo: " + error, Toast.LENGTH_LONG).show();
-                    });
-                }
-            });
-        } catch (Exception e) {
-            hideLoading();
-            Toast.makeText(this, "Error deleting todo: " + e.getMessage(), Toast.LENGTH_LONG).show();
-        }
+        Intent result = new Intent();
+        result.putExtra("TODO_ID", todoId);
+        result.putExtra("ACTION", "DELETE");
+        setResult(RESULT_OK, result);
+        finish();
     }
 
-    private void showLoading() {
-        try {
-            if (binding.progressBar != null) {
-                binding.progressBar.setVisibility(View.VISIBLE);
-            }
-            if (binding.btnSave != null) {
-                binding.btnSave.setEnabled(false);
-            }
-            if (binding.btnDelete != null) {
-                binding.btnDelete.setEnabled(false);
-            }
-        } catch (Exception e) {
-            // Ignore loading UI errors
-        }
-    }
-
-    private void hideLoading() {
-        try {
-            if (binding.progressBar != null) {
-                binding.progressBar.setVisibility(View.GONE);
-            }
-            if (binding.btnSave != null) {
-                binding.btnSave.setEnabled(true);
-            }
-            if (binding.btnDelete != null) {
-                binding.btnDelete.setEnabled(true);
-            }
-        } catch (Exception e) {
-            // Ignore loading UI errors
-        }
-    }
 
     @Override
     public boolean onSupportNavigateUp() {
@@ -12,6 +12,7 @@ import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.todolist.AppContainer;
 import com.example.todolist.databinding.ActivityLoginBinding;
 import com.example.todolist.data.firebase.FirebaseAuthManager;
 import com.google.firebase.auth.FirebaseUser;
@@ -24,7 +25,7 @@ public class LoginActivity extends AppCompatActivity {
             new ActivityResultContracts.StartActivityForResult(),
             result -> {
                 if (result.getResultCode() == RESULT_OK) {
-                    authManager.handleGoogleSignInResult(result.getData(), new FirebaseAuthManager.AuthCallback() {
+                    authManager.handleGoogleSignInResult(LoginActivity.this, result.getData(), new FirebaseAuthManager.AuthCallback() {
                         @Override
                         public void onSuccess(FirebaseUser user) {
                             hideLoading();
@@ -50,7 +51,7 @@ public class LoginActivity extends AppCompatActivity {
         binding = ActivityLoginBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
 
-        authManager = new FirebaseAuthManager(this);
+        authManager = AppContainer.from(this).getAuthManager();
 
         // Check if user is already logged in
         if (authManager.isUserLoggedIn()) {
@@ -112,7 +113,7 @@ public class LoginActivity extends AppCompatActivity {
 
         showLoading();
 
-        authManager.signInWithEmailAndPassword(email, password, new FirebaseAuthManager.AuthCallback() {
+        authManager.signInWithEmailAndPassword(this, email, password, new FirebaseAuthManager.AuthCallback() {
             @Override
             public void onSuccess(FirebaseUser user) {
                 hideLoading();
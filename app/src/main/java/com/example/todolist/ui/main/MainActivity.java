@@ -11,6 +11,7 @@ import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.fragment.app.Fragment;
 
+import com.example.todolist.AppContainer;
 import com.example.todolist.R;
 import com.example.todolist.databinding.ActivityMainBinding;
 import com.example.todolist.data.firebase.FirebaseAuthManager;
@@ -30,7 +31,7 @@ public class MainActivity extends AppCompatActivity {
         binding = ActivityMainBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
 
-        authManager = new FirebaseAuthManager(this);
+        authManager = AppContainer.from(this).getAuthManager();
 
         // Check if user is logged in
         if (!authManager.isUserLoggedIn()) {
@@ -98,7 +99,7 @@ public class MainActivity extends AppCompatActivity {
 
     private void signOut() {
         Log.d(TAG, "User signing out");
-        authManager.signOut(() -> startLoginActivity());
+        authManager.signOut(this, () -> startLoginActivity());
     }
 
     private void startLoginActivity() {
@@ -133,11 +134,8 @@ public class MainActivity extends AppCompatActivity {
 
         Log.d(TAG, "MainActivity onActivityResult - requestCode: " + requestCode + ", resultCode: " + resultCode);
 
-        // Forward the result to the current fragment
-        Fragment fragment = getSupportFragmentManager().findFragmentById(R.id.fragmentContainer);
-        if (fragment != null) {
-            fragment.onActivityResult(requestCode, resultCode, data);
-        }
+        // Fragments receive their own results through super; forwarding
+        // them again would apply an add or edit twice.
 
         if (resultCode == RESULT_OK) {
             Log.d(TAG, "Activity returned with success - refreshing current fragment");
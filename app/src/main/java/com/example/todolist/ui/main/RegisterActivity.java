@@ -11,6 +11,7 @@ import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.todolist.AppContainer;
 import com.example.todolist.databinding.ActivityRegisterBinding;
 import com.example.todolist.data.firebase.FirebaseAuthManager;
 import com.google.firebase.auth.FirebaseUser;
@@ -23,7 +24,7 @@ public class RegisterActivity extends AppCompatActivity {
             new ActivityResultContracts.StartActivityForResult(),
             result -> {
                 if (result.getResultCode() == RESULT_OK) {
-                    authManager.handleGoogleSignInResult(result.getData(), new FirebaseAuthManager.AuthCallback() {
+                    authManager.handleGoogleSignInResult(RegisterActivity.this, result.getData(), new FirebaseAuthManager.AuthCallback() {
                         @Override
                         public void onSuccess(FirebaseUser user) {
                             hideLoading();
@@ -49,7 +50,7 @@ public class RegisterActivity extends AppCompatActivity {
         binding = ActivityRegisterBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
 
-        authManager = new FirebaseAuthManager(this);
+        authManager = AppContainer.from(this).getAuthManager();
 
         setupUI();
     }
@@ -126,7 +127,7 @@ public class RegisterActivity extends AppCompatActivity {
 
         showLoading();
 
-        authManager.createUserWithEmailAndPassword(name, email, password, new FirebaseAuthManager.AuthCallback() {
+        authManager.createUserWithEmailAndPassword(this, name, email, password, new FirebaseAuthManager.AuthCallback() {
             @Override
             public void onSuccess(FirebaseUser user) {
                 hideLoading();
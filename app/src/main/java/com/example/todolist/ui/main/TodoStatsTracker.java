@@ -0,0 +1,202 @@
+package com.example.todolist.ui.main;
+
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.todolist.data.firebase.FirestoreManager;
+import com.example.todolist.data.model.TodoChangeSet;
+import com.example.todolist.data.model.TodoStats;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the total/completed counts for the home header up to date without
+ * rescanning the list. Counts change in O(1) per document change or
+ * optimistic mutation; the last known completion state of every todo seen
+ * is kept by id so that the server echo of a local change isn't counted
+ * twice.
+ *
+ * When the live query window doesn't cover the whole account the starting
+ * counts come from the {@link Counter} (the per-user stats document, or
+ * count() aggregations until it exists) instead of the loaded documents.
+ *
+ * Main thread only.
+ */
+public class TodoStatsTracker implements FirestoreManager.TodoChangeListener {
+    private static final String TAG = "TodoStatsTracker";
+
+    /**
+     * Source of exact counts for accounts larger than the live window.
+     */
+    public interface Counter {
+        void count(FirestoreManager.FirestoreCallback<TodoStats> callback);
+    }
+
+    private final Counter counter;
+    private final MutableLiveData<TodoStats> stats = new MutableLiveData<>();
+    // Last known completion state by todo id
+    private final Map<String, Boolean> known = new HashMap<>();
+    // Deleted locally; a later server REMOVED for these is already counted
+    private final Set<String> removed = new HashSet<>();
+    private int total;
+    private int completed;
+    // Bumped on every count request so stale results are ignored
+    private int countGeneration;
+
+    public TodoStatsTracker(Counter counter) {
+        this.counter = counter;
+    }
+
+    public LiveData<TodoStats> getStats() {
+        return stats;
+    }
+
+    @Override
+    public void onTodosChanged(TodoChangeSet changeSet) {
+        if (changeSet.isInitial()) {
+            onInitial(changeSet);
+            return;
+        }
+
+        // Removals inside a full window are backfilled with older todos at
+        // the end of the list; those existed all along and were counted.
+        int backfillStart = changeSet.getResultSize();
+        if (changeSet.isPartial()) {
+            for (TodoChangeSet.Change change : changeSet.getChanges()) {
+                if (change.getType() == TodoChangeSet.Type.REMOVED) {
+                    backfillStart--;
+                }
+            }
+        }
+
+        for (TodoChangeSet.Change change : changeSet.getChanges()) {
+            String id = change.getTodo().getId();
+            switch (change.getType()) {
+                case ADDED:
+                    if (change.getNewIndex() >= backfillStart && !known.containsKey(id)) {
+                        known.put(id, change.getTodo().isCompleted());
+                    } else {
+                        setState(id, change.getTodo().isCompleted(), null);
+                    }
+                    break;
+                case MODIFIED:
+                    setState(id, change.getTodo().isCompleted(), null);
+                    break;
+                case REMOVED:
+                    setState(id, null, null);
+                    break;
+                case EVICTED:
+                    // Still exists, just outside the window
+                    known.remove(id);
+                    break;
+            }
+        }
+        publish();
+    }
+
+    /**
+     * Records a local change before the server has it.
+     *
+     * @param state    new completion state, null if the todo was deleted
+     * @param previous state before the change if this tracker may not have
+     *                 seen the todo yet, null if it didn't exist
+     */
+    public void onLocalChange(String todoId, Boolean state, Boolean previous) {
+        setState(todoId, state, previous);
+        publish();
+    }
+
+    private void onInitial(TodoChangeSet changeSet) {
+        known.clear();
+        removed.clear();
+        total = 0;
+        completed = 0;
+        for (TodoChangeSet.Change change : changeSet.getChanges()) {
+            setState(change.getTodo().getId(), change.getTodo().isCompleted(), null);
+        }
+        publish();
+
+        if (changeSet.isPartial()) {
+            recount();
+        }
+    }
+
+    /**
+     * Re-reads the counts from the server, e.g. after a bulk write that also
+     * touched todos outside the live window.
+     */
+    public void recount() {
+        int generation = ++countGeneration;
+        int totalAtRequest = total;
+        int completedAtRequest = completed;
+        counter.count(new FirestoreManager.FirestoreCallback<TodoStats>() {
+            @Override
+            public void onSuccess(TodoStats result) {
+                if (generation != countGeneration) {
+                    return;
+                }
+                // Keep changes made while the count was running
+                total = result.getTotal() + (total - totalAtRequest);
+                completed = result.getCompleted() + (completed - completedAtRequest);
+                publish();
+            }
+
+            @Override
+            public void onFailure(String error) {
+                // Window counts stay in place as a lower bound
+                Log.w(TAG, "Count failed, showing loaded todos only: " + error);
+            }
+        });
+    }
+
+    private void setState(String todoId, Boolean state, Boolean previous) {
+        Boolean before;
+        if (known.containsKey(todoId)) {
+            before = known.get(todoId);
+        } else if (removed.contains(todoId)) {
+            before = null;
+        } else {
+            before = previous;
+        }
+
+        if (before != null) {
+            total--;
+            if (before) {
+                completed--;
+            }
+        }
+        if (state != null) {
+            total++;
+            if (state) {
+                completed++;
+            }
+            known.put(todoId, state);
+            removed.remove(todoId);
+        } else {
+            known.remove(todoId);
+            if (before != null) {
+                removed.add(todoId);
+            }
+        }
+    }
+
+    private void publish() {
+        stats.setValue(new TodoStats(Math.max(total, 0), Math.max(Math.min(completed, total), 0)));
+    }
+
+    /**
+     * Drops all state, e.g. when the signed-in user changes.
+     */
+    public void reset() {
+        known.clear();
+        removed.clear();
+        total = 0;
+        completed = 0;
+        countGeneration++;
+    }
+}
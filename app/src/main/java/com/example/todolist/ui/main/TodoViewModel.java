@@ -1,28 +1,124 @@
 package com.example.todolist.ui.main;
 
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
-import androidx.lifecycle.ViewModel;
 
 import com.example.todolist.data.firebase.FirestoreManager;
+import com.example.todolist.data.model.BulkWriteResult;
 import com.example.todolist.data.model.Todo;
+import com.example.todolist.data.model.TodoFilter;
+import com.example.todolist.data.model.TodoStats;
 import com.example.todolist.data.repository.TodoRepository;
+import com.example.todolist.perf.Perf;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-public class TodoViewModel extends ViewModel {
+/**
+ * Exposes the repository's todo list with a pending-mutation overlay on
+ * top: every add, edit, delete and toggle shows up in the next emission
+ * instead of after Firestore answers. Failed writes are rolled back and
+ * reported through {@link #getErrorMessage()}. Overlay rows carry
+ * {@link Todo#isPendingWrite()} until their write is confirmed.
+ *
+ * The list can be narrowed with {@link #setFilter(TodoFilter)}; the filter
+ * runs on the server, and overlay rows that no longer match it are hidden
+ * right away.
+ *
+ * The overlay is only touched on the main thread.
+ */
+public class TodoViewModel extends AndroidViewModel {
     private static final String TAG = "TodoViewModel";
+    // A confirmed mutation stays in the overlay until the server list
+    // reflects it, or at most this many server emissions
+    private static final int MAX_EMISSIONS_AFTER_CONFIRM = 2;
 
     private TodoRepository repository;
     private MutableLiveData<String> errorMessage = new MutableLiveData<>();
     private MutableLiveData<String> successMessage = new MutableLiveData<>();
     private LiveData<List<Todo>> userTodos;
     private String currentUserId;
+    private TodoFilter currentFilter = TodoFilter.ALL;
 
-    public TodoViewModel() {
-        repository = new TodoRepository();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final MediatorLiveData<List<Todo>> mergedTodos = new MediatorLiveData<>();
+    private final Map<String, PendingMutation> pendingMutations = new LinkedHashMap<>();
+    private List<Todo> serverTodos = Collections.emptyList();
+    private long nextMutationSeq = 0;
+    private final TodoStatsTracker statsTracker;
+    // True once the live query has answered with no todos, null until it
+    // has answered at all; an empty Room result alone can't tell
+    private final MutableLiveData<Boolean> noTodos = new MutableLiveData<>();
+    private boolean liveTodos = false;
+    // A filtered query only sees part of the account, so under a filter the
+    // header counts are re-read from the stats document whenever the server
+    // reports a change instead of being derived from the change sets
+    private final FirestoreManager.TodoChangeListener statsListener = changeSet -> {
+        if (currentFilter.isAll()) {
+            statsTracker.onTodosChanged(changeSet);
+        } else if (!changeSet.isFromCache()) {
+            statsTracker.recount();
+        }
+    };
+    private final FirestoreManager.TodoChangeListener resultListener = changeSet -> {
+        if (!changeSet.isFromCache()) {
+            liveTodos = true;
+        }
+        Boolean empty = changeSet.getResultSize() == 0;
+        if (!empty.equals(noTodos.getValue())) {
+            noTodos.setValue(empty);
+        }
+    };
+
+    private enum MutationKind {
+        ADD,
+        UPDATE,
+        DELETE
+    }
+
+    private static class PendingMutation {
+        final MutationKind kind;
+        final String todoId;
+        final long seq;
+        // What the row should look like; null for DELETE
+        Todo todo;
+        // Completion state before the mutation, null if the todo didn't exist
+        Boolean previousCompleted;
+        boolean confirmed;
+        int emissionsSinceConfirmed;
+
+        PendingMutation(MutationKind kind, String todoId, Todo todo, long seq) {
+            this.kind = kind;
+            this.todoId = todoId;
+            this.todo = todo;
+            this.seq = seq;
+        }
+    }
+
+    public TodoViewModel(@NonNull Application application) {
+        super(application);
+        repository = new TodoRepository(application);
+        statsTracker = new TodoStatsTracker(callback -> {
+            if (currentUserId != null) {
+                repository.loadTodoStats(currentUserId, callback);
+            }
+        });
         Log.d(TAG, "TodoViewModel created");
     }
 
@@ -32,107 +128,496 @@ public class TodoViewModel extends ViewModel {
             return;
         }
 
-        // Always refresh data when setUserId is called, even if it's the same user
-        // This ensures we get fresh data from Firestore
-        Log.d(TAG, "Setting user ID: " + userId + " (previous: " + currentUserId + ")");
-
-        // Remove previous listener if exists
-        if (repository != null) {
-            repository.removeListener();
+        if (userId.equals(currentUserId) && userTodos != null) {
+            // The shared listener is still live, nothing to re-read
+            return;
         }
 
+        Log.d(TAG, "Setting user ID: " + userId + " (previous: " + currentUserId + ")");
+
+        pendingMutations.clear();
+        serverTodos = Collections.emptyList();
+        statsTracker.reset();
         this.currentUserId = userId;
-        userTodos = repository.getUserTodos(userId);
+        bind();
 
         Log.d(TAG, "LiveData setup completed for user: " + userId);
     }
 
+    /**
+     * Narrows the list to todos matching {@code filter}, e.g.
+     * {@link TodoFilter#ACTIVE}. Only matching todos are downloaded while
+     * it is set; {@link TodoFilter#ALL} shows everything again.
+     */
+    public void setFilter(TodoFilter filter) {
+        if (filter.equals(currentFilter)) {
+            return;
+        }
+        Log.d(TAG, "Setting filter: " + filter);
+        currentFilter = filter;
+        if (currentUserId == null) {
+            return;
+        }
+        // Narrowing shows the right rows at once; widening fills in as soon
+        // as Room answers for the new filter
+        serverTodos = matching(serverTodos);
+        bind();
+        publish();
+    }
+
+    public TodoFilter getFilter() {
+        return currentFilter;
+    }
+
+    private void bind() {
+        if (userTodos != null) {
+            mergedTodos.removeSource(userTodos);
+        }
+        noTodos.setValue(null);
+        liveTodos = false;
+
+        // Registered before the query is attached so the initial change set
+        // isn't missed
+        repository.removeTodoChangeListener(statsListener);
+        repository.addTodoChangeListener(statsListener);
+        repository.removeTodoChangeListener(resultListener);
+        repository.addTodoChangeListener(resultListener);
+        userTodos = repository.getUserTodos(currentUserId, currentFilter);
+        mergedTodos.addSource(userTodos, this::onServerTodos);
+    }
+
+    private List<Todo> matching(List<Todo> todos) {
+        if (currentFilter.isAll()) {
+            return todos;
+        }
+        List<Todo> matching = new ArrayList<>(todos.size());
+        for (Todo todo : todos) {
+            if (currentFilter.matches(todo)) {
+                matching.add(todo);
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * The server list with pending mutations applied. Only valid after
+     * {@link #setUserId(String)}.
+     */
     public LiveData<List<Todo>> getUserTodos() {
         if (userTodos == null) {
-            Log.w(TAG, "getUserTodos called but userTodos is null");
+            Log.w(TAG, "getUserTodos called before setUserId");
         }
-        return userTodos;
+        return mergedTodos;
+    }
+
+    /**
+     * Whether the user has no todos in the live window. Null until the
+     * query has answered, so an empty list before then means "not loaded
+     * yet" rather than "nothing to show".
+     */
+    public LiveData<Boolean> hasNoTodos() {
+        return noTodos;
+    }
+
+    /**
+     * True once the server has answered the live query; until then the
+     * list shows what Room and Firestore's cache had.
+     */
+    public boolean hasLiveTodos() {
+        return liveTodos;
+    }
+
+    /**
+     * Total, pending and completed counts, maintained incrementally.
+     */
+    public LiveData<TodoStats> getStatistics() {
+        return statsTracker.getStats();
     }
 
     public void addTodo(Todo todo) {
         Log.d(TAG, "Adding todo: " + todo.getTitle());
-        repository.addTodo(todo, new FirestoreManager.FirestoreCallback<String>() {
+        // The write queue hands out the document id up front, so the overlay
+        // row and the later server row share an identity
+        List<PendingMutation> mutations = new ArrayList<>();
+        int traceCookie = System.identityHashCode(mutations);
+        Perf.beginAsyncSection(Perf.ADD_TODO_ROUND_TRIP, traceCookie);
+        String todoId = repository.addTodo(todo, new FirestoreManager.FirestoreCallback<String>() {
             @Override
             public void onSuccess(String result) {
+                Perf.endAsyncSection(Perf.ADD_TODO_ROUND_TRIP, traceCookie);
                 Log.d(TAG, "Todo added successfully with ID: " + result);
                 successMessage.postValue("Todo added successfully");
-                // Data will automatically refresh via LiveData listener
+                settleOnMain(mutations, null);
             }
 
             @Override
             public void onFailure(String error) {
+                Perf.endAsyncSection(Perf.ADD_TODO_ROUND_TRIP, traceCookie);
                 Log.e(TAG, "Failed to add todo: " + error);
                 errorMessage.postValue("Failed to add todo: " + error);
+                settleOnMain(mutations, error);
             }
         });
+
+        Todo optimistic = new Todo(todo);
+        optimistic.setId(todoId);
+        optimistic.setCreatedAt(new Date());
+        mutations.add(putMutation(MutationKind.ADD, todoId, optimistic));
+        publish();
     }
 
+    /**
+     * Applies the user-editable fields of {@code todo} (title, description,
+     * date, priority, category) to the todo with the same id.
+     */
     public void updateTodo(Todo todo) {
         Log.d(TAG, "Updating todo: " + todo.getTitle());
+        Todo current = findVisible(todo.getId());
+        Todo optimistic = new Todo(current != null ? current : todo);
+        optimistic.setTitle(todo.getTitle());
+        optimistic.setDescription(todo.getDescription());
+        optimistic.setDueDate(todo.getDate());
+        optimistic.setPriority(todo.getPriority());
+        optimistic.setCategory(todo.getCategory());
+        List<PendingMutation> mutations = Collections.singletonList(
+                putMutation(MutationKind.UPDATE, todo.getId(), optimistic));
+        publish();
+
         repository.updateTodo(todo, new FirestoreManager.FirestoreCallback<Void>() {
             @Override
             public void onSuccess(Void result) {
                 Log.d(TAG, "Todo updated successfully");
                 successMessage.postValue("Todo updated successfully");
-                // Data will automatically refresh via LiveData listener
+                settleOnMain(mutations, null);
             }
 
             @Override
             public void onFailure(String error) {
                 Log.e(TAG, "Failed to update todo: " + error);
                 errorMessage.postValue("Failed to update todo: " + error);
+                settleOnMain(mutations, error);
             }
         });
     }
 
     public void deleteTodo(String todoId) {
         Log.d(TAG, "Deleting todo with ID: " + todoId);
+        List<PendingMutation> mutations = Collections.singletonList(
+                putMutation(MutationKind.DELETE, todoId, null));
+        publish();
+
         repository.deleteTodo(todoId, new FirestoreManager.FirestoreCallback<Void>() {
             @Override
             public void onSuccess(Void result) {
                 Log.d(TAG, "Todo deleted successfully");
                 successMessage.postValue("Todo deleted successfully");
-                // Data will automatically refresh via LiveData listener
+                settleOnMain(mutations, null);
             }
 
             @Override
             public void onFailure(String error) {
                 Log.e(TAG, "Failed to delete todo: " + error);
                 errorMessage.postValue("Failed to delete todo: " + error);
+                settleOnMain(mutations, error);
             }
         });
     }
 
-    public void toggleTodoComplete(String todoId, boolean isCompleted) {
-        Log.d(TAG, "Toggling todo completion: " + todoId + " to " + isCompleted);
-        repository.toggleTodoComplete(todoId, isCompleted, new FirestoreManager.FirestoreCallback<Void>() {
+    /**
+     * {@code wasCompleted} is the state the user saw when toggling, which
+     * the stats delta is computed from.
+     */
+    public void toggleTodoComplete(String todoId, boolean wasCompleted, boolean isCompleted) {
+        if (Perf.LOG_HOT_PATHS) {
+            Log.d(TAG, "Toggling todo completion: " + todoId + " to " + isCompleted);
+        }
+        List<PendingMutation> mutations = new ArrayList<>(1);
+        PendingMutation mutation = completionMutation(todoId, isCompleted);
+        if (mutation != null) {
+            mutations.add(mutation);
+            publish();
+        }
+
+        repository.toggleTodoComplete(currentUserId, todoId, wasCompleted, isCompleted, new FirestoreManager.FirestoreCallback<Void>() {
             @Override
             public void onSuccess(Void result) {
-                Log.d(TAG, "Todo completion toggled successfully");
                 // No success message for toggle to avoid spam
-                // Data will automatically refresh via LiveData listener
+                settleOnMain(mutations, null);
             }
 
             @Override
             public void onFailure(String error) {
                 Log.e(TAG, "Failed to toggle todo completion: " + error);
                 errorMessage.postValue("Failed to update todo: " + error);
+                settleOnMain(mutations, error);
+            }
+        });
+    }
+
+    public void completeTodos(List<String> todoIds) {
+        List<PendingMutation> mutations = new ArrayList<>(todoIds.size());
+        for (String todoId : todoIds) {
+            PendingMutation mutation = completionMutation(todoId, true);
+            if (mutation != null) {
+                mutations.add(mutation);
+            }
+        }
+        publish();
+        repository.completeTodos(todoIds, bulkCallback("completed", "complete", mutations, false));
+    }
+
+    public void deleteTodos(List<String> todoIds) {
+        List<PendingMutation> mutations = new ArrayList<>(todoIds.size());
+        for (String todoId : todoIds) {
+            mutations.add(putMutation(MutationKind.DELETE, todoId, null));
+        }
+        publish();
+        repository.deleteTodos(todoIds, bulkCallback("deleted", "delete", mutations, false));
+    }
+
+    /**
+     * The overlay covers the todos loaded so far; the repository also
+     * writes the ones that were never paged in.
+     */
+    public void completeAllTodos() {
+        if (currentUserId == null) {
+            return;
+        }
+        List<PendingMutation> mutations = new ArrayList<>();
+        for (Todo todo : visibleTodos()) {
+            if (!todo.isCompleted()) {
+                mutations.add(completionMutation(todo.getId(), true));
+            }
+        }
+        publish();
+        repository.completeAllTodos(currentUserId, bulkCallback("completed", "complete", mutations, true));
+    }
+
+    public void deleteCompletedTodos() {
+        if (currentUserId == null) {
+            return;
+        }
+        List<PendingMutation> mutations = new ArrayList<>();
+        for (Todo todo : visibleTodos()) {
+            if (todo.isCompleted()) {
+                mutations.add(putMutation(MutationKind.DELETE, todo.getId(), null));
+            }
+        }
+        publish();
+        repository.deleteCompletedTodos(currentUserId, bulkCallback("deleted", "delete", mutations, true));
+    }
+
+    // recount: the write also covered todos that were never loaded
+    private FirestoreManager.FirestoreCallback<BulkWriteResult> bulkCallback(String pastTense, String verb,
+                                                                             List<PendingMutation> mutations,
+                                                                             boolean recount) {
+        return new FirestoreManager.FirestoreCallback<BulkWriteResult>() {
+            @Override
+            public void onSuccess(BulkWriteResult result) {
+                int count = result.getWrittenIds().size();
+                Log.d(TAG, "Bulk " + verb + " finished for " + count + " todos, "
+                        + result.getFailedIds().size() + " failed");
+                if (count > 0) {
+                    successMessage.postValue(count + (count == 1 ? " todo " : " todos ") + pastTense);
+                }
+                if (!result.hasFailures()) {
+                    settleOnMain(mutations, null);
+                } else {
+                    // Only the todos that failed are rolled back
+                    Set<String> failed = new HashSet<>(result.getFailedIds());
+                    List<PendingMutation> written = new ArrayList<>(mutations.size());
+                    List<PendingMutation> rolledBack = new ArrayList<>();
+                    for (PendingMutation mutation : mutations) {
+                        (failed.contains(mutation.todoId) ? rolledBack : written).add(mutation);
+                    }
+                    errorMessage.postValue("Failed to " + verb + " " + failed.size()
+                            + (failed.size() == 1 ? " todo: " : " todos: ") + result.getFirstError());
+                    settleOnMain(written, null);
+                    settleOnMain(rolledBack, result.getFirstError());
+                }
+                if (recount) {
+                    mainHandler.post(statsTracker::recount);
+                }
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Log.e(TAG, "Bulk " + verb + " failed: " + error);
+                errorMessage.postValue("Failed to " + verb + " todos: " + error);
+                settleOnMain(mutations, error);
+            }
+        };
+    }
+
+    // Returns null when the todo is not in the list (nothing to show)
+    private PendingMutation completionMutation(String todoId, boolean completed) {
+        Todo current = findVisible(todoId);
+        if (current == null) {
+            return null;
+        }
+        Todo optimistic = new Todo(current);
+        optimistic.setCompleted(completed);
+        return putMutation(MutationKind.UPDATE, todoId, optimistic);
+    }
+
+    private PendingMutation putMutation(MutationKind kind, String todoId, Todo todo) {
+        if (todo != null) {
+            todo.setPendingWrite(true);
+        }
+        Todo current = kind == MutationKind.ADD ? null : findVisible(todoId);
+        Boolean previousCompleted = current != null ? current.isCompleted() : null;
+        statsTracker.onLocalChange(todoId, todo != null ? todo.isCompleted() : null, previousCompleted);
+
+        PendingMutation mutation = new PendingMutation(kind, todoId, todo, nextMutationSeq++);
+        PendingMutation previous = pendingMutations.remove(todoId);
+        if (previous != null && previous.kind == MutationKind.ADD && kind == MutationKind.UPDATE) {
+            // Still an add as far as the merge is concerned
+            mutation = new PendingMutation(MutationKind.ADD, todoId, todo, mutation.seq);
+        }
+        mutation.previousCompleted = previousCompleted;
+        pendingMutations.put(todoId, mutation);
+        return mutation;
+    }
+
+    // Write callbacks arrive on the main thread or the database executor
+    private void settleOnMain(List<PendingMutation> mutations, String error) {
+        mainHandler.post(() -> settle(mutations, error));
+    }
+
+    private void settle(List<PendingMutation> mutations, String error) {
+        for (PendingMutation mutation : mutations) {
+            if (pendingMutations.get(mutation.todoId) != mutation) {
+                // Superseded by a newer mutation of the same todo
+                continue;
+            }
+            if (error != null) {
+                pendingMutations.remove(mutation.todoId);
+                statsTracker.onLocalChange(mutation.todoId, mutation.previousCompleted,
+                        mutation.todo != null ? mutation.todo.isCompleted() : null);
+            } else {
+                // Keep showing the new state until the server list has it
+                mutation.confirmed = true;
+                if (mutation.todo != null) {
+                    mutation.todo = new Todo(mutation.todo);
+                    mutation.todo.setPendingWrite(false);
+                }
+            }
+        }
+        publish();
+    }
+
+    private void onServerTodos(List<Todo> todos) {
+        serverTodos = todos != null ? todos : Collections.<Todo>emptyList();
+
+        if (!pendingMutations.isEmpty()) {
+            Map<String, Todo> byId = new HashMap<>(serverTodos.size() * 2);
+            for (Todo todo : serverTodos) {
+                byId.put(todo.getId(), todo);
+            }
+            Iterator<PendingMutation> it = pendingMutations.values().iterator();
+            while (it.hasNext()) {
+                PendingMutation mutation = it.next();
+                if (mutation.confirmed
+                        && (isReflected(mutation, byId.get(mutation.todoId))
+                        || ++mutation.emissionsSinceConfirmed >= MAX_EMISSIONS_AFTER_CONFIRM)) {
+                    it.remove();
+                }
+            }
+        }
+        publish();
+    }
+
+    private static boolean isReflected(PendingMutation mutation, Todo serverTodo) {
+        switch (mutation.kind) {
+            case ADD:
+                return serverTodo != null;
+            case DELETE:
+                return serverTodo == null;
+            default:
+                return serverTodo == null || serverTodo.sameFields(mutation.todo);
+        }
+    }
+
+    private void publish() {
+        if (pendingMutations.isEmpty()) {
+            mergedTodos.setValue(serverTodos);
+            return;
+        }
+
+        List<Todo> merged = new ArrayList<>(serverTodos.size() + pendingMutations.size());
+        Map<String, Boolean> onServer = new HashMap<>(serverTodos.size() * 2);
+        for (Todo todo : serverTodos) {
+            onServer.put(todo.getId(), Boolean.TRUE);
+            PendingMutation mutation = pendingMutations.get(todo.getId());
+            if (mutation == null) {
+                merged.add(todo);
+            } else if (mutation.kind == MutationKind.UPDATE) {
+                if (currentFilter.matches(mutation.todo)) {
+                    merged.add(mutation.todo);
+                }
+            } else if (mutation.kind == MutationKind.ADD) {
+                merged.add(mutation.confirmed ? todo : mutation.todo);
+            }
+            // DELETE: left out
+        }
+
+        // New todos the server list doesn't have yet go on top, newest first
+        List<Todo> added = new ArrayList<>();
+        for (PendingMutation mutation : pendingMutations.values()) {
+            if (mutation.kind == MutationKind.ADD && !onServer.containsKey(mutation.todoId)
+                    && currentFilter.matches(mutation.todo)) {
+                added.add(mutation.todo);
+            }
+        }
+        Collections.reverse(added);
+        merged.addAll(0, added);
+
+        mergedTodos.setValue(merged);
+    }
+
+    private List<Todo> visibleTodos() {
+        List<Todo> visible = mergedTodos.getValue();
+        return visible != null ? visible : serverTodos;
+    }
+
+    private Todo findVisible(String todoId) {
+        for (Todo todo : visibleTodos()) {
+            if (todo.getId().equals(todoId)) {
+                return todo;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Called when the list is scrolled close to its end.
+     */
+    public void loadNextPage() {
+        if (currentUserId == null) {
+            return;
+        }
+        repository.loadNextPage(currentUserId, new FirestoreManager.FirestoreCallback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean hasMore) {
+                Log.d(TAG, "Next page loaded, more available: " + hasMore);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Log.e(TAG, "Failed to load more todos: " + error);
+                errorMessage.postValue("Failed to load more todos: " + error);
             }
         });
     }
 
+    /**
+     * Re-attaches the live query. Normal screen changes never need this, the
+     * listener keeps the data current on its own.
+     */
     public void refreshData() {
         if (currentUserId != null) {
             Log.d(TAG, "Manually refreshing data for user: " + currentUserId);
-            // Force refresh by re-setting the user ID
-            String userId = currentUserId;
-            currentUserId = null; // Reset to force refresh
-            setUserId(userId);
+            repository.forceRefresh();
         } else {
             Log.w(TAG, "Cannot refresh data - no current user ID");
         }
@@ -160,7 +645,10 @@ public class TodoViewModel extends ViewModel {
     protected void onCleared() {
         super.onCleared();
         Log.d(TAG, "TodoViewModel cleared, removing listeners");
+        Perf.logSummary();
         if (repository != null) {
+            repository.removeTodoChangeListener(statsListener);
+            repository.removeTodoChangeListener(resultListener);
             repository.removeListener();
         }
     }
@@ -0,0 +1,21 @@
+package com.example.todolist.data.firebase;
+
+/**
+ * Remembers what a callback was told.
+ */
+public class RecordingCallback<T> implements FirestoreManager.FirestoreCallback<T> {
+    public int successes;
+    public T lastResult;
+    public String lastError;
+
+    @Override
+    public void onSuccess(T result) {
+        successes++;
+        lastResult = result;
+    }
+
+    @Override
+    public void onFailure(String error) {
+        lastError = error;
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.todolist.data.firebase;
+
+import android.os.Looper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.robolectric.RobolectricTestRunner;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * The debounce window runs on Robolectric's paused main looper, so time
+ * only moves when a test advances it.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TodoToggleDebouncerTest {
+    private static final long QUIET_MS = 400;
+    private static final long MIN_WRITE_INTERVAL_MS = 1000;
+
+    private TodoWriteQueue writeQueue;
+    private TodoToggleDebouncer debouncer;
+
+    @Before
+    public void setUp() {
+        writeQueue = mock(TodoWriteQueue.class);
+        debouncer = new TodoToggleDebouncer(writeQueue);
+        debouncer.setQuietMs(QUIET_MS);
+        debouncer.setMinWriteIntervalMs(MIN_WRITE_INTERVAL_MS);
+    }
+
+    @Test
+    public void nothingIsWrittenBeforeTheTodoIsQuiet() {
+        debouncer.toggle("u1", "t1", false, true, new RecordingCallback<>());
+
+        advance(QUIET_MS - 1);
+
+        verifyNoWrite();
+    }
+
+    @Test
+    public void flipsWithinTheWindowCollapseIntoOneWriteOfTheFinalState() {
+        RecordingCallback<Void> first = new RecordingCallback<>();
+        RecordingCallback<Void> second = new RecordingCallback<>();
+        RecordingCallback<Void> third = new RecordingCallback<>();
+
+        debouncer.toggle("u1", "t1", false, true, first);
+        advance(300);
+        debouncer.toggle("u1", "t1", true, false, second);
+        advance(300);
+        debouncer.toggle("u1", "t1", false, true, third);
+        // Each flip restarts the window
+        advance(QUIET_MS - 1);
+        verifyNoWrite();
+        advance(1);
+
+        FirestoreManager.FirestoreCallback<Void> write = verifyWrite("t1", true);
+        assertEquals(3, debouncer.getMetrics().getFlipsReceived());
+        assertEquals(1, debouncer.getMetrics().getWritesIssued());
+        assertEquals(2, debouncer.getMetrics().getWritesSuppressed());
+
+        // Every caller hears back once the single write settles
+        write.onSuccess(null);
+        assertEquals(1, first.successes);
+        assertEquals(1, second.successes);
+        assertEquals(1, third.successes);
+    }
+
+    @Test
+    public void burstEndingInItsStartingStateWritesNothing() {
+        RecordingCallback<Void> first = new RecordingCallback<>();
+        RecordingCallback<Void> second = new RecordingCallback<>();
+
+        debouncer.toggle("u1", "t1", false, true, first);
+        debouncer.toggle("u1", "t1", true, false, second);
+        advance(QUIET_MS);
+
+        verifyNoWrite();
+        assertEquals(1, first.successes);
+        assertEquals(1, second.successes);
+        assertEquals(1, debouncer.getMetrics().getBurstsCancelled());
+    }
+
+    @Test
+    public void callThatChangesNothingWritesNothing() {
+        RecordingCallback<Void> callback = new RecordingCallback<>();
+
+        // e.g. a stale row reporting a todo as open that was already completed
+        debouncer.toggle("u1", "t1", true, true, callback);
+        advance(QUIET_MS);
+
+        verifyNoWrite();
+        assertEquals(1, callback.successes);
+    }
+
+    @Test
+    public void burstStartsFromTheFirstCallersState() {
+        debouncer.toggle("u1", "t1", true, true, new RecordingCallback<>());
+        debouncer.toggle("u1", "t1", true, false, new RecordingCallback<>());
+        advance(QUIET_MS);
+
+        // Uncompleted from completed, not a no-op from "open"
+        verifyWrite("t1", false);
+        ArgumentCaptor<TodoStatsDelta> stats = ArgumentCaptor.forClass(TodoStatsDelta.class);
+        verify(writeQueue).update(eq("t1"), anyMap(), stats.capture(), any());
+        assertFalse(stats.getValue().isEmpty());
+    }
+
+    @Test
+    public void differentTodosAreDebouncedSeparately() {
+        debouncer.toggle("u1", "t1", false, true, new RecordingCallback<>());
+        debouncer.toggle("u1", "t2", false, true, new RecordingCallback<>());
+        advance(QUIET_MS);
+
+        verifyWrite("t1", true);
+        verifyWrite("t2", true);
+    }
+
+    @Test
+    public void nextWriteToSameTodoWaitsForTheMinimumInterval() {
+        debouncer.toggle("u1", "t1", false, true, new RecordingCallback<>());
+        advance(QUIET_MS);
+        verifyWrite("t1", true);
+
+        // Flipped back right after the write: quiet after 400 ms, but held
+        // until a full interval has passed since that write
+        debouncer.toggle("u1", "t1", true, false, new RecordingCallback<>());
+        advance(MIN_WRITE_INTERVAL_MS - 1);
+        verify(writeQueue, never()).update(eq("t1"), eq(Collections.singletonMap("completed", false)),
+                any(), any());
+
+        advance(1);
+        verifyWrite("t1", false);
+    }
+
+    @Test
+    public void failedWriteIsReportedToEveryCaller() {
+        RecordingCallback<Void> first = new RecordingCallback<>();
+        RecordingCallback<Void> second = new RecordingCallback<>();
+
+        debouncer.toggle("u1", "t1", false, true, first);
+        debouncer.toggle("u1", "t1", true, false, second);
+        debouncer.toggle("u1", "t1", false, true, new RecordingCallback<>());
+        advance(QUIET_MS);
+
+        verifyWrite("t1", true).onFailure("PERMISSION_DENIED");
+        assertEquals("PERMISSION_DENIED", first.lastError);
+        assertEquals("PERMISSION_DENIED", second.lastError);
+    }
+
+    @Test
+    public void writeCarriesTheCompletionStatsDelta() {
+        debouncer.toggle("u1", "t1", false, true, new RecordingCallback<>());
+        advance(QUIET_MS);
+
+        ArgumentCaptor<TodoStatsDelta> stats = ArgumentCaptor.forClass(TodoStatsDelta.class);
+        verify(writeQueue).update(eq("t1"), anyMap(), stats.capture(), any());
+        assertEquals("u1", stats.getValue().getUserId());
+        assertFalse(stats.getValue().isEmpty());
+    }
+
+    @SuppressWarnings("unchecked")
+    private FirestoreManager.FirestoreCallback<Void> verifyWrite(String todoId, boolean completed) {
+        ArgumentCaptor<FirestoreManager.FirestoreCallback<Void>> callback =
+                ArgumentCaptor.forClass(FirestoreManager.FirestoreCallback.class);
+        Map<String, Object> updates = Collections.singletonMap("completed", completed);
+        verify(writeQueue).update(eq(todoId), eq(updates), any(), callback.capture());
+        return callback.getValue();
+    }
+
+    private void verifyNoWrite() {
+        verify(writeQueue, never()).update(anyString(), anyMap(), any(), any());
+    }
+
+    private static void advance(long millis) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(millis));
+    }
+}
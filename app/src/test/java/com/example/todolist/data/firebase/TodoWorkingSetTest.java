@@ -0,0 +1,228 @@
+package com.example.todolist.data.firebase;
+
+import com.example.todolist.data.model.Todo;
+import com.example.todolist.data.model.TodoChangeSet;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SnapshotMetadata;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Snapshots are built from mocked documents; todo "tN" was created at N
+ * seconds, and queries are ordered newest first.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TodoWorkingSetTest {
+
+    @Test
+    public void firstSnapshotIsAnInitialRebuild() {
+        TodoWorkingSet workingSet = new TodoWorkingSet(0);
+        List<QueryDocumentSnapshot> docs = docs(doc(3), doc(2), doc(1));
+
+        TodoChangeSet changeSet = workingSet.apply(snapshot(docs,
+                added(docs.get(0), 0), added(docs.get(1), 1), added(docs.get(2), 2)));
+
+        assertTrue(changeSet.isInitial());
+        assertFalse(changeSet.isPartial());
+        assertEquals(Arrays.asList("t3", "t2", "t1"), ids(workingSet.snapshot()));
+    }
+
+    @Test
+    public void laterSnapshotsArePatchedByPosition() {
+        TodoWorkingSet workingSet = initialized(0, 3, 2, 1);
+        QueryDocumentSnapshot t4 = doc(4);
+        QueryDocumentSnapshot t1Completed = doc(1, true);
+
+        // Indices follow Firestore: each change applies to the list as left
+        // by the ones before it
+        TodoChangeSet changeSet = workingSet.apply(snapshot(null,
+                added(t4, 0),
+                modified(t1Completed, 3, 3),
+                removed(doc(3), 1)));
+
+        assertFalse(changeSet.isInitial());
+        assertEquals(Arrays.asList("t4", "t2", "t1"), ids(workingSet.snapshot()));
+        assertTrue(workingSet.get("t1").isCompleted());
+        assertEquals(Arrays.asList(TodoChangeSet.Type.ADDED, TodoChangeSet.Type.MODIFIED,
+                TodoChangeSet.Type.REMOVED), types(changeSet));
+        assertEquals(3, changeSet.getResultSize());
+    }
+
+    @Test
+    public void modifiedTodoMovesToItsNewIndex() {
+        TodoWorkingSet workingSet = initialized(0, 3, 2, 1);
+
+        workingSet.apply(snapshot(null, modified(doc(1), 2, 0)));
+
+        assertEquals(Arrays.asList("t1", "t3", "t2"), ids(workingSet.snapshot()));
+    }
+
+    @Test
+    public void todoPushedOutOfFullWindowIsEvicted() {
+        TodoWorkingSet workingSet = initialized(3, 3, 2, 1);
+
+        TodoChangeSet changeSet = workingSet.apply(snapshot(null,
+                added(doc(4), 0),
+                removed(doc(1), 3)));
+
+        assertTrue(changeSet.isPartial());
+        assertEquals(Arrays.asList("t4", "t3", "t2"), ids(workingSet.snapshot()));
+        assertEquals(Arrays.asList(TodoChangeSet.Type.ADDED, TodoChangeSet.Type.EVICTED), types(changeSet));
+    }
+
+    @Test
+    public void deleteFromFullWindowIsRemovedAndBackfilled() {
+        TodoWorkingSet workingSet = initialized(3, 3, 2, 1);
+
+        // The window is refilled with an older todo at the end
+        TodoChangeSet changeSet = workingSet.apply(snapshot(null,
+                removed(doc(3), 0),
+                added(doc(0), 2)));
+
+        assertEquals(Arrays.asList("t2", "t1", "t0"), ids(workingSet.snapshot()));
+        assertEquals(Arrays.asList(TodoChangeSet.Type.REMOVED, TodoChangeSet.Type.ADDED), types(changeSet));
+    }
+
+    @Test
+    public void removalFromWindowThatIsNotFullIsRemoved() {
+        TodoWorkingSet workingSet = initialized(5, 3, 2, 1);
+
+        TodoChangeSet changeSet = workingSet.apply(snapshot(null, removed(doc(1), 2)));
+
+        assertEquals(Arrays.asList(TodoChangeSet.Type.REMOVED), types(changeSet));
+    }
+
+    @Test
+    public void undecodableDocumentIsLeftOutAndListRebuiltOnceFixed() {
+        TodoWorkingSet workingSet = new TodoWorkingSet(0);
+        List<QueryDocumentSnapshot> docs = docs(doc(3), badDoc(2), doc(1));
+        workingSet.apply(snapshot(docs, added(docs.get(0), 0), added(docs.get(1), 1), added(docs.get(2), 2)));
+        assertEquals(Arrays.asList("t3", "t1"), ids(workingSet.snapshot()));
+
+        // Firestore's indices count t2, ours don't: positional patching
+        // would be off by one, so the next snapshot rebuilds the list
+        QueryDocumentSnapshot t2Fixed = doc(2);
+        List<QueryDocumentSnapshot> fixed = docs(docs.get(0), t2Fixed, docs.get(2));
+        TodoChangeSet changeSet = workingSet.apply(snapshot(fixed, modified(t2Fixed, 1, 1)));
+
+        assertTrue(changeSet.isInitial());
+        assertEquals(Arrays.asList("t3", "t2", "t1"), ids(workingSet.snapshot()));
+    }
+
+    @Test
+    public void decodeFailureInLaterSnapshotRebuildsWithoutIt() {
+        TodoWorkingSet workingSet = initialized(0, 3, 2, 1);
+        QueryDocumentSnapshot t2Broken = badDoc(2);
+        List<QueryDocumentSnapshot> docs = docs(doc(3), t2Broken, doc(1));
+
+        TodoChangeSet changeSet = workingSet.apply(snapshot(docs, modified(t2Broken, 1, 1)));
+
+        // The previous copy of t2 is kept rather than dropped
+        assertTrue(changeSet.isInitial());
+        assertEquals(Arrays.asList("t3", "t2", "t1"), ids(workingSet.snapshot()));
+    }
+
+    private static TodoWorkingSet initialized(int limit, int... seconds) {
+        TodoWorkingSet workingSet = new TodoWorkingSet(limit);
+        List<QueryDocumentSnapshot> docs = new ArrayList<>();
+        List<DocumentChange> changes = new ArrayList<>();
+        for (int i = 0; i < seconds.length; i++) {
+            QueryDocumentSnapshot doc = doc(seconds[i]);
+            docs.add(doc);
+            changes.add(added(doc, i));
+        }
+        workingSet.apply(snapshot(docs, changes.toArray(new DocumentChange[0])));
+        return workingSet;
+    }
+
+    private static QueryDocumentSnapshot doc(int seconds) {
+        return doc(seconds, false);
+    }
+
+    private static QueryDocumentSnapshot doc(int seconds, boolean completed) {
+        QueryDocumentSnapshot doc = mock(QueryDocumentSnapshot.class);
+        when(doc.getId()).thenReturn("t" + seconds);
+        when(doc.getString(TodoCodec.FIELD_TITLE)).thenReturn("Todo " + seconds);
+        when(doc.getBoolean(TodoCodec.FIELD_COMPLETED)).thenReturn(completed);
+        when(doc.getDate(TodoCodec.FIELD_CREATED_AT)).thenReturn(new Date(seconds * 1000L));
+        return doc;
+    }
+
+    private static QueryDocumentSnapshot badDoc(int seconds) {
+        QueryDocumentSnapshot doc = mock(QueryDocumentSnapshot.class);
+        when(doc.getId()).thenReturn("t" + seconds);
+        when(doc.getString(anyString())).thenThrow(new RuntimeException("Field 'title' is not a String"));
+        return doc;
+    }
+
+    private static List<QueryDocumentSnapshot> docs(QueryDocumentSnapshot... docs) {
+        return Arrays.asList(docs);
+    }
+
+    private static DocumentChange added(QueryDocumentSnapshot doc, int newIndex) {
+        return change(DocumentChange.Type.ADDED, doc, -1, newIndex);
+    }
+
+    private static DocumentChange modified(QueryDocumentSnapshot doc, int oldIndex, int newIndex) {
+        return change(DocumentChange.Type.MODIFIED, doc, oldIndex, newIndex);
+    }
+
+    private static DocumentChange removed(QueryDocumentSnapshot doc, int oldIndex) {
+        return change(DocumentChange.Type.REMOVED, doc, oldIndex, -1);
+    }
+
+    private static DocumentChange change(DocumentChange.Type type, QueryDocumentSnapshot doc,
+                                         int oldIndex, int newIndex) {
+        DocumentChange change = mock(DocumentChange.class);
+        when(change.getType()).thenReturn(type);
+        when(change.getDocument()).thenReturn(doc);
+        when(change.getOldIndex()).thenReturn(oldIndex);
+        when(change.getNewIndex()).thenReturn(newIndex);
+        return change;
+    }
+
+    // docs is the full result, only read when the working set rebuilds
+    private static QuerySnapshot snapshot(List<QueryDocumentSnapshot> docs, DocumentChange... changes) {
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        SnapshotMetadata metadata = mock(SnapshotMetadata.class);
+        when(snapshot.getMetadata()).thenReturn(metadata);
+        when(snapshot.getDocumentChanges()).thenReturn(Arrays.asList(changes));
+        if (docs != null) {
+            when(snapshot.iterator()).thenAnswer(invocation -> docs.iterator());
+            when(snapshot.size()).thenReturn(docs.size());
+        }
+        return snapshot;
+    }
+
+    private static List<String> ids(List<Todo> todos) {
+        List<String> ids = new ArrayList<>();
+        for (Todo todo : todos) {
+            ids.add(todo.getId());
+        }
+        return ids;
+    }
+
+    private static List<TodoChangeSet.Type> types(TodoChangeSet changeSet) {
+        List<TodoChangeSet.Type> types = new ArrayList<>();
+        for (TodoChangeSet.Change change : changeSet.getChanges()) {
+            types.add(change.getType());
+        }
+        return types;
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.todolist.data.firebase;
+
+import android.os.Looper;
+
+import com.example.todolist.data.model.Todo;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Merge and cancel rules of the write queue, against mocked batches whose
+ * commits the tests settle by hand.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TodoWriteQueueTest {
+    private final List<WriteBatch> batches = new ArrayList<>();
+    private final List<TaskCompletionSource<Void>> commits = new ArrayList<>();
+    private final Map<String, DocumentReference> refs = new HashMap<>();
+    private FirebaseFirestore db;
+    private TodoWriteQueue queue;
+    private int newIds;
+
+    @Before
+    public void setUp() {
+        db = mock(FirebaseFirestore.class);
+        when(db.batch()).thenAnswer(invocation -> {
+            WriteBatch batch = mock(WriteBatch.class);
+            TaskCompletionSource<Void> commit = new TaskCompletionSource<>();
+            when(batch.commit()).thenReturn(commit.getTask());
+            batches.add(batch);
+            commits.add(commit);
+            return batch;
+        });
+
+        CollectionReference todos = mock(CollectionReference.class);
+        when(todos.getFirestore()).thenReturn(db);
+        when(todos.document(anyString())).thenAnswer(invocation -> ref(invocation.getArgument(0)));
+        when(todos.document()).thenAnswer(invocation -> ref("new" + ++newIds));
+
+        queue = new TodoWriteQueue(todos);
+    }
+
+    @Test
+    public void updatesToSameTodoMergeIntoOneWrite() {
+        RecordingCallback<Void> first = new RecordingCallback<>();
+        RecordingCallback<Void> second = new RecordingCallback<>();
+
+        queue.update("t1", Collections.singletonMap("title", "New title"), first);
+        queue.update("t1", Collections.singletonMap("completed", true), second);
+        queue.flush();
+
+        assertEquals(1, batches.size());
+        Map<String, Object> merged = new HashMap<>();
+        merged.put("title", "New title");
+        merged.put("completed", true);
+        verify(batches.get(0)).update(ref("t1"), merged);
+
+        commits.get(0).setResult(null);
+        idleMain();
+        assertEquals(1, first.successes);
+        assertEquals(1, second.successes);
+    }
+
+    @Test
+    public void writesWithinTheWindowShareOneBatch() {
+        queue.update("t1", Collections.singletonMap("completed", true), new RecordingCallback<>());
+        queue.delete("t2", new RecordingCallback<>());
+
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(200));
+
+        assertEquals(1, batches.size());
+        verify(batches.get(0)).update(any(DocumentReference.class), anyMap());
+        verify(batches.get(0)).delete(ref("t2"));
+    }
+
+    @Test
+    public void deleteSupersedesEarlierWrites() {
+        RecordingCallback<Void> update = new RecordingCallback<>();
+        RecordingCallback<Void> delete = new RecordingCallback<>();
+
+        queue.update("t1", Collections.singletonMap("completed", true), update);
+        queue.delete("t1", delete);
+        queue.flush();
+
+        WriteBatch batch = batches.get(0);
+        verify(batch).delete(ref("t1"));
+        verify(batch, never()).update(any(DocumentReference.class), anyMap());
+
+        commits.get(0).setResult(null);
+        idleMain();
+        assertEquals(1, update.successes);
+        assertEquals(1, delete.successes);
+    }
+
+    @Test
+    public void addThenDeleteInSameWindowSendsNothing() {
+        RecordingCallback<String> add = new RecordingCallback<>();
+        RecordingCallback<Void> delete = new RecordingCallback<>();
+
+        String id = queue.add(todo("Buy milk"), add);
+        queue.delete(id, delete);
+
+        // Settled later on the main thread, not from inside delete()
+        assertEquals(0, add.successes);
+        assertEquals(0, delete.successes);
+        idleMain();
+        assertEquals(1, add.successes);
+        assertEquals(id, add.lastResult);
+        assertEquals(1, delete.successes);
+
+        queue.flush();
+        assertEquals(0, batches.size());
+    }
+
+    @Test
+    public void updateOfPendingDeleteFailsWithoutWriting() {
+        RecordingCallback<Void> update = new RecordingCallback<>();
+
+        queue.delete("t1", new RecordingCallback<>());
+        queue.update("t1", Collections.singletonMap("completed", true), update);
+
+        assertNull(update.lastError);
+        idleMain();
+        assertEquals("Todo was deleted", update.lastError);
+
+        queue.flush();
+        verify(batches.get(0), never()).update(any(DocumentReference.class), anyMap());
+    }
+
+    @Test
+    public void failedBatchIsRetriedPerDocument() {
+        RecordingCallback<Void> good = new RecordingCallback<>();
+        RecordingCallback<Void> bad = new RecordingCallback<>();
+
+        queue.update("good", Collections.singletonMap("completed", true), good);
+        queue.update("gone", Collections.singletonMap("completed", true), bad);
+        queue.flush();
+
+        commits.get(0).setException(new Exception("NOT_FOUND: No document to update"));
+        idleMain();
+
+        // One retry batch per document
+        assertEquals(3, batches.size());
+        verify(batches.get(1)).update(ref("good"), Collections.singletonMap("completed", true));
+        verify(batches.get(2)).update(ref("gone"), Collections.singletonMap("completed", true));
+
+        commits.get(1).setResult(null);
+        commits.get(2).setException(new Exception("NOT_FOUND: No document to update"));
+        idleMain();
+        assertEquals(1, good.successes);
+        assertNull(good.lastError);
+        assertEquals(0, bad.successes);
+        assertEquals("NOT_FOUND: No document to update", bad.lastError);
+    }
+
+    @Test
+    public void failedSingleDocumentBatchIsNotRetried() {
+        RecordingCallback<Void> callback = new RecordingCallback<>();
+
+        queue.update("gone", Collections.singletonMap("completed", true), callback);
+        queue.flush();
+        commits.get(0).setException(new Exception("NOT_FOUND"));
+        idleMain();
+
+        // A single-document batch has nothing to split
+        assertEquals(1, batches.size());
+        assertEquals("NOT_FOUND", callback.lastError);
+    }
+
+    private DocumentReference ref(String id) {
+        DocumentReference ref = refs.get(id);
+        if (ref == null) {
+            ref = mock(DocumentReference.class);
+            when(ref.getId()).thenReturn(id);
+            refs.put(id, ref);
+        }
+        return ref;
+    }
+
+    private static Todo todo(String title) {
+        Todo todo = new Todo();
+        todo.setTitle(title);
+        return todo;
+    }
+
+    private static void idleMain() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+}
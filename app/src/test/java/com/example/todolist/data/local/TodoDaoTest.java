@@ -0,0 +1,91 @@
+package com.example.todolist.data.local;
+
+import android.os.Looper;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Room;
+
+import com.example.todolist.data.model.Todo;
+import com.example.todolist.data.model.TodoFilter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Queries run against an in-memory database on the test thread; observed
+ * results are delivered once the main looper is idled.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TodoDaoTest {
+    private static final String USER_ID = "u1";
+
+    private TodoDatabase db;
+    private TodoDao dao;
+
+    @Before
+    public void setUp() {
+        db = Room.inMemoryDatabaseBuilder(RuntimeEnvironment.getApplication(), TodoDatabase.class)
+                .allowMainThreadQueries()
+                .setQueryExecutor(Runnable::run)
+                .build();
+        dao = db.todoDao();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void pendingTodoIsListedFirst() {
+        // "pending" has no server timestamp yet
+        dao.upsertAll(Arrays.asList(todo("old", 1000L, false), todo("pending", null, false),
+                todo("new", 2000L, false)));
+
+        assertEquals(Arrays.asList("pending", "new", "old"), ids(observe(dao.observeUserTodos(USER_ID, TodoFilter.ALL))));
+    }
+
+    @Test
+    public void pendingTodoIsListedFirstUnderAFilter() {
+        dao.upsertAll(Arrays.asList(todo("old", 1000L, false), todo("pending", null, false),
+                todo("done", 3000L, true), todo("new", 2000L, false)));
+
+        assertEquals(Arrays.asList("pending", "new", "old"), ids(observe(dao.observeUserTodos(USER_ID, TodoFilter.ACTIVE))));
+    }
+
+    private static <T> T observe(LiveData<T> liveData) {
+        liveData.observeForever(value -> {
+        });
+        shadowOf(Looper.getMainLooper()).idle();
+        return liveData.getValue();
+    }
+
+    private static Todo todo(String id, Long createdAtMillis, boolean completed) {
+        Todo todo = new Todo();
+        todo.setId(id);
+        todo.setUserId(USER_ID);
+        todo.setCompleted(completed);
+        todo.setCreatedAt(createdAtMillis != null ? new Date(createdAtMillis) : null);
+        return todo;
+    }
+
+    private static List<String> ids(List<Todo> todos) {
+        List<String> ids = new ArrayList<>();
+        for (Todo todo : todos) {
+            ids.add(todo.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.todolist.data.repository;
+
+import android.os.Looper;
+
+import com.example.todolist.data.firebase.FirestoreManager;
+import com.example.todolist.data.firebase.RecordingCallback;
+import com.example.todolist.data.firebase.TodoWorkingSet;
+import com.example.todolist.data.local.StaleTodoResolver;
+import com.example.todolist.data.local.TodoDao;
+import com.example.todolist.data.local.TodoDatabase;
+import com.example.todolist.data.local.TodoSyncEngine;
+import com.example.todolist.data.model.Todo;
+import com.example.todolist.data.model.TodoFilter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Where each page starts, driven through a real {@link TodoSyncEngine} over
+ * a mocked database. Todo "tN" was created at N seconds.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TodoPagingSourceTest {
+    private static final String USER_ID = "u1";
+    private static final int PAGE_SIZE = 2;
+
+    private final List<Date> cursors = new ArrayList<>();
+    private final List<FirestoreManager.FirestoreCallback<List<Todo>>> pageRequests = new ArrayList<>();
+    private TodoSyncEngine syncEngine;
+    private TodoPagingSource pagingSource;
+
+    @Before
+    public void setUp() {
+        TodoDatabase database = mock(TodoDatabase.class);
+        TodoDao todoDao = mock(TodoDao.class);
+        when(database.todoDao()).thenReturn(todoDao);
+        FirestoreManager firestoreManager = mock(FirestoreManager.class);
+        doAnswer(invocation -> {
+            cursors.add(invocation.getArgument(2));
+            pageRequests.add(invocation.getArgument(4));
+            return null;
+        }).when(firestoreManager).getTodosPage(eq(USER_ID), eq(TodoFilter.ALL), any(), eq(PAGE_SIZE), any());
+
+        syncEngine = new TodoSyncEngine(database, USER_ID, TodoFilter.ALL, mock(StaleTodoResolver.class));
+        pagingSource = new TodoPagingSource(firestoreManager, todoDao, syncEngine,
+                mock(StaleTodoResolver.class), PAGE_SIZE);
+    }
+
+    @Test
+    public void nothingIsFetchedBeforeTheServerResult() {
+        RecordingCallback<Boolean> callback = loadNextPage();
+
+        assertEquals(0, pageRequests.size());
+        assertEquals(Boolean.TRUE, callback.lastResult);
+    }
+
+    @Test
+    public void firstPageStartsAfterTheLiveWindow() {
+        serverResult(true, 9, 8);
+
+        loadNextPage();
+
+        assertEquals(Arrays.asList(at(8)), cursors);
+    }
+
+    @Test
+    public void nextPageContinuesFromTheLastOneStored() {
+        serverResult(true, 9, 8);
+        RecordingCallback<Boolean> first = loadNextPage();
+        answerPage(7, 6);
+        assertEquals(Boolean.TRUE, first.lastResult);
+
+        loadNextPage();
+
+        assertEquals(Arrays.asList(at(8), at(6)), cursors);
+    }
+
+    @Test
+    public void shortPageReachesTheEnd() {
+        serverResult(true, 9, 8);
+        RecordingCallback<Boolean> first = loadNextPage();
+        answerPage(7);
+        assertEquals(Boolean.FALSE, first.lastResult);
+
+        RecordingCallback<Boolean> second = loadNextPage();
+
+        assertEquals(1, pageRequests.size());
+        assertEquals(Boolean.FALSE, second.lastResult);
+    }
+
+    @Test
+    public void windowHoldingEveryTodoHasNoPages() {
+        serverResult(false, 9, 8);
+
+        RecordingCallback<Boolean> callback = loadNextPage();
+
+        assertEquals(0, pageRequests.size());
+        assertEquals(Boolean.FALSE, callback.lastResult);
+    }
+
+    @Test
+    public void serverResetStartsOverFromTheNewWindow() {
+        serverResult(true, 9, 8);
+        loadNextPage();
+        answerPage(7, 6);
+
+        // e.g. the listener reattached after todos were added elsewhere
+        serverResult(true, 12, 11);
+        loadNextPage();
+
+        assertEquals(Arrays.asList(at(8), at(11)), cursors);
+    }
+
+    @Test
+    public void pageRequestedBeforeAResetDoesNotMoveTheNewRange() {
+        serverResult(true, 9, 8);
+        loadNextPage();
+
+        serverResult(true, 12, 11);
+        answerPage(7, 6);
+        loadNextPage();
+
+        assertEquals(Arrays.asList(at(8), at(11)), cursors);
+    }
+
+    private void serverResult(boolean partial, int... seconds) {
+        List<Todo> todos = new ArrayList<>();
+        for (int second : seconds) {
+            todos.add(todo(second));
+        }
+        syncEngine.onTodosChanged(TodoWorkingSet.initialChangeSet(todos, partial, false));
+        settle();
+    }
+
+    private RecordingCallback<Boolean> loadNextPage() {
+        RecordingCallback<Boolean> callback = new RecordingCallback<>();
+        pagingSource.loadNextPage(callback);
+        settle();
+        return callback;
+    }
+
+    // Answers the most recent page request
+    private void answerPage(int... seconds) {
+        List<Todo> page = new ArrayList<>();
+        for (int second : seconds) {
+            page.add(todo(second));
+        }
+        pageRequests.get(pageRequests.size() - 1).onSuccess(page);
+        settle();
+    }
+
+    private static Todo todo(int seconds) {
+        Todo todo = new Todo();
+        todo.setId("t" + seconds);
+        todo.setUserId(USER_ID);
+        todo.setCreatedAt(at(seconds));
+        return todo;
+    }
+
+    private static Date at(int seconds) {
+        return new Date(seconds * 1000L);
+    }
+
+    // Runs queued database work, then whatever it posted to the main thread
+    private static void settle() {
+        try {
+            TodoDatabase.databaseExecutor.submit(() -> {
+            }).get();
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+}
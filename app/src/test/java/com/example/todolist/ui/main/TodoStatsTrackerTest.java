@@ -0,0 +1,192 @@
+package com.example.todolist.ui.main;
+
+import com.example.todolist.data.firebase.FirestoreManager;
+import com.example.todolist.data.firebase.TodoWorkingSet;
+import com.example.todolist.data.model.Todo;
+import com.example.todolist.data.model.TodoChangeSet;
+import com.example.todolist.data.model.TodoStats;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Counts are checked through the published {@link TodoStats}; the
+ * {@link TodoStatsTracker.Counter} answers only when a test tells it to.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TodoStatsTrackerTest {
+    private final List<FirestoreManager.FirestoreCallback<TodoStats>> countRequests = new ArrayList<>();
+    private TodoStatsTracker tracker;
+
+    @Before
+    public void setUp() {
+        tracker = new TodoStatsTracker(countRequests::add);
+    }
+
+    @Test
+    public void initialResultIsCountedFromTheLoadedTodos() {
+        tracker.onTodosChanged(initial(false, todo("a", true), todo("b", false), todo("c", false)));
+
+        assertStats(3, 1);
+        assertEquals(0, countRequests.size());
+    }
+
+    @Test
+    public void addedModifiedAndRemovedTodosAdjustTheCounts() {
+        tracker.onTodosChanged(initial(false, todo("a", false), todo("b", false)));
+
+        tracker.onTodosChanged(changes(3, false,
+                added(todo("c", false), 0),
+                modified(todo("a", true), 1)));
+        assertStats(3, 1);
+
+        tracker.onTodosChanged(changes(2, false, removed(todo("a", true), 1)));
+        assertStats(2, 0);
+    }
+
+    @Test
+    public void serverEchoOfLocalToggleIsNotCountedTwice() {
+        tracker.onTodosChanged(initial(false, todo("a", false), todo("b", false)));
+
+        tracker.onLocalChange("a", true, false);
+        assertStats(2, 1);
+
+        tracker.onTodosChanged(changes(2, false, modified(todo("a", true), 0)));
+        assertStats(2, 1);
+    }
+
+    @Test
+    public void serverEchoOfLocalAddIsNotCountedTwice() {
+        tracker.onTodosChanged(initial(false, todo("a", false)));
+
+        tracker.onLocalChange("n", false, null);
+        assertStats(2, 0);
+
+        tracker.onTodosChanged(changes(2, false, added(todo("n", false), 0)));
+        assertStats(2, 0);
+    }
+
+    @Test
+    public void serverRemovalOfLocallyDeletedTodoIsNotCountedTwice() {
+        tracker.onTodosChanged(initial(false, todo("a", true), todo("b", false)));
+
+        tracker.onLocalChange("a", null, true);
+        assertStats(1, 0);
+
+        tracker.onTodosChanged(changes(1, false, removed(todo("a", true), 0)));
+        assertStats(1, 0);
+    }
+
+    @Test
+    public void partialInitialResultTakesCountsFromTheCounter() {
+        tracker.onTodosChanged(initial(true, todo("a", false), todo("b", true)));
+        assertStats(2, 1);
+
+        assertEquals(1, countRequests.size());
+        countRequests.get(0).onSuccess(new TodoStats(40, 15));
+        assertStats(40, 15);
+    }
+
+    @Test
+    public void changesMadeWhileCountingAreKept() {
+        tracker.onTodosChanged(initial(true, todo("a", false), todo("b", false)));
+
+        tracker.onLocalChange("a", true, false);
+        tracker.onLocalChange("n", false, null);
+        countRequests.get(0).onSuccess(new TodoStats(40, 15));
+
+        assertStats(41, 16);
+    }
+
+    @Test
+    public void staleCountResultIsIgnored() {
+        tracker.onTodosChanged(initial(true, todo("a", false)));
+        tracker.recount();
+
+        countRequests.get(1).onSuccess(new TodoStats(40, 15));
+        countRequests.get(0).onSuccess(new TodoStats(39, 15));
+
+        assertStats(40, 15);
+    }
+
+    @Test
+    public void evictedTodoStaysCounted() {
+        tracker.onTodosChanged(initial(true, todo("b", false), todo("a", true)));
+        countRequests.get(0).onSuccess(new TodoStats(40, 15));
+
+        tracker.onTodosChanged(changes(2, true,
+                added(todo("c", false), 0),
+                evicted(todo("a", true), 2)));
+
+        assertStats(41, 15);
+    }
+
+    @Test
+    public void backfillAfterRemovalFromFullWindowIsNotCountedAgain() {
+        tracker.onTodosChanged(initial(true, todo("c", false), todo("b", false), todo("a", false)));
+        countRequests.get(0).onSuccess(new TodoStats(40, 15));
+
+        // "z" was outside the window and already part of the count
+        tracker.onTodosChanged(changes(3, true,
+                removed(todo("c", false), 0),
+                added(todo("z", true), 2)));
+
+        assertStats(39, 15);
+    }
+
+    @Test
+    public void resetDropsCountsAndPendingCountResults() {
+        tracker.onTodosChanged(initial(true, todo("a", false)));
+        tracker.reset();
+
+        countRequests.get(0).onSuccess(new TodoStats(40, 15));
+        tracker.onTodosChanged(initial(false, todo("x", false)));
+
+        assertStats(1, 0);
+    }
+
+    private void assertStats(int total, int completed) {
+        TodoStats stats = tracker.getStats().getValue();
+        assertEquals("total", total, stats.getTotal());
+        assertEquals("completed", completed, stats.getCompleted());
+    }
+
+    private static Todo todo(String id, boolean completed) {
+        Todo todo = new Todo();
+        todo.setId(id);
+        todo.setCompleted(completed);
+        return todo;
+    }
+
+    private static TodoChangeSet initial(boolean partial, Todo... todos) {
+        return TodoWorkingSet.initialChangeSet(Arrays.asList(todos), partial, false);
+    }
+
+    private static TodoChangeSet changes(int resultSize, boolean partial, TodoChangeSet.Change... changes) {
+        return new TodoChangeSet(Arrays.asList(changes), resultSize, false, partial);
+    }
+
+    private static TodoChangeSet.Change added(Todo todo, int newIndex) {
+        return new TodoChangeSet.Change(TodoChangeSet.Type.ADDED, todo, -1, newIndex);
+    }
+
+    private static TodoChangeSet.Change modified(Todo todo, int index) {
+        return new TodoChangeSet.Change(TodoChangeSet.Type.MODIFIED, todo, index, index);
+    }
+
+    private static TodoChangeSet.Change removed(Todo todo, int oldIndex) {
+        return new TodoChangeSet.Change(TodoChangeSet.Type.REMOVED, todo, oldIndex, -1);
+    }
+
+    private static TodoChangeSet.Change evicted(Todo todo, int oldIndex) {
+        return new TodoChangeSet.Change(TodoChangeSet.Type.EVICTED, todo, oldIndex, -1);
+    }
+}
@@ -0,0 +1,44 @@
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+// Microbenchmarks of the plain-Java model classes: filter matching,
+// newest-first ordering and due-date parsing/formatting. They run on the
+// desktop JVM, so they need no device; compare against baseline.json with
+// compare_benchmarks.py:
+//   ./gradlew :benchmark-jvm:jmh
+//   python3 benchmark/compare_benchmarks.py --baseline benchmark-jvm/baseline.json \
+//       benchmark-jvm/build/results/jmh/results.json
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// :app is an Android module and can't be a dependency here, so the model
+// classes and the shared data generator are compiled from their sources
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            srcDir("../benchmark/src/main/java")
+            include(
+                "com/example/todolist/data/model/Todo.java",
+                "com/example/todolist/data/model/TodoFilter.java",
+                "com/example/todolist/data/model/DueDates.java",
+                "com/example/todolist/benchmark/SyntheticTodos.java",
+            )
+        }
+    }
+}
+
+dependencies {
+    // Todo's Room and nullness annotations
+    compileOnly(libs.androidx.annotation)
+    compileOnly(libs.room.common)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    resultFormat.set("JSON")
+}
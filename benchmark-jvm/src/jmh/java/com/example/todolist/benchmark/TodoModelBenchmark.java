@@ -0,0 +1,125 @@
+package com.example.todolist.benchmark;
+
+import com.example.todolist.data.model.DueDates;
+import com.example.todolist.data.model.Todo;
+import com.example.todolist.data.model.TodoFilter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The model-only steps of showing a list, at 100 to 50,000 todos:
+ * matching a {@link TodoFilter} the way TodoViewModel narrows the list,
+ * ordering newest first the way TodoDao does, and due-date
+ * parsing/formatting. Nothing here touches Android, so these run on the
+ * desktop JVM and their medians are recorded in benchmark-jvm/baseline.json;
+ * the view and LiveData steps stay in :benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TodoModelBenchmark {
+    // Same order as TodoDao.observeMatching: todos the server hasn't
+    // timestamped yet on top, then newest first
+    private static final Comparator<Todo> NEWEST_FIRST =
+            Comparator.comparing(Todo::getCreatedAt, Comparator.nullsFirst(Comparator.reverseOrder()));
+    private static final TodoFilter HIGH_PRIORITY_WORK = new TodoFilter(false, "HIGH", "Work");
+
+    @Param({"100", "1000", "10000", "50000"})
+    public int size;
+
+    private List<Todo> todos;
+    private List<Todo> shuffled;
+    private List<String> dates;
+    private long[] days;
+
+    @Setup
+    public void setUp() {
+        todos = SyntheticTodos.generate(size);
+        dates = SyntheticTodos.dates(todos);
+        days = new long[size];
+        for (int i = 0; i < size; i++) {
+            days[i] = todos.get(i).getDueDay();
+        }
+
+        // Arrival order, not display order, with about 1% still pending
+        Random random = new Random(42);
+        shuffled = new ArrayList<>(size);
+        for (Todo todo : todos) {
+            Todo copy = new Todo(todo);
+            if (random.nextInt(100) == 0) {
+                copy.setCreatedAt(null);
+            }
+            shuffled.add(copy);
+        }
+        Collections.shuffle(shuffled, random);
+    }
+
+    @Benchmark
+    public List<Todo> filterActive() {
+        return matching(todos, TodoFilter.ACTIVE);
+    }
+
+    /**
+     * All three criteria set; few todos match.
+     */
+    @Benchmark
+    public List<Todo> filterAllCriteria() {
+        return matching(todos, HIGH_PRIORITY_WORK);
+    }
+
+    /**
+     * Includes copying the list, which is small next to the sort.
+     */
+    @Benchmark
+    public List<Todo> sortNewestFirst() {
+        List<Todo> sorted = new ArrayList<>(shuffled);
+        sorted.sort(NEWEST_FIRST);
+        return sorted;
+    }
+
+    @Benchmark
+    public void parseDueDates(Blackhole blackhole) {
+        for (String date : dates) {
+            blackhole.consume(DueDates.toEpochDay(date));
+        }
+    }
+
+    @Benchmark
+    public void formatDueDates(Blackhole blackhole) {
+        for (long day : days) {
+            blackhole.consume(DueDates.format(day));
+        }
+    }
+
+    private static List<Todo> matching(List<Todo> todos, TodoFilter filter) {
+        List<Todo> matching = new ArrayList<>(todos.size());
+        for (Todo todo : todos) {
+            if (filter.matches(todo)) {
+                matching.add(todo);
+            }
+        }
+        return matching;
+    }
+}
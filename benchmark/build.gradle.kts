@@ -0,0 +1,46 @@
+plugins {
+    alias(libs.plugins.android.test)
+}
+
+// Microbenchmarks of the list pipeline and the snapshot codec. They run
+// inside the app's benchmark build type, which is release code and not
+// debuggable, so timings are close to what users see. Needs a physical
+// device; compare against baseline.json with compare_benchmarks.py:
+//   ./gradlew :benchmark:connectedBenchmarkAndroidTest
+android {
+    namespace = "com.example.todolist.benchmark"
+    compileSdk = 35
+
+    defaultConfig {
+        minSdk = 28
+        targetSdk = 35
+
+        testInstrumentationRunner = "androidx.benchmark.junit4.AndroidBenchmarkRunner"
+    }
+
+    buildTypes {
+        create("benchmark") {
+            isDebuggable = false
+            signingConfig = signingConfigs.getByName("debug")
+            matchingFallbacks += listOf("release")
+        }
+    }
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_11
+        targetCompatibility = JavaVersion.VERSION_11
+    }
+
+    targetProjectPath = ":app"
+}
+
+dependencies {
+    implementation(libs.ext.junit)
+    implementation(libs.benchmark.junit4)
+}
+
+androidComponents {
+    beforeVariants(selector().all()) {
+        it.enable = it.buildType == "benchmark"
+    }
+}
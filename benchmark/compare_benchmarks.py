@@ -0,0 +1,122 @@
+#!/usr/bin/env python3
+"""Compares an androidx or JMH benchmark run against the committed baseline.
+
+Run the device benchmarks on a physical device, then compare:
+
+    ./gradlew :benchmark:connectedBenchmarkAndroidTest
+    python3 benchmark/compare_benchmarks.py \
+        benchmark/build/outputs/connected_android_test_additional_output/benchmarkAndroidTest/connected/*/*-benchmarkData.json
+
+The JVM benchmarks have their own baseline:
+
+    ./gradlew :benchmark-jvm:jmh
+    python3 benchmark/compare_benchmarks.py --baseline benchmark-jvm/baseline.json \
+        benchmark-jvm/build/results/jmh/results.json
+
+Exits with 1 if any benchmark's median is more than --threshold slower than
+its baseline, and with 2 while no baseline has been recorded. Use --update on a quiet, reference device to record new
+baseline numbers; commit the result together with the change that moved
+them.
+"""
+
+import argparse
+import json
+import platform
+import sys
+
+DEFAULT_BASELINE = "benchmark/baseline.json"
+
+
+def cpu_model():
+    try:
+        with open("/proc/cpuinfo") as f:
+            for line in f:
+                if line.startswith("model name"):
+                    return line.split(":", 1)[1].strip()
+    except OSError:
+        pass
+    return platform.processor() or platform.machine()
+
+
+def load_jmh_results(data, medians):
+    """JMH's JSON output; run on this machine, so it describes the host."""
+    device = None
+    for result in data:
+        if result["mode"] != "sample":
+            continue
+        device = "{} {} on {} ({})".format(result.get("vmName", "JVM"), result.get("jdkVersion", "?"),
+                                           cpu_model(), platform.system())
+        cls, name = result["benchmark"].rsplit(".", 2)[-2:]
+        params = "".join("[{}={}]".format(k, v) for k, v in sorted(result.get("params", {}).items()))
+        metric = result["primaryMetric"]
+        if metric["scoreUnit"] != "ns/op":
+            raise ValueError("{}: expected ns/op, got {}".format(result["benchmark"], metric["scoreUnit"]))
+        medians["{}#{}{}".format(cls, name, params)] = metric["scorePercentiles"]["50.0"]
+    return device
+
+
+def load_results(paths):
+    medians = {}
+    device = None
+    for path in paths:
+        with open(path) as f:
+            data = json.load(f)
+        if isinstance(data, list):
+            device = load_jmh_results(data, medians)
+            continue
+        build = data.get("context", {}).get("build", {})
+        device = "{} {} (API {})".format(build.get("brand", "?"), build.get("model", "?"),
+                                         build.get("version", {}).get("sdk", "?"))
+        for benchmark in data.get("benchmarks", []):
+            key = "{}#{}".format(benchmark["className"].rsplit(".", 1)[-1], benchmark["name"])
+            medians[key] = benchmark["metrics"]["timeNs"]["median"]
+    return device, medians
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__.splitlines()[0])
+    parser.add_argument("results", nargs="+", help="benchmarkData.json files from a run")
+    parser.add_argument("--baseline", default=DEFAULT_BASELINE)
+    parser.add_argument("--threshold", type=float, default=0.10,
+                        help="allowed slowdown as a fraction of the baseline (default 0.10)")
+    parser.add_argument("--update", action="store_true", help="overwrite the baseline with these results")
+    args = parser.parse_args()
+
+    device, medians = load_results(args.results)
+
+    if args.update:
+        with open(args.baseline, "w") as f:
+            json.dump({"device": device, "medianNs": dict(sorted(medians.items()))}, f, indent=2)
+            f.write("\n")
+        print("Recorded {} benchmarks from {}".format(len(medians), device))
+        return 0
+
+    with open(args.baseline) as f:
+        baseline = json.load(f)
+    if not baseline.get("medianNs"):
+        print("error: {} has no numbers yet; record them with --update on a reference device".format(args.baseline))
+        return 2
+    if baseline.get("device") and baseline["device"] != device:
+        print("warning: baseline was recorded on {}, this run is from {}".format(baseline["device"], device))
+
+    regressions = 0
+    for key, median in sorted(medians.items()):
+        base = baseline.get("medianNs", {}).get(key)
+        if base is None:
+            print("{:<70} {:>14,.0f} ns  (no baseline)".format(key, median))
+            continue
+        change = (median - base) / base
+        flag = ""
+        if change > args.threshold:
+            flag = "  REGRESSION"
+            regressions += 1
+        print("{:<70} {:>14,.0f} ns  {:+.1%}{}".format(key, median, change, flag))
+
+    if regressions:
+        print("{} benchmark(s) slower than baseline by more than {:.0%}".format(regressions, args.threshold))
+        return 1
+    return 0
+
+
+if __name__ == "__main__":
+    sys.exit(main())
@@ -0,0 +1,80 @@
+package com.example.todolist.benchmark;
+
+import com.example.todolist.data.model.DueDates;
+import com.example.todolist.data.model.Todo;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Deterministic todo lists for benchmarks, shaped like real data: newest
+ * first, about a third completed, due dates spread around today so every
+ * relative label occurs, and the priorities and categories the add screen
+ * offers.
+ */
+public final class SyntheticTodos {
+    public static final String USER_ID = "benchmark-user";
+
+    private static final long SEED = 42;
+
+    private SyntheticTodos() {
+    }
+
+    public static List<Todo> generate(int count) {
+        Random random = new Random(SEED);
+        long today = DueDates.today();
+        long now = System.currentTimeMillis();
+
+        List<Todo> todos = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long dueDay = today - 30 + random.nextInt(60);
+            Todo todo = new Todo("Todo " + i, "Description of todo number " + i,
+                    DueDates.format(dueDay), USER_ID);
+            todo.setId(String.format(Locale.ROOT, "todo%08d", i));
+            todo.setCompleted(random.nextInt(3) == 0);
+            todo.setPriority(Todo.PRIORITIES.get(random.nextInt(Todo.PRIORITIES.size())));
+            todo.setCategory(Todo.CATEGORIES.get(random.nextInt(Todo.CATEGORIES.size())));
+            todo.setCreatedAt(new Date(now - i * 60_000L));
+            todo.setUpdatedAt(new Date(now));
+            todos.add(todo);
+        }
+        return todos;
+    }
+
+    /**
+     * A copy of {@code todos} as the next snapshot after a typical edit: one
+     * todo toggled in the middle and one new todo on top.
+     */
+    public static List<Todo> nextSnapshot(List<Todo> todos) {
+        List<Todo> next = new ArrayList<>(todos.size() + 1);
+        Todo added = new Todo("New todo", "Just added", DueDates.format(DueDates.today()), USER_ID);
+        added.setId("new-todo");
+        added.setCreatedAt(new Date());
+        next.add(added);
+
+        int toggled = todos.size() / 2;
+        for (int i = 0; i < todos.size(); i++) {
+            Todo todo = todos.get(i);
+            if (i == toggled) {
+                todo = new Todo(todo);
+                todo.setCompleted(!todo.isCompleted());
+            }
+            next.add(todo);
+        }
+        return next;
+    }
+
+    /**
+     * The display strings of {@code todos}' due dates.
+     */
+    public static List<String> dates(List<Todo> todos) {
+        List<String> dates = new ArrayList<>(todos.size());
+        for (Todo todo : todos) {
+            dates.add(todo.getDate());
+        }
+        return dates;
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.todolist.benchmark;
+
+import android.content.Context;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.todolist.data.model.Todo;
+import com.example.todolist.data.model.TodoChangeSet;
+import com.example.todolist.ui.adapter.TodoDiffCallback;
+import com.example.todolist.ui.adapter.TodoRowModel;
+import com.example.todolist.ui.main.TodoStatsTracker;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The in-memory steps between a snapshot arriving and the list showing it,
+ * at 100 to 50,000 todos: building row models (formatting, due-date
+ * labels, priority colors), diffing them and updating the header
+ * statistics. Snapshot decoding is in TodoCodecBenchmark; filtering,
+ * ordering and due-date parsing need no device and are in
+ * :benchmark-jvm's TodoModelBenchmark.
+ *
+ * Compare results against benchmark/baseline.json with
+ * benchmark/compare_benchmarks.py.
+ */
+@RunWith(Parameterized.class)
+public class TodoPipelineBenchmark {
+
+    @Parameterized.Parameters(name = "size={0}")
+    public static Collection<Object[]> sizes() {
+        return Arrays.asList(new Object[][]{{100}, {1_000}, {10_000}, {50_000}});
+    }
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final int size;
+    private Context context;
+    private List<Todo> todos;
+    private List<Todo> nextTodos;
+
+    public TodoPipelineBenchmark(int size) {
+        this.size = size;
+    }
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        todos = SyntheticTodos.generate(size);
+        nextTodos = SyntheticTodos.nextSnapshot(todos);
+    }
+
+    @Test
+    public void buildRowModels() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            TodoRowModel.Factory factory = new TodoRowModel.Factory(context);
+            state.resumeTiming();
+            factory.build(todos);
+        }
+    }
+
+    /**
+     * The common case: the next snapshot after one edit, with the previous
+     * build's models available for reuse.
+     */
+    @Test
+    public void rebuildRowModelsAfterEdit() {
+        TodoRowModel.Factory factory = new TodoRowModel.Factory(context);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            factory.build(todos);
+            state.resumeTiming();
+            factory.build(nextTodos);
+        }
+    }
+
+    @Test
+    public void diffRowsAfterEdit() {
+        TodoRowModel.Factory factory = new TodoRowModel.Factory(context);
+        List<TodoRowModel> oldRows = factory.build(todos);
+        List<TodoRowModel> newRows = new TodoRowModel.Factory(context).build(nextTodos);
+        TodoDiffCallback itemCallback = new TodoDiffCallback();
+
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            DiffUtil.calculateDiff(new ListCallback(oldRows, newRows, itemCallback), true);
+        }
+    }
+
+    @Test
+    public void statsInitialSnapshot() {
+        TodoChangeSet initial = initialChangeSet(todos);
+        BenchmarkState state = benchmarkRule.getState();
+        // The tracker publishes through LiveData, which needs the main thread
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            while (state.keepRunning()) {
+                state.pauseTiming();
+                TodoStatsTracker tracker = new TodoStatsTracker(callback -> {
+                });
+                state.resumeTiming();
+                tracker.onTodosChanged(initial);
+            }
+        });
+    }
+
+    @Test
+    public void statsSingleChange() {
+        Todo original = todos.get(size / 2);
+        Todo flipped = new Todo(original);
+        flipped.setCompleted(!original.isCompleted());
+        int index = size / 2;
+        TodoChangeSet toFlipped = modified(flipped, index);
+        TodoChangeSet toOriginal = modified(original, index);
+
+        TodoStatsTracker tracker = new TodoStatsTracker(callback -> {
+        });
+        BenchmarkState state = benchmarkRule.getState();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            tracker.onTodosChanged(initialChangeSet(todos));
+            boolean flip = true;
+            while (state.keepRunning()) {
+                tracker.onTodosChanged(flip ? toFlipped : toOriginal);
+                flip = !flip;
+            }
+        });
+    }
+
+    private static TodoChangeSet initialChangeSet(List<Todo> todos) {
+        List<TodoChangeSet.Change> changes = new ArrayList<>(todos.size());
+        for (int i = 0; i < todos.size(); i++) {
+            changes.add(new TodoChangeSet.Change(TodoChangeSet.Type.ADDED, todos.get(i), -1, i));
+        }
+        return new TodoChangeSet(changes, todos.size(), true, false);
+    }
+
+    private TodoChangeSet modified(Todo todo, int index) {
+        return new TodoChangeSet(Collections.singletonList(
+                new TodoChangeSet.Change(TodoChangeSet.Type.MODIFIED, todo, index, index)), size, false, false);
+    }
+
+    /**
+     * DiffUtil.Callback over two lists, as AsyncListDiffer builds it.
+     */
+    private static class ListCallback extends DiffUtil.Callback {
+        private final List<TodoRowModel> oldList;
+        private final List<TodoRowModel> newList;
+        private final DiffUtil.ItemCallback<TodoRowModel> itemCallback;
+
+        ListCallback(List<TodoRowModel> oldList, List<TodoRowModel> newList,
+                     DiffUtil.ItemCallback<TodoRowModel> itemCallback) {
+            this.oldList = oldList;
+            this.newList = newList;
+            this.itemCallback = itemCallback;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return itemCallback.areItemsTheSame(oldList.get(oldItemPosition), newList.get(newItemPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return itemCallback.areContentsTheSame(oldList.get(oldItemPosition), newList.get(newItemPosition));
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.todolist.data.firebase;
+
+import android.content.Context;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.todolist.benchmark.SyntheticTodos;
+import com.example.todolist.data.model.Todo;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.MemoryCacheSettings;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Decoding snapshots of 100 to 50,000 documents with {@link TodoCodec}
+ * against {@code toObject(Todo.class)}, and applying them to a
+ * {@link TodoWorkingSet}. Documents are written to an offline, memory-only
+ * Firestore instance and read back from its cache, so no backend is
+ * needed.
+ */
+@RunWith(Parameterized.class)
+public class TodoCodecBenchmark {
+    private static final int BATCH_SIZE = 500;
+
+    // Built once per size and shared by every test of that size
+    private static final Map<Integer, QuerySnapshot> SNAPSHOTS = new HashMap<>();
+    private static FirebaseFirestore db;
+
+    @Parameterized.Parameters(name = "size={0}")
+    public static Collection<Object[]> sizes() {
+        return Arrays.asList(new Object[][]{{100}, {1_000}, {5_000}, {10_000}, {50_000}});
+    }
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final int size;
+    private QuerySnapshot snapshot;
+
+    public TodoCodecBenchmark(int size) {
+        this.size = size;
+    }
+
+    @BeforeClass
+    public static void createFirestore() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FirebaseApp defaultApp = FirebaseApp.initializeApp(context);
+        FirebaseApp app = FirebaseApp.initializeApp(context, defaultApp.getOptions(), "codec-benchmark");
+        db = FirebaseFirestore.getInstance(app);
+        db.setFirestoreSettings(new FirebaseFirestoreSettings.Builder()
+                .setLocalCacheSettings(MemoryCacheSettings.newBuilder().build())
+                .build());
+        Tasks.await(db.disableNetwork());
+    }
+
+    @Before
+    public void createSnapshot() throws Exception {
+        snapshot = SNAPSHOTS.get(size);
+        if (snapshot != null) {
+            return;
+        }
+
+        // Offline writes never complete, but they are visible to cache reads
+        CollectionReference todos = db.collection("todos_" + size);
+        List<Todo> generated = SyntheticTodos.generate(size);
+        WriteBatch batch = db.batch();
+        for (int i = 0; i < generated.size(); i++) {
+            Todo todo = generated.get(i);
+            batch.set(todos.document(todo.getId()), TodoCodec.encode(todo));
+            if ((i + 1) % BATCH_SIZE == 0) {
+                batch.commit();
+                batch = db.batch();
+            }
+        }
+        batch.commit();
+
+        snapshot = Tasks.await(todos.get(Source.CACHE));
+        assertEquals(size, snapshot.size());
+        SNAPSHOTS.put(size, snapshot);
+    }
+
+    @Test
+    public void codecMatchesReflectiveMapping() {
+        for (DocumentSnapshot doc : snapshot.getDocuments()) {
+            Todo expected = doc.toObject(Todo.class);
+            Todo actual = TodoCodec.decode(doc);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getTitle(), actual.getTitle());
+            assertEquals(expected.getDescription(), actual.getDescription());
+            assertEquals(expected.getDate(), actual.getDate());
+            assertEquals(expected.getDueDay(), actual.getDueDay());
+            assertEquals(expected.getUserId(), actual.getUserId());
+            assertEquals(expected.isCompleted(), actual.isCompleted());
+            assertEquals(expected.getPriority(), actual.getPriority());
+            assertEquals(expected.getCategory(), actual.getCategory());
+            assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+            assertEquals(expected.getUpdatedAt(), actual.getUpdatedAt());
+        }
+    }
+
+    @Test
+    public void decodeReflective() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            for (DocumentSnapshot doc : snapshot.getDocuments()) {
+                Todo todo = doc.toObject(Todo.class);
+                todo.setId(doc.getId());
+            }
+        }
+    }
+
+    @Test
+    public void decodeCodec() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            for (DocumentSnapshot doc : snapshot.getDocuments()) {
+                TodoCodec.decode(doc);
+            }
+        }
+    }
+
+    @Test
+    public void applyInitialSnapshot() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            TodoWorkingSet workingSet = new TodoWorkingSet(0);
+            state.resumeTiming();
+            workingSet.apply(snapshot);
+        }
+    }
+}
@@ -7,5 +7,7 @@ buildscript {
 
 plugins {
     alias(libs.plugins.android.application) apply false
+    alias(libs.plugins.android.test) apply false
     alias(libs.plugins.google.gms.google.services) apply false
+    alias(libs.plugins.jmh) apply false
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+plugins {
+    alias(libs.plugins.android.test)
+}
+
+// Startup, scroll and add-todo macrobenchmarks against the app's benchmark
+// build type. Needs a device or emulator and the Firebase emulators:
+//   firebase emulators:start
+//   ./gradlew :macrobenchmark:connectedBenchmarkAndroidTest
+android {
+    namespace = "com.example.todolist.macrobenchmark"
+    compileSdk = 35
+
+    defaultConfig {
+        minSdk = 28
+        targetSdk = 35
+
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+        // StartupBenchmark's baseline-profile runs require a profile in the
+        // APK, so they are left out until copyBaselineProfiles has written one
+        testInstrumentationRunnerArguments["hasBaselineProfile"] =
+            rootProject.file("app/src/main/baselineProfiles/baseline-prof.txt").exists().toString()
+    }
+
+    buildTypes {
+        create("benchmark") {
+            isDebuggable = true
+            signingConfig = signingConfigs.getByName("debug")
+            matchingFallbacks += listOf("release")
+        }
+    }
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_11
+        targetCompatibility = JavaVersion.VERSION_11
+    }
+
+    targetProjectPath = ":app"
+    experimentalProperties["android.experimental.self-instrumenting"] = true
+}
+
+dependencies {
+    implementation(libs.ext.junit)
+    implementation(libs.uiautomator)
+    implementation(libs.benchmark.macro.junit4)
+}
+
+androidComponents {
+    beforeVariants(selector().all()) {
+        it.enable = it.buildType == "benchmark"
+    }
+}
+
+// Copies the profiles recorded by BaselineProfileGenerator into the app,
+// where they are compiled into the APK's ART profile. The baseline profile
+// is the union of both journeys; rules are sorted so diffs stay readable.
+tasks.register("copyBaselineProfiles") {
+    val recorded = layout.buildDirectory.dir("outputs/connected_android_test_additional_output")
+    val target = rootProject.file("app/src/main/baselineProfiles")
+    doLast {
+        fun rules(suffix: String) = recorded.get().asFile.walk()
+            .filter { it.isFile && it.name.endsWith(suffix) }
+            .flatMap { it.readLines().asSequence() }
+            .filter { it.isNotBlank() }
+            .toSortedSet()
+
+        val baseline = rules("-baseline-prof.txt")
+        val startup = rules("-startup-prof.txt")
+        check(baseline.isNotEmpty() && startup.isNotEmpty()) {
+            "No recorded profiles; run BaselineProfileGenerator first"
+        }
+        target.mkdirs()
+        File(target, "baseline-prof.txt").writeText(baseline.joinToString("\n", postfix = "\n"))
+        File(target, "startup-prof.txt").writeText(startup.joinToString("\n", postfix = "\n"))
+        logger.lifecycle("Copied ${baseline.size} baseline and ${startup.size} startup rules to $target")
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.todolist.macrobenchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import kotlin.Unit;
+
+/**
+ * Adding a todo from the FAB: the add screen, saving, and the new row
+ * appearing in a list of thousands. AddTodo.roundTrip is the app's async
+ * trace section from handing the todo to the repository to the server
+ * acknowledging the write (see Perf.ADD_TODO_ROUND_TRIP); frame timing
+ * covers the screen transitions and the list update.
+ */
+public class AddTodoBenchmark {
+    private static final int SEEDED_TODOS = 2_000;
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    private int added;
+
+    @Before
+    public void seed() throws Exception {
+        TodoJourney.seed(SEEDED_TODOS);
+    }
+
+    @After
+    public void discardAddedTodos() {
+        TodoJourney.invalidateSeed();
+    }
+
+    @Test
+    public void addTodoRoundTrip() {
+        benchmarkRule.measureRepeated(
+                TodoJourney.PACKAGE_NAME,
+                Arrays.asList(new TraceSectionMetric("AddTodo.roundTrip"), new FrameTimingMetric()),
+                CompilationMode.DEFAULT,
+                StartupMode.WARM,
+                ITERATIONS,
+                scope -> {
+                    scope.startActivityAndWait();
+                    TodoJourney.waitForList(scope.getDevice());
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    TodoJourney.addTodo(scope.getDevice(), "Benchmark todo " + (++added));
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.todolist.macrobenchmark;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import kotlin.Unit;
+
+/**
+ * Records the profiles for app/src/main/baselineProfiles. Needs a
+ * rooted device or API 33+, and the Firebase emulators:
+ *
+ *   ./gradlew :macrobenchmark:connectedBenchmarkAndroidTest \
+ *       -Pandroid.testInstrumentationRunnerArguments.class=com.example.todolist.macrobenchmark.BaselineProfileGenerator
+ *   ./gradlew :macrobenchmark:copyBaselineProfiles
+ *
+ * The startup profile covers launch up to the first rows of the home
+ * list; the baseline profile the whole journey of logging in, scrolling
+ * and adding a todo. Commit the files copyBaselineProfiles writes as they
+ * are; hand-edited or wildcard rules would compile far more than the
+ * journey uses.
+ */
+public class BaselineProfileGenerator {
+    private static final int SEEDED_TODOS = 2_000;
+    private static final int FLINGS = 3;
+
+    @Rule
+    public BaselineProfileRule baselineProfileRule = new BaselineProfileRule();
+
+    private int added;
+
+    @Before
+    public void seed() throws Exception {
+        TodoJourney.invalidateSeed();
+        TodoJourney.seedSignedOut(SEEDED_TODOS);
+    }
+
+    @Test
+    public void startup() {
+        collect("startup", true, (device, scope) -> {
+            scope.startActivityAndWait();
+            TodoJourney.signInIfNeeded(device);
+            TodoJourney.waitForList(device);
+        });
+    }
+
+    @Test
+    public void journey() {
+        collect("journey", false, (device, scope) -> {
+            scope.startActivityAndWait();
+            TodoJourney.signInIfNeeded(device);
+            UiObject2 list = TodoJourney.waitForList(device);
+            TodoJourney.flingList(device, list, Direction.DOWN, FLINGS);
+            TodoJourney.flingList(device, list, Direction.UP, FLINGS);
+            TodoJourney.addTodo(device, "Profile todo " + (++added));
+        });
+        TodoJourney.invalidateSeed();
+    }
+
+    private interface Journey {
+        void run(UiDevice device, MacrobenchmarkScope scope);
+    }
+
+    private void collect(String prefix, boolean startupProfile, Journey journey) {
+        baselineProfileRule.collect(
+                TodoJourney.PACKAGE_NAME,
+                15,
+                3,
+                prefix,
+                startupProfile,
+                false,
+                rule -> true,
+                scope -> {
+                    scope.pressHome();
+                    journey.run(scope.getDevice(), scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.todolist.macrobenchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiObject2;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * Frame timing while flinging HomeFragment's list down and back up, with
+ * thousands of todos seeded. Reports frame duration and overrun
+ * percentiles; overrun above zero is a missed frame.
+ */
+public class ScrollBenchmark {
+    private static final int SEEDED_TODOS = 5_000;
+    private static final int ITERATIONS = 10;
+    private static final int FLINGS = 5;
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Before
+    public void seed() throws Exception {
+        TodoJourney.seed(SEEDED_TODOS);
+    }
+
+    @Test
+    public void flingHomeList() {
+        benchmarkRule.measureRepeated(
+                TodoJourney.PACKAGE_NAME,
+                Collections.singletonList(new FrameTimingMetric()),
+                CompilationMode.DEFAULT,
+                StartupMode.WARM,
+                ITERATIONS,
+                scope -> {
+                    scope.startActivityAndWait();
+                    TodoJourney.waitForList(scope.getDevice());
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    UiObject2 list = TodoJourney.waitForList(scope.getDevice());
+                    TodoJourney.flingList(scope.getDevice(), list, Direction.DOWN, FLINGS);
+                    TodoJourney.flingList(scope.getDevice(), list, Direction.UP, FLINGS);
+                    return Unit.INSTANCE;
+                });
+    }
+}
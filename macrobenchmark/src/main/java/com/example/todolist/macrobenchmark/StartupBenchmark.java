@@ -0,0 +1,90 @@
+package com.example.todolist.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import kotlin.Unit;
+
+/**
+ * Cold, warm and hot start of a signed-in user through TodoApplication,
+ * LoginActivity's redirect and MainActivity to the first rows of
+ * HomeFragment's list. timeToInitialDisplay covers the first frame;
+ * timeToFullDisplay ends at HomeFragment's reportFullyDrawn, once the
+ * seeded todos are on screen.
+ *
+ * Each mode runs without any ahead-of-time compilation and, once
+ * BaselineProfileGenerator's output is committed, with that profile
+ * required, to show what it saves. Without a profile in the APK those
+ * runs would fail, so they aren't added.
+ */
+@RunWith(Parameterized.class)
+public class StartupBenchmark {
+    private static final int SEEDED_TODOS = 2_000;
+    private static final int ITERATIONS = 10;
+
+    @Parameterized.Parameters(name = "{0}-{1}")
+    public static Collection<Object[]> modes() {
+        // Set by the build from whether app/src/main/baselineProfiles has one
+        boolean hasProfile = Boolean.parseBoolean(
+                InstrumentationRegistry.getArguments().getString("hasBaselineProfile"));
+        List<Object[]> modes = new ArrayList<>();
+        for (StartupMode startupMode : StartupMode.values()) {
+            modes.add(new Object[]{startupMode, "noCompilation", new CompilationMode.None()});
+            if (hasProfile) {
+                modes.add(new Object[]{startupMode, "baselineProfile",
+                        new CompilationMode.Partial(BaselineProfileMode.Require)});
+            }
+        }
+        return modes;
+    }
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    private final StartupMode startupMode;
+    private final CompilationMode compilationMode;
+
+    public StartupBenchmark(StartupMode startupMode, String compilationName, CompilationMode compilationMode) {
+        this.startupMode = startupMode;
+        this.compilationMode = compilationMode;
+    }
+
+    @Before
+    public void seed() throws Exception {
+        TodoJourney.seed(SEEDED_TODOS);
+    }
+
+    @Test
+    public void startup() {
+        benchmarkRule.measureRepeated(
+                TodoJourney.PACKAGE_NAME,
+                Collections.singletonList(new StartupTimingMetric()),
+                compilationMode,
+                startupMode,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    TodoJourney.waitForList(scope.getDevice());
+                    return Unit.INSTANCE;
+                });
+    }
+}
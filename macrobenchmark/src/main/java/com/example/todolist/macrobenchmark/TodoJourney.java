@@ -0,0 +1,133 @@
+package com.example.todolist.macrobenchmark;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.BySelector;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * UI steps shared by the benchmarks, and seeding of the Firebase emulators
+ * through the app's BenchmarkSeedActivity.
+ */
+final class TodoJourney {
+    static final String PACKAGE_NAME = "com.example.todolist";
+
+    private static final long SEED_TIMEOUT_MS = 300_000;
+    private static final long UI_TIMEOUT_MS = 10_000;
+    private static final long ROUND_TRIP_TIMEOUT_MS = 30_000;
+
+    // Must match BenchmarkSeedActivity in the app's benchmark source set
+    private static final String EMAIL = "benchmark@example.com";
+    private static final String PASSWORD = "benchmark-password";
+
+    // Seeding once per process is enough unless a benchmark changes the
+    // data or the sign-in state; "count/signedIn" of the last seed
+    private static String seeded;
+
+    private TodoJourney() {
+    }
+
+    /**
+     * Signs the benchmark user in and gives them exactly {@code count}
+     * generated todos. Fails if the emulators aren't running.
+     */
+    static void seed(int count) throws IOException {
+        seed(count, true);
+    }
+
+    /**
+     * Like {@link #seed(int)}, then signs out so the app starts at the
+     * login screen.
+     */
+    static void seedSignedOut(int count) throws IOException {
+        seed(count, false);
+    }
+
+    private static void seed(int count, boolean signedIn) throws IOException {
+        String key = count + "/" + signedIn;
+        if (key.equals(seeded)) {
+            return;
+        }
+        UiDevice device = UiDevice.getInstance(InstrumentationRegistry.getInstrumentation());
+        device.executeShellCommand("am start -W -n " + PACKAGE_NAME
+                + "/.benchmark.BenchmarkSeedActivity --ei count " + count
+                + " --ez signOut " + !signedIn);
+        if (!device.wait(Until.hasObject(By.text("Seeded " + count)), SEED_TIMEOUT_MS)) {
+            throw new IllegalStateException("Seeding " + count
+                    + " todos timed out; are the Firebase emulators running?");
+        }
+        seeded = key;
+        device.pressHome();
+    }
+
+    /**
+     * Makes the next seed rewrite the data, after a benchmark has changed
+     * it.
+     */
+    static void invalidateSeed() {
+        seeded = null;
+    }
+
+    /**
+     * Signs in with email and password if the login screen is showing;
+     * a signed-in user goes straight on to the home screen.
+     */
+    static void signInIfNeeded(UiDevice device) {
+        BySelector loginOrHome = By.res(Pattern.compile(PACKAGE_NAME + ":id/(etEmail|recyclerView)"));
+        if (!device.wait(Until.hasObject(loginOrHome), UI_TIMEOUT_MS)) {
+            throw new IllegalStateException("Neither the login nor the home screen appeared");
+        }
+        if (!device.hasObject(By.res(PACKAGE_NAME, "etEmail"))) {
+            return;
+        }
+        device.findObject(By.res(PACKAGE_NAME, "etEmail")).setText(EMAIL);
+        device.findObject(By.res(PACKAGE_NAME, "etPassword")).setText(PASSWORD);
+        device.findObject(By.res(PACKAGE_NAME, "btnSignIn")).click();
+    }
+
+    /**
+     * Waits for the home list to show its first rows.
+     */
+    static UiObject2 waitForList(UiDevice device) {
+        BySelector list = By.res(PACKAGE_NAME, "recyclerView").hasDescendant(By.res(PACKAGE_NAME, "tvTitle"));
+        if (!device.wait(Until.hasObject(list), UI_TIMEOUT_MS)) {
+            throw new IllegalStateException("Todo list did not appear");
+        }
+        return device.findObject(By.res(PACKAGE_NAME, "recyclerView"));
+    }
+
+    static void flingList(UiDevice device, UiObject2 list, Direction direction, int times) {
+        // Keep the gesture clear of the system navigation areas
+        list.setGestureMargin(device.getDisplayWidth() / 5);
+        for (int i = 0; i < times; i++) {
+            list.fling(direction);
+            device.waitForIdle();
+        }
+    }
+
+    /**
+     * Adds a todo through the add screen, and waits until it is on the
+     * list and the server has acknowledged it.
+     */
+    static void addTodo(UiDevice device, String title) {
+        device.findObject(By.res(PACKAGE_NAME, "fabAdd")).click();
+        if (!device.wait(Until.hasObject(By.res(PACKAGE_NAME, "etTitle")), UI_TIMEOUT_MS)) {
+            throw new IllegalStateException("Add screen did not open");
+        }
+        device.findObject(By.res(PACKAGE_NAME, "etTitle")).setText(title);
+        device.findObject(By.res(PACKAGE_NAME, "etDescription")).setText("Added by AddTodoBenchmark");
+        device.findObject(By.res(PACKAGE_NAME, "btnSave")).click();
+
+        if (!device.wait(Until.hasObject(By.text(title)), UI_TIMEOUT_MS)) {
+            throw new IllegalStateException("New todo did not appear");
+        }
+        // The sync badge is shown until the write is acknowledged
+        device.wait(Until.gone(By.res(PACKAGE_NAME, "ivSyncState")), ROUND_TRIP_TIMEOUT_MS);
+    }
+}
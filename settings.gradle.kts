@@ -21,4 +21,7 @@ dependencyResolutionManagement {
 
 rootProject.name = "ToDoList"
 include(":app")
+include(":macrobenchmark")
+include(":benchmark")
+include(":benchmark-jvm")
  
\ No newline at end of file